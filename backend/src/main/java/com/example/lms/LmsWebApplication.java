@@ -8,6 +8,7 @@ import org.springframework.boot.web.servlet.context.ServletWebServerInitializedE
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.net.InetAddress;
 
@@ -15,6 +16,7 @@ import java.net.InetAddress;
  * Main application class for the Library Management System
  */
 @SpringBootApplication
+@EnableScheduling
 public class LmsWebApplication {
     
     @Value("${cors.allowed-origins:*}")
@@ -101,7 +101,8 @@ public class CorsConfig {
             "Access-Control-Request-Headers",
             "Access-Control-Allow-Origin",
             "Cache-Control",
-            "Pragma"
+            "Pragma",
+            "Idempotency-Key"
         ));
         
         // Expose headers
@@ -111,7 +112,9 @@ public class CorsConfig {
             "Access-Control-Allow-Headers",
             "Access-Control-Allow-Credentials", 
             "Access-Control-Max-Age",
-            "Authorization"
+            "Authorization",
+            "Idempotent-Replayed",
+            "X-Total-Count"
         ));
         
         config.setMaxAge(3600L);
@@ -48,7 +48,9 @@ public class SecurityConfig {
                     corsConfig.setAllowedOrigins(java.util.Arrays.asList("https://lmsdelta.onrender.com", "http://localhost:3000"));
                     corsConfig.setAllowedMethods(java.util.Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "HEAD"));
                     corsConfig.setAllowCredentials(true);
-                    corsConfig.setAllowedHeaders(java.util.Arrays.asList("Authorization", "Content-Type", "Origin"));
+                    corsConfig.setAllowedHeaders(java.util.Arrays.asList("Authorization", "Content-Type", "Origin", "Idempotency-Key"));
+                    // This source answers first, so headers scripts must read are exposed here too
+                    corsConfig.setExposedHeaders(java.util.Arrays.asList("Authorization", "Idempotent-Replayed", "X-Total-Count"));
                     corsConfig.setMaxAge(3600L);
                     System.out.println("Created CORS config for request from: " + request.getHeader("Origin"));
                     return corsConfig;
@@ -76,7 +78,9 @@ public class SecurityConfig {
                 // Public GET endpoints
                 .requestMatchers(HttpMethod.GET, 
                     "/api/books", "/books",
-                    "/api/books/search", "/books/search"
+                    "/api/books/search", "/books/search",
+                    "/api/books/suggest", "/api/books/browse", "/api/books/query",
+                    "/api/books/isbn/**"
                 ).permitAll()
                 
                 // Student endpoints (most specific paths first)
@@ -91,6 +95,8 @@ public class SecurityConfig {
                 
                 // Librarian endpoints (after more specific paths)
                 .requestMatchers(HttpMethod.POST, "/api/books").hasAnyRole("ADMIN", "LIBRARIAN")
+                .requestMatchers("/api/books/import", "/api/books/import/**").hasAnyRole("ADMIN", "LIBRARIAN")
+                .requestMatchers(HttpMethod.POST, "/api/books/filter").hasAnyRole("ADMIN", "LIBRARIAN")
                 .requestMatchers(HttpMethod.DELETE, "/api/books/**").hasAnyRole("ADMIN", "LIBRARIAN")
                 .requestMatchers("/api/issues/**").hasAnyRole("ADMIN", "LIBRARIAN")
                 .requestMatchers("/api/reservations/**").hasAnyRole("ADMIN", "LIBRARIAN")
@@ -127,7 +133,7 @@ public class SecurityConfig {
             // Always add CORS headers for better browser compatibility
             response.setHeader("Access-Control-Allow-Origin", "*");
             response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, X-Requested-With");
+            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, X-Requested-With, Idempotency-Key");
             response.setHeader("Access-Control-Max-Age", "3600");
             
             // For preflight requests - let Spring handle OPTIONS requests
@@ -172,6 +178,8 @@ public class SecurityConfig {
                     path.equals("/api/users/login") || path.equals("/users/login") ||
                     path.equals("/api/users/register") || path.equals("/users/register") ||
                     path.startsWith("/api/books/search") || path.startsWith("/books/search") ||
+                    path.startsWith("/api/books/suggest") || path.startsWith("/api/books/browse") ||
+                    path.startsWith("/api/books/query") || path.startsWith("/api/books/isbn/") ||
                     path.equals("/api/books") || path.equals("/books") ||
                     path.startsWith("/api/debug") || path.startsWith("/debug");
                 
@@ -30,9 +30,10 @@ public class WebMvcConfig implements WebMvcConfigurer {
             .allowedHeaders("Origin", "Content-Type", "Accept", "Authorization", 
                            "X-Requested-With", "Access-Control-Request-Method", 
                            "Access-Control-Request-Headers", "Access-Control-Allow-Origin",
-                           "Cache-Control", "Pragma")
+                           "Cache-Control", "Pragma", "Idempotency-Key")
             .exposedHeaders("Access-Control-Allow-Origin", "Access-Control-Allow-Methods",
-                          "Access-Control-Allow-Headers", "Access-Control-Allow-Credentials", "Authorization")
+                          "Access-Control-Allow-Headers", "Access-Control-Allow-Credentials", "Authorization",
+                          "Idempotent-Replayed", "X-Total-Count")
             .allowCredentials(true)
             .maxAge(3600);
             
@@ -1,14 +1,22 @@
 package com.example.lms.controller;
 
+import com.example.lms.filter.IdempotencyStore;
 import com.example.lms.model.Role;
 import com.example.lms.model.User;
+import com.example.lms.search.SearchCache;
+import com.example.lms.service.CirculationLocks;
+import com.example.lms.service.FineLedgerService;
+import com.example.lms.service.IssueArchiver;
+import com.example.lms.service.LibraryCalendar;
 import com.example.lms.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.Map;
 
 @RestController
@@ -18,6 +26,24 @@ public class AdminController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private SearchCache searchCache;
+
+    @Autowired
+    private CirculationLocks circulationLocks;
+
+    @Autowired
+    private FineLedgerService fineLedgerService;
+
+    @Autowired
+    private LibraryCalendar libraryCalendar;
+
+    @Autowired
+    private IssueArchiver issueArchiver;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @PutMapping("/users/{id}/role")
     public ResponseEntity<?> updateUserRole(@PathVariable Long id, @RequestBody Map<String, String> payload) {
         // Only admin can update roles
@@ -69,4 +95,115 @@ public class AdminController {
         
         return ResponseEntity.ok(statistics);
     }
+
+    @GetMapping("/search-cache")
+    public ResponseEntity<?> getSearchCacheStatistics() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only administrators can view cache statistics"));
+        }
+
+        return ResponseEntity.ok(searchCache.stats());
+    }
+
+    @GetMapping("/circulation-locks")
+    public ResponseEntity<?> getCirculationLockStatistics() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only administrators can view lock statistics"));
+        }
+
+        return ResponseEntity.ok(circulationLocks.stats());
+    }
+
+    @GetMapping("/idempotency")
+    public ResponseEntity<?> getIdempotencyStats() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only administrators can view idempotency statistics"));
+        }
+
+        return ResponseEntity.ok(idempotencyStore.stats());
+    }
+
+    @PostMapping("/fines/accrue")
+    public ResponseEntity<?> accrueFines() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only administrators can run fine accrual"));
+        }
+
+        // Normally run by the daily job; accruing again the same day is a no-op
+        return ResponseEntity.ok(fineLedgerService.accrue(LocalDate.now()));
+    }
+
+    @PostMapping("/issues/archive")
+    public ResponseEntity<?> archiveIssues(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate before) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only administrators can archive loans"));
+        }
+
+        // Defaults to the nightly job's cutoff
+        if (before == null) {
+            if (issueArchiver.getArchiveAfterDays() <= 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Archiving is disabled; pass a before date"));
+            }
+            before = LocalDate.now().minusDays(issueArchiver.getArchiveAfterDays());
+        }
+        return ResponseEntity.ok(issueArchiver.archive(before));
+    }
+
+    @GetMapping("/calendar/closures")
+    public ResponseEntity<?> getClosures() {
+        return ResponseEntity.ok(libraryCalendar.getClosures());
+    }
+
+    // Closures apply to due dates issued and fines accrued from now on
+    @PutMapping("/calendar/closures/{date}")
+    public ResponseEntity<?> addClosure(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                        @RequestBody(required = false) Map<String, String> payload) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only administrators can change the library calendar"));
+        }
+
+        String reason = payload == null ? null : payload.get("reason");
+        return ResponseEntity.ok(libraryCalendar.addClosure(date, reason));
+    }
+
+    @DeleteMapping("/calendar/closures/{date}")
+    public ResponseEntity<?> removeClosure(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only administrators can change the library calendar"));
+        }
+
+        if (!libraryCalendar.removeClosure(date)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No closure on " + date));
+        }
+        return ResponseEntity.ok(Map.of("message", "Closure removed"));
+    }
 }
@@ -1,34 +1,178 @@
 package com.example.lms.controller;
 
 import com.example.lms.model.Book;
+import com.example.lms.model.BookCopy;
+import com.example.lms.model.CopyStatus;
+import com.example.lms.search.CatalogFilter;
+import com.example.lms.search.FacetIndex;
+import com.example.lms.search.SuggestionIndex;
+import com.example.lms.service.BookImportService;
 import com.example.lms.service.BookService;
+import com.example.lms.service.CatalogVersion;
+import com.example.lms.util.IsbnUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "title", "author", "publicationYear");
+
     private final BookService bookService;
-    public BookController(BookService bookService) { this.bookService = bookService; }
+    private final BookImportService importService;
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    public BookController(BookService bookService, BookImportService importService, CatalogVersion catalogVersion,
+                          ObjectMapper objectMapper) {
+        this.bookService = bookService;
+        this.importService = importService;
+        this.catalogVersion = catalogVersion;
+        this.objectMapper = objectMapper;
+    }
 
+    // Without parameters the whole catalog is returned as before.
+    // Passing after/limit returns one keyset page with a nextCursor.
+    // Both forms carry an ETag from the catalog version and answer If-None-Match with 304
     @GetMapping
-    public List<Book> getAllBooks() { return bookService.getAllBooks(); }
+    public ResponseEntity<?> getAllBooks(@RequestParam(required = false) Long after,
+                                         @RequestParam(required = false) Integer limit,
+                                         WebRequest request) {
+        if (request.checkNotModified(catalogVersion.etag())) {
+            return null;
+        }
+        if (after != null || limit != null) {
+            return BookListings.revalidated(BookListings.page(bookService, after, limit));
+        }
+        return BookListings.revalidated(bookService.getAllBooks());
+    }
+
+    // NDJSON written row by row off the JDBC cursor, so memory stays flat
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        return BookListings.stream(bookService, objectMapper);
+    }
+
+    // Full catalog dump read off a JDBC cursor; gzip when the client sends Accept-Encoding: gzip
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                       @RequestHeader(value = "Accept-Encoding", required = false)
+                                                       String acceptEncoding) {
+        if (!format.equalsIgnoreCase("ndjson") && !format.equalsIgnoreCase("csv")) {
+            // Streaming handlers cannot return a plain map, so the error body is written directly
+            Map<String, String> error = Map.of("error", "Unsupported export format: " + format);
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, error));
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        return BookListings.export(bookService, objectMapper, format.equalsIgnoreCase("csv"), gzip);
+    }
 
     @GetMapping("/search")
-    public List<Book> search(@RequestParam String type, @RequestParam String keyword) {
-        switch (type) {
-            case "title": return bookService.searchByTitle(keyword);
-            case "author": return bookService.searchByAuthor(keyword);
-            case "isbn": return bookService.searchByIsbn(keyword);
-            case "genre": return bookService.searchByGenre(keyword);
-            default: return List.of();
+    public ResponseEntity<?> search(@RequestParam String type, @RequestParam String keyword, WebRequest request) {
+        if (request.checkNotModified(catalogVersion.etag())) {
+            return null;
+        }
+        return BookListings.revalidated(bookService.search(type, keyword));
+    }
+
+    // Structured multi-field query, e.g. ?author=tolkien&genre=Fantasy&yearFrom=1950&available=true&sort=publicationYear,desc
+    @GetMapping("/query")
+    public ResponseEntity<?> query(@RequestParam(required = false) String title,
+                                   @RequestParam(required = false) String author,
+                                   @RequestParam(required = false) String genre,
+                                   @RequestParam(required = false) String publisher,
+                                   @RequestParam(required = false) Integer yearFrom,
+                                   @RequestParam(required = false) Integer yearTo,
+                                   @RequestParam(required = false) Boolean available,
+                                   @RequestParam(defaultValue = "id,asc") String sort,
+                                   @RequestParam(defaultValue = "50") int limit) {
+        String[] sortParts = sort.split(",");
+        if (!SORTABLE_FIELDS.contains(sortParts[0])) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Cannot sort by " + sortParts[0]));
+        }
+        Sort.Direction direction = sortParts.length > 1 && sortParts[1].equalsIgnoreCase("desc")
+                ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort order = Sort.by(direction, sortParts[0]);
+        if (!sortParts[0].equals("id")) {
+            order = order.and(Sort.by("id"));
+        }
+        return ResponseEntity.ok(bookService.query(title, author, genre, publisher, yearFrom, yearTo, available, order,
+                Math.max(1, Math.min(limit, BookListings.MAX_PAGE_SIZE))));
+    }
+
+    // Faceted browsing: optional search plus genre/publisher/decade/availability filters
+    @GetMapping("/browse")
+    public Map<String, Object> browse(@RequestParam(required = false) String type,
+                                      @RequestParam(required = false) String keyword,
+                                      @RequestParam(required = false) String genre,
+                                      @RequestParam(required = false) String publisher,
+                                      @RequestParam(required = false) String decade,
+                                      @RequestParam(required = false) String availability,
+                                      @RequestParam(defaultValue = "50") int limit) {
+        Map<String, String> selected = new HashMap<>();
+        selected.put(FacetIndex.GENRE, genre);
+        selected.put(FacetIndex.PUBLISHER, publisher);
+        selected.put(FacetIndex.DECADE, decade);
+        selected.put(FacetIndex.AVAILABILITY, availability);
+        return bookService.browse(type, keyword, selected, Math.max(1, Math.min(limit, BookListings.MAX_PAGE_SIZE)));
+    }
+
+    public record FilterRequest(List<CatalogFilter.Condition> conditions, Integer limit) {}
+
+    // Ad-hoc filters for librarians, e.g. {"conditions":[{"field":"publisher","op":"contains","value":"penguin"},
+    // {"field":"publicationYear","op":"between","from":1990,"to":1999},{"field":"title","op":"regex","value":"^the "}]}
+    @PostMapping("/filter")
+    public ResponseEntity<?> filter(@RequestBody FilterRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdminOrLibrarian = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN") || a.getAuthority().equals("ROLE_LIBRARIAN"));
+
+        if (!isAdminOrLibrarian) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can filter the catalog"));
+        }
+        int limit = request.limit() == null ? BookListings.DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(request.limit(), BookListings.MAX_PAGE_SIZE));
+        try {
+            return ResponseEntity.ok(bookService.filter(request.conditions(), limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
         }
     }
 
+    // Accepts ISBN-10 or ISBN-13, with or without hyphens
+    @GetMapping("/isbn/{isbn}")
+    public ResponseEntity<?> getByIsbn(@PathVariable String isbn) {
+        String canonical = IsbnUtil.canonicalize(isbn);
+        if (canonical == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid ISBN"));
+        }
+        return bookService.findByCanonicalIsbn(canonical)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "Book not found")));
+    }
+
+    @GetMapping("/suggest")
+    public List<SuggestionIndex.Suggestion> suggest(@RequestParam String prefix,
+                                                    @RequestParam(defaultValue = "10") int limit) {
+        return bookService.suggest(prefix, Math.max(1, Math.min(limit, 25)));
+    }
+
     @PostMapping
     public ResponseEntity<?> addBook(@RequestBody Book book) { 
         // Check if user is admin or librarian
@@ -39,10 +183,50 @@ public class BookController {
         if (!isAdminOrLibrarian) {
             return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can add books"));
         }
+        if (isbnTakenByOtherBook(book.getIsbn(), null)) {
+            return ResponseEntity.status(409).body(Map.of("error", "A book with this ISBN already exists"));
+        }
         
         return ResponseEntity.ok(bookService.addBook(book)); 
     }
 
+    // Bulk import of a CSV file with a header row, or of one JSON book per line.
+    // Returns 202 with a job whose progress is at GET /api/books/import/{jobId}.
+    @PostMapping("/import")
+    public ResponseEntity<?> importBooks(@RequestParam(required = false) String format,
+                                         HttpServletRequest request) throws IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdminOrLibrarian = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN") || a.getAuthority().equals("ROLE_LIBRARIAN"));
+
+        if (!isAdminOrLibrarian) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can import books"));
+        }
+
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            // The servlet container would consume a form body while reading request parameters
+            return ResponseEntity.status(415).body(Map.of("error", "Send the file as text/csv or application/x-ndjson"));
+        }
+        if (format == null) {
+            format = contentType != null && contentType.contains("csv") ? "csv" : "ndjson";
+        }
+        BookImportService.Format importFormat;
+        try {
+            importFormat = BookImportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unsupported import format: " + format));
+        }
+        return ResponseEntity.accepted().body(importService.submit(importFormat, request.getInputStream()));
+    }
+
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<?> getImportJob(@PathVariable String jobId) {
+        return importService.getJob(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "Import job not found")));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> updateBook(@PathVariable Long id, @RequestBody Book bookDetails) {
         // Check if user is admin or librarian
@@ -54,20 +238,17 @@ public class BookController {
             return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can update books"));
         }
         
-        Book book = bookService.getBookById(id).orElse(null);
-        if (book == null) {
+        if (bookService.getBookById(id).isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("error", "Book not found"));
         }
+        if (isbnTakenByOtherBook(bookDetails.getIsbn(), id)) {
+            return ResponseEntity.status(409).body(Map.of("error", "A book with this ISBN already exists"));
+        }
         
-        book.setTitle(bookDetails.getTitle());
-        book.setAuthor(bookDetails.getAuthor());
-        book.setIsbn(bookDetails.getIsbn());
-        book.setGenre(bookDetails.getGenre());
-        book.setPublisher(bookDetails.getPublisher());
-        book.setPublicationYear(bookDetails.getPublicationYear());
-        book.setAvailable(bookDetails.isAvailable());
-        
-        return ResponseEntity.ok(bookService.addBook(book));
+        // Availability is not editable: it follows checkouts, returns and copies
+        return bookService.updateBook(id, bookDetails)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.badRequest().body(Map.of("error", "Book not found")));
     }
 
     @DeleteMapping("/{id}")
@@ -84,4 +265,92 @@ public class BookController {
         bookService.deleteBook(id);
         return ResponseEntity.ok(Map.of("message", "Book deleted successfully")); 
     }
-} 
\ No newline at end of file
+
+    @GetMapping("/{id}/copies")
+    public ResponseEntity<?> getCopies(@PathVariable Long id) {
+        if (bookService.getBookById(id).isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("error", "Book not found"));
+        }
+        return ResponseEntity.ok(bookService.getCopies(id));
+    }
+
+    // Catalogues one physical copy of the title, e.g. {"barcode": "C000123", "location": "Stacks 3B"}
+    @PostMapping("/{id}/copies")
+    public ResponseEntity<?> addCopy(@PathVariable Long id, @RequestBody Map<String, String> payload) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdminOrLibrarian = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN") || a.getAuthority().equals("ROLE_LIBRARIAN"));
+
+        if (!isAdminOrLibrarian) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can add copies"));
+        }
+
+        Book book = bookService.getBookById(id).orElse(null);
+        if (book == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Book not found"));
+        }
+        String barcode = payload.get("barcode");
+        if (barcode == null || barcode.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Barcode not specified"));
+        }
+        barcode = barcode.trim();
+        if (bookService.barcodeExists(barcode)) {
+            return ResponseEntity.status(409).body(Map.of("error", "A copy with this barcode already exists"));
+        }
+
+        BookCopy copy;
+        try {
+            copy = bookService.addCopy(book, barcode, payload.get("location"));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(409).body(Map.of("error", "A copy with this barcode already exists"));
+        }
+        if (copy == null) {
+            return ResponseEntity.status(409).body(Map.of("error",
+                    "The book is out on loan; return it before cataloguing copies"));
+        }
+        return ResponseEntity.ok(copy);
+    }
+
+    // Withdraws a copy on the shelf ({"status": "WITHDRAWN"}) or puts a withdrawn one back ({"status": "AVAILABLE"})
+    @PutMapping("/copies/{copyId}/status")
+    public ResponseEntity<?> setCopyStatus(@PathVariable Long copyId, @RequestBody Map<String, String> payload) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean isAdminOrLibrarian = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN") || a.getAuthority().equals("ROLE_LIBRARIAN"));
+
+        if (!isAdminOrLibrarian) {
+            return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can change copies"));
+        }
+
+        BookCopy copy = bookService.getCopyById(copyId).orElse(null);
+        if (copy == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Copy not found"));
+        }
+        CopyStatus status;
+        try {
+            status = CopyStatus.valueOf(String.valueOf(payload.get("status")).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            status = null;
+        }
+        if (status == null || status == CopyStatus.ON_LOAN) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Status must be WITHDRAWN or AVAILABLE"));
+        }
+
+        if (!bookService.setCopyWithdrawn(copy, status == CopyStatus.WITHDRAWN)) {
+            return ResponseEntity.status(409).body(Map.of("error", "Copy is " + copy.getStatus()
+                    + " and cannot be set to " + status));
+        }
+        copy.setStatus(status);
+        return ResponseEntity.ok(copy);
+    }
+
+    private boolean isbnTakenByOtherBook(String isbn, Long bookId) {
+        String canonical = IsbnUtil.canonicalize(isbn);
+        if (canonical == null) {
+            return false;
+        }
+        return bookService.findByCanonicalIsbn(canonical)
+                .map(existing -> !existing.getId().equals(bookId))
+                .orElse(false);
+    }
+}
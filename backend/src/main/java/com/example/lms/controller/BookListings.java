@@ -0,0 +1,151 @@
+package com.example.lms.controller;
+
+import com.example.lms.model.Book;
+import com.example.lms.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Paged, streamed and exported variants of the book listing, shared by the /api and legacy controllers.
+ */
+final class BookListings {
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    private BookListings() {
+    }
+
+    static Map<String, Object> page(BookService bookService, Long after, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Book> items = bookService.getBooksAfter(after, size);
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("limit", size);
+        // A short page means the end of the catalog has been reached
+        page.put("nextCursor", items.size() == size ? items.get(items.size() - 1).getId() : null);
+        return page;
+    }
+
+    // Lets browsers keep the body but revalidate it with If-None-Match on every use;
+    // without an explicit Cache-Control, Spring Security would send no-store
+    static ResponseEntity<Object> revalidated(Object body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
+    }
+
+    static ResponseEntity<StreamingResponseBody> stream(BookService bookService, ObjectMapper objectMapper) {
+        return ResponseEntity.ok().contentType(NDJSON).body(body(bookService, ndjsonRows(objectMapper), false));
+    }
+
+    /**
+     * Whole-catalog dump for offline consumers, as NDJSON or CSV (same columns the
+     * bulk import reads), gzip-encoded when the client accepts it.
+     */
+    static ResponseEntity<StreamingResponseBody> export(BookService bookService, ObjectMapper objectMapper,
+                                                        boolean csv, boolean gzip) {
+        String filename = "catalog." + (csv ? "csv" : "ndjson");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(csv ? CSV : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body(bookService, csv ? csvRows() : ndjsonRows(objectMapper), gzip));
+    }
+
+    private interface RowWriter {
+        void start(OutputStream out) throws IOException;
+
+        void write(OutputStream out, Book book) throws IOException;
+    }
+
+    private static StreamingResponseBody body(BookService bookService, RowWriter rows, boolean gzip) {
+        return response -> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(response, 1 << 16) : null;
+            OutputStream out = new BufferedOutputStream(compressed != null ? compressed : response, 1 << 16);
+            rows.start(out);
+            try {
+                bookService.forEachBook(book -> {
+                    try {
+                        rows.write(out, book);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            if (compressed != null) {
+                compressed.finish();
+            }
+        };
+    }
+
+    private static RowWriter ndjsonRows(ObjectMapper objectMapper) {
+        ObjectWriter writer = objectMapper.writerFor(Book.class);
+        return new RowWriter() {
+            @Override
+            public void start(OutputStream out) {
+            }
+
+            @Override
+            public void write(OutputStream out, Book book) throws IOException {
+                out.write(writer.writeValueAsBytes(book));
+                out.write('\n');
+            }
+        };
+    }
+
+    private static RowWriter csvRows() {
+        return new RowWriter() {
+            @Override
+            public void start(OutputStream out) throws IOException {
+                out.write("id,title,author,isbn,canonicalIsbn,genre,edition,publisher,publicationYear,available\r\n"
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void write(OutputStream out, Book book) throws IOException {
+                StringBuilder line = new StringBuilder(128);
+                line.append(book.getId());
+                for (String value : new String[]{book.getTitle(), book.getAuthor(), book.getIsbn(),
+                        book.getCanonicalIsbn(), book.getGenre(), book.getEdition(), book.getPublisher()}) {
+                    line.append(',');
+                    appendCsv(line, value);
+                }
+                line.append(',').append(book.getPublicationYear() == null ? "" : book.getPublicationYear());
+                line.append(',').append(book.isAvailable()).append("\r\n");
+                out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    private static void appendCsv(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            line.append(value);
+        } else {
+            line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+    }
+}
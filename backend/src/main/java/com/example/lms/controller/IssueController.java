@@ -1,16 +1,18 @@
 package com.example.lms.controller;
 
+import com.example.lms.dto.IssueView;
 import com.example.lms.model.*;
+import com.example.lms.search.BookPopularity;
 import com.example.lms.service.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/issues")
@@ -18,10 +20,13 @@ public class IssueController {
     private final IssueService issueService;
     private final BookService bookService;
     private final UserService userService;
-    public IssueController(IssueService issueService, BookService bookService, UserService userService) {
+    private final FineLedgerService fineLedgerService;
+    public IssueController(IssueService issueService, BookService bookService, UserService userService,
+                           FineLedgerService fineLedgerService) {
         this.issueService = issueService;
         this.bookService = bookService;
         this.userService = userService;
+        this.fineLedgerService = fineLedgerService;
     }
 
     @PostMapping("/issue")
@@ -30,7 +35,7 @@ public class IssueController {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String currentUsername = authentication.getName();
         
-        Book book = bookService.getAllBooks().stream().filter(b -> b.getId().equals(bookId)).findFirst().orElse(null);
+        Book book = bookService.getBookById(bookId).orElse(null);
         User user = userService.findById(userId).orElse(null);
         
         if (book == null) {
@@ -41,10 +46,6 @@ public class IssueController {
             return ResponseEntity.badRequest().body(Map.of("error", "User not found"));
         }
         
-        if (!book.isAvailable()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Book is not available"));
-        }
-        
         // Check if user is borrowing for self (STUDENT role restriction)
         if (authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_STUDENT"))) {
@@ -55,16 +56,57 @@ public class IssueController {
             }
         }
         
-        // Process the book issue
-        book.setAvailable(false);
-        bookService.addBook(book);
+        // Process the book issue; availability is checked and claimed atomically
         IssueRecord record = issueService.issueBook(book, user);
+        if (record == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Book is not available"));
+        }
         
         return ResponseEntity.ok(record);
     }
 
+    @ExceptionHandler(CirculationLocks.BusyException.class)
+    public ResponseEntity<?> circulationBusy(CirculationLocks.BusyException e) {
+        return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+    }
+
+    /** Batch checkout body: the borrower and the books being checked out to them. */
+    public record BatchCheckoutRequest(Long userId, List<Long> bookIds) {}
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> issueBooks(@RequestBody BatchCheckoutRequest request) {
+        if (request == null || request.userId() == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "userId is required"));
+        }
+        List<Long> bookIds = request.bookIds();
+        if (bookIds == null || bookIds.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "bookIds must not be empty"));
+        }
+        if (bookIds.size() > IssueService.MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "At most " + IssueService.MAX_BATCH_SIZE + " books can be checked out at once"));
+        }
+        if (bookIds.contains(null)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "bookIds must not contain null"));
+        }
+        User user = userService.findById(request.userId()).orElse(null);
+        if (user == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "User not found"));
+        }
+
+        List<IssueService.CheckoutItem> items = issueService.issueBooks(user, bookIds);
+        long issued = items.stream().filter(IssueService.CheckoutItem::issued).count();
+        Map<String, Object> response = new HashMap<>();
+        response.put("userId", user.getId());
+        response.put("issued", issued);
+        response.put("failed", items.size() - issued);
+        response.put("items", items);
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getUserIssues(@PathVariable Long userId) {
+    public ResponseEntity<?> getUserIssues(@PathVariable Long userId,
+                                           @RequestParam(defaultValue = "false") boolean includeArchived) {
         // Get current authenticated user
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String currentUsername = authentication.getName();
@@ -84,12 +126,14 @@ public class IssueController {
             }
         }
         
-        return ResponseEntity.ok(issueService.getUserIssues(user));
+        // Loans archived by IssueArchiver are only read when asked for
+        return ResponseEntity.ok(includeArchived ? issueService.getUserIssueHistory(user)
+                : issueService.getUserIssueViews(user));
     }
 
     @GetMapping
-    public List<IssueRecord> getAllIssues() {
-        return issueService.getAllIssues();
+    public List<IssueView> getAllIssues(@RequestParam(defaultValue = "false") boolean includeArchived) {
+        return includeArchived ? issueService.getAllIssueHistory() : issueService.getAllIssueViews();
     }
     
     @PostMapping("/return")
@@ -130,8 +174,47 @@ public class IssueController {
         // If no fine amount provided, use the calculated amount
         double actualFinePaid = (finePaid != null) ? finePaid : calculatedFine;
         
-        record = issueService.returnBook(record, actualFinePaid);
-        return ResponseEntity.ok(record);
+        IssueRecord returned = issueService.returnBook(record, actualFinePaid);
+        if (returned == null) {
+            // Another return closed the loan after it was read
+            return ResponseEntity.badRequest().body(Map.of("error", "Book already returned"));
+        }
+        return ResponseEntity.ok(returned);
+    }
+    
+    /** Batch return body: loans named by issue id, by the barcode (ISBN) of the book, or both. */
+    public record BatchReturnRequest(List<Long> issueIds, List<String> barcodes) {}
+
+    @PostMapping("/return/batch")
+    public ResponseEntity<?> returnBooks(@RequestBody BatchReturnRequest request) {
+        List<Long> issueIds = request == null || request.issueIds() == null ? List.of() : request.issueIds();
+        List<String> barcodes = request == null || request.barcodes() == null ? List.of() : request.barcodes();
+        int requested = issueIds.size() + barcodes.size();
+        if (requested == 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "issueIds or barcodes are required"));
+        }
+        if (requested > IssueService.MAX_RETURN_BATCH_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "At most " + IssueService.MAX_RETURN_BATCH_SIZE + " books can be returned at once"));
+        }
+        // List.of() rejects contains(null), hence the streams
+        if (issueIds.stream().anyMatch(Objects::isNull) || barcodes.stream().anyMatch(b -> b == null || b.isBlank())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "issueIds and barcodes must not contain blanks"));
+        }
+
+        long start = System.currentTimeMillis();
+        List<IssueService.ReturnItem> items = issueService.returnBooks(issueIds, barcodes);
+        long returned = items.stream().filter(IssueService.ReturnItem::returned).count();
+        double fines = items.stream().filter(IssueService.ReturnItem::returned)
+                .mapToDouble(IssueService.ReturnItem::fine).sum();
+        Map<String, Object> response = new HashMap<>();
+        response.put("requested", requested);
+        response.put("returned", returned);
+        response.put("failed", requested - returned);
+        response.put("totalFines", fines);
+        response.put("tookMs", System.currentTimeMillis() - start);
+        response.put("items", items);
+        return ResponseEntity.ok(response);
     }
     
     @GetMapping("/fine/{issueId}")
@@ -169,9 +252,7 @@ public class IssueController {
             "bookTitle", record.getBook().getTitle(),
             "userName", record.getUser().getName(),
             "dueDate", record.getDueDate().toString(),
-            "daysOverdue", LocalDate.now().isAfter(record.getDueDate()) 
-                ? ChronoUnit.DAYS.between(record.getDueDate(), LocalDate.now()) 
-                : 0,
+            "daysOverdue", issueService.daysOverdue(record.getDueDate(), LocalDate.now()),
             "fineAmount", fine
         ));
     }
@@ -183,36 +264,28 @@ public class IssueController {
         // This endpoint is accessible to all authenticated users
         // We return the most issued books for the popular books feature
         
-        // Get all issue records for popular books calculation
-        List<IssueRecord> allIssues = issueService.getAllIssues();
-        
-        // Count issues by book
-        Map<Book, Long> bookCounts = allIssues.stream()
-            .collect(java.util.stream.Collectors.groupingBy(
-                IssueRecord::getBook, 
-                java.util.stream.Collectors.counting()
-            ));
+        // Counts are kept up to date by IssueService, so no issue history is loaded here
+        List<BookPopularity.Count> top = issueService.getMostIssued(10);
+        Map<Long, Book> books = new HashMap<>();
+        for (Book book : bookService.getBooksByIds(top.stream().map(BookPopularity.Count::bookId).toList())) {
+            books.put(book.getId(), book);
+        }
         
-        // Sort by count (most issued first) and convert to response format
-        List<Map<String, Object>> result = bookCounts.entrySet().stream()
-            .sorted(Map.Entry.<Book, Long>comparingByValue().reversed())
-            .limit(10) // Top 10
-            .map(entry -> {
-                Book book = entry.getKey();
-                Long count = entry.getValue();
-                
-                // Simplified response format directly containing book properties
-                // This makes it easier to use in the frontend
-                Map<String, Object> bookData = new HashMap<>();
-                bookData.put("id", book.getId());
-                bookData.put("title", book.getTitle());
-                bookData.put("author", book.getAuthor());
-                bookData.put("available", book.isAvailable());
-                bookData.put("issueCount", count);
-                
-                return bookData;
-            })
-            .collect(java.util.stream.Collectors.toList());
+        // Most issued first, in the simplified format the frontend reads
+        List<Map<String, Object>> result = new java.util.ArrayList<>();
+        for (BookPopularity.Count count : top) {
+            Book book = books.get(count.bookId());
+            if (book == null) {
+                continue;
+            }
+            Map<String, Object> bookData = new HashMap<>();
+            bookData.put("id", book.getId());
+            bookData.put("title", book.getTitle());
+            bookData.put("author", book.getAuthor());
+            bookData.put("available", book.isAvailable());
+            bookData.put("issueCount", count.issueCount());
+            result.add(bookData);
+        }
             
         return ResponseEntity.ok(result);
     }
@@ -238,30 +311,21 @@ public class IssueController {
             return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
         }
         
-        // Get user's issue history
-        List<IssueRecord> userIssues = issueService.getUserIssues(user);
-        
-        // Calculate total fines
-        double totalFines = userIssues.stream()
-            .filter(issue -> issue.getFinePaid() != null)
-            .mapToDouble(IssueRecord::getFinePaid)
-            .sum();
+        // Totals come from aggregate queries; only open loans are loaded
+        double totalFines = issueService.getUserFinesPaid(user);
             
         // Currently borrowed books
-        List<Map<String, Object>> currentBorrows = userIssues.stream()
-            .filter(issue -> issue.getReturnDate() == null)
+        List<Map<String, Object>> currentBorrows = issueService.getUserOpenIssueViews(user).stream()
             .map(issue -> Map.of(
-                "issueId", issue.getId(),
+                "issueId", issue.id(),
                 "book", Map.of(
-                    "id", issue.getBook().getId(),
-                    "title", issue.getBook().getTitle(),
-                    "author", issue.getBook().getAuthor()
+                    "id", issue.book().id(),
+                    "title", Objects.toString(issue.book().title(), ""),
+                    "author", Objects.toString(issue.book().author(), "")
                 ),
-                "issueDate", issue.getIssueDate().toString(),
-                "dueDate", issue.getDueDate().toString(),
-                "daysOverdue", LocalDate.now().isAfter(issue.getDueDate()) 
-                    ? ChronoUnit.DAYS.between(issue.getDueDate(), LocalDate.now()) 
-                    : 0
+                "issueDate", issue.issueDate().toString(),
+                "dueDate", issue.dueDate().toString(),
+                "daysOverdue", issueService.daysOverdue(issue.dueDate(), LocalDate.now())
             ))
             .collect(java.util.stream.Collectors.toList());
             
@@ -273,7 +337,7 @@ public class IssueController {
                 "username", user.getUsername(),
                 "role", user.getRole()
             ),
-            "totalBooksIssued", userIssues.size(),
+            "totalBooksIssued", issueService.countUserIssues(user),
             "totalCurrentlyBorrowed", currentBorrows.size(),
             "totalFinesPaid", totalFines,
             "currentBorrows", currentBorrows
@@ -291,32 +355,38 @@ public class IssueController {
             return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can access reports"));
         }
         
-        // Get all issue records
-        List<IssueRecord> allIssues = issueService.getAllIssues();
-        
-        // Calculate total fines collected
-        double totalFinesCollected = allIssues.stream()
-            .filter(issue -> issue.getFinePaid() != null)
-            .mapToDouble(IssueRecord::getFinePaid)
-            .sum();
+        // Aggregated in the database rather than over the loaded loan history
+        LocalDate today = LocalDate.now();
+        double totalFinesCollected = issueService.getTotalFinesPaid();
             
         // Calculate fines by month (for the current year)
-        Map<Integer, Double> finesByMonth = allIssues.stream()
-            .filter(issue -> issue.getFinePaid() != null && issue.getReturnDate() != null)
-            .filter(issue -> issue.getReturnDate().getYear() == LocalDate.now().getYear())
-            .collect(java.util.stream.Collectors.groupingBy(
-                issue -> issue.getReturnDate().getMonthValue(),
-                java.util.stream.Collectors.summingDouble(IssueRecord::getFinePaid)
-            ));
+        Map<Integer, Double> finesByMonth = issueService.getFinesPaidByMonth(today.getYear());
             
         // Return the report
         return ResponseEntity.ok(Map.of(
             "totalFinesCollected", totalFinesCollected,
             "finesByMonth", finesByMonth,
-            "outstandingFines", allIssues.stream()
-                .filter(issue -> issue.getReturnDate() == null && LocalDate.now().isAfter(issue.getDueDate()))
-                .mapToDouble(issueService::calculateFine)
-                .sum()
+            "outstandingFines", issueService.getOutstandingFines(),
+            // Ledger balances: fines posted on every loan, returned or not, less payments
+            "fineBalance", fineLedgerService.getTotalBalance()
+        ));
+    }
+
+    @GetMapping("/fines/user/{userId}")
+    public ResponseEntity<?> getFineLedger(@PathVariable Long userId, @RequestParam(defaultValue = "50") int limit) {
+        User user = userService.findById(userId).orElse(null);
+        if (user == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "User not found"));
+        }
+        if (limit < 1 || limit > 500) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and 500"));
+        }
+        
+        // Balance and newest entries, both indexed reads
+        return ResponseEntity.ok(Map.of(
+            "userId", user.getId(),
+            "balance", fineLedgerService.getBalance(user.getId()),
+            "entries", fineLedgerService.getEntries(user.getId(), limit)
         ));
     }
-}
\ No newline at end of file
+}
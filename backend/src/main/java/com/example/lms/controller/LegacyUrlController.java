@@ -1,16 +1,20 @@
 package com.example.lms.controller;
 
-import com.example.lms.model.Book;
-import com.example.lms.model.IssueRecord;
+import com.example.lms.dto.IssueView;
+import com.example.lms.dto.ReservationView;
 import com.example.lms.model.Reservation;
 import com.example.lms.model.User;
 import com.example.lms.service.BookService;
+import com.example.lms.service.CatalogVersion;
 import com.example.lms.service.IssueService;
 import com.example.lms.service.ReservationService;
 import com.example.lms.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -25,22 +29,42 @@ public class LegacyUrlController {
     private final IssueService issueService;
     private final ReservationService reservationService;
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
     
     @Autowired
     public LegacyUrlController(BookService bookService, IssueService issueService, 
-                              ReservationService reservationService, UserService userService) {
+                              ReservationService reservationService, UserService userService,
+                              ObjectMapper objectMapper, CatalogVersion catalogVersion) {
         this.bookService = bookService;
         this.issueService = issueService;
         this.reservationService = reservationService;
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
     }
     
     // ========== Book endpoints without /api prefix ==========
     
+    // ETag and 304 handling as in BookController, since fetchWithFallback tries these URLs first
     @GetMapping("/books")
-    public List<Book> getAllBooks() { 
+    public ResponseEntity<?> getAllBooks(@RequestParam(required = false) Long after,
+                                         @RequestParam(required = false) Integer limit,
+                                         WebRequest request) {
         System.out.println("Legacy endpoint called: GET /books");
-        return bookService.getAllBooks(); 
+        if (request.checkNotModified(catalogVersion.etag())) {
+            return null;
+        }
+        if (after != null || limit != null) {
+            return BookListings.revalidated(BookListings.page(bookService, after, limit));
+        }
+        return BookListings.revalidated(bookService.getAllBooks());
+    }
+    
+    @GetMapping(value = "/books", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        System.out.println("Legacy endpoint called: GET /books?stream=true");
+        return BookListings.stream(bookService, objectMapper);
     }
     
     @GetMapping("/books/{id}")
@@ -50,25 +74,28 @@ public class LegacyUrlController {
     }
     
     @GetMapping("/books/search")
-    public List<Book> searchBooks(@RequestParam(required = false) String query) {
+    public ResponseEntity<?> searchBooks(@RequestParam(required = false) String query, WebRequest request) {
         System.out.println("Legacy endpoint called: GET /books/search?query=" + query);
+        if (request.checkNotModified(catalogVersion.etag())) {
+            return null;
+        }
         if (query == null || query.isEmpty()) {
-            return bookService.getAllBooks();
+            return BookListings.revalidated(bookService.getAllBooks());
         }
-        // Default to searching by title if no type is specified
-        return bookService.searchByTitle(query);
+        // No type is specified, so rank matches across all text fields
+        return BookListings.revalidated(bookService.searchAll(query));
     }
     
     // ========== Issue endpoints without /api prefix ==========
     
     @GetMapping("/issues")
-    public List<IssueRecord> getAllIssues() {
+    public List<IssueView> getAllIssues() {
         System.out.println("Legacy endpoint called: GET /issues");
-        return issueService.getAllIssues();
+        return issueService.getAllIssueViews();
     }
     
     @GetMapping("/issues/user/{userId}")
-    public List<IssueRecord> getIssuesByUserId(@PathVariable Long userId) {
+    public List<IssueView> getIssuesByUserId(@PathVariable Long userId) {
         System.out.println("Legacy endpoint called: GET /issues/user/" + userId);
         // First get the user by ID
         var userOpt = userService.findById(userId);
@@ -76,7 +103,7 @@ public class LegacyUrlController {
             System.out.println("User not found: " + userId);
             return List.of();
         }
-        return issueService.getUserIssues(userOpt.get());
+        return issueService.getUserIssueViews(userOpt.get());
     }
     
     @GetMapping("/issues/{id}")
@@ -90,13 +117,13 @@ public class LegacyUrlController {
     // ========== Reservation endpoints without /api prefix ==========
     
     @GetMapping("/reservations")
-    public List<Reservation> getAllReservations() {
+    public List<ReservationView> getAllReservations() {
         System.out.println("Legacy endpoint called: GET /reservations");
-        return reservationService.getAllReservations();
+        return reservationService.getAllReservationViews();
     }
     
     @GetMapping("/reservations/user/{userId}")
-    public List<Reservation> getReservationsByUserId(@PathVariable Long userId) {
+    public List<ReservationView> getReservationsByUserId(@PathVariable Long userId) {
         System.out.println("Legacy endpoint called: GET /reservations/user/" + userId);
         // First get the user by ID
         var userOpt = userService.findById(userId);
@@ -104,7 +131,7 @@ public class LegacyUrlController {
             System.out.println("User not found: " + userId);
             return List.of();
         }
-        return reservationService.getUserReservations(userOpt.get());
+        return reservationService.getUserReservationViews(userOpt.get());
     }
     
     @PostMapping("/reservations/reserve")
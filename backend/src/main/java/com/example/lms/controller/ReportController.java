@@ -1,8 +1,10 @@
 package com.example.lms.controller;
 
+import com.example.lms.dto.IssueView;
 import com.example.lms.model.*;
 import com.example.lms.service.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -29,8 +31,14 @@ public class ReportController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private FineLedgerService fineLedgerService;
+
+    private static final int MAX_PAGE_SIZE = 500;
+
     @GetMapping("/overdue")
-    public ResponseEntity<?> getOverdueBooks() {
+    public ResponseEntity<?> getOverdueBooks(@RequestParam(defaultValue = "0") int page,
+                                             @RequestParam(defaultValue = "100") int size) {
         // Only admin and librarian can access reports
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         boolean isAdminOrLibrarian = authentication.getAuthorities().stream()
@@ -40,27 +48,34 @@ public class ReportController {
             return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can access reports"));
         }
         
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE));
+        }
+        
+        // Oldest due date first, one page at a time; the total goes in X-Total-Count
         LocalDate today = LocalDate.now();
-        List<IssueRecord> allIssues = issueService.getAllIssues();
+        Page<IssueView> overdue = issueService.getOverdueIssueViews(today, page, size);
         
-        List<Map<String, Object>> overdueBooks = allIssues.stream()
-            .filter(issue -> issue.getReturnDate() == null && issue.getDueDate().isBefore(today))
+        List<Map<String, Object>> overdueBooks = overdue.stream()
             .map(issue -> {
                 Map<String, Object> details = new HashMap<>();
-                details.put("issueId", issue.getId());
-                details.put("bookTitle", issue.getBook().getTitle());
-                details.put("bookId", issue.getBook().getId());
-                details.put("userName", issue.getUser().getName());
-                details.put("userId", issue.getUser().getId());
-                details.put("issueDate", issue.getIssueDate().toString());
-                details.put("dueDate", issue.getDueDate().toString());
-                details.put("daysOverdue", issue.getDueDate().until(today).getDays());
-                details.put("estimatedFine", issue.getDueDate().until(today).getDays() * 1.0); // $1 per day
+                details.put("issueId", issue.id());
+                details.put("bookTitle", issue.book() == null ? null : issue.book().title());
+                details.put("bookId", issue.book() == null ? null : issue.book().id());
+                details.put("userName", issue.user() == null ? null : issue.user().name());
+                details.put("userId", issue.user() == null ? null : issue.user().id());
+                details.put("issueDate", String.valueOf(issue.issueDate()));
+                details.put("dueDate", issue.dueDate().toString());
+                details.put("daysOverdue", issueService.daysOverdue(issue.dueDate(), today));
+                details.put("estimatedFine", issueService.fineFor(issue, today));
                 return details;
             })
             .collect(Collectors.toList());
         
-        return ResponseEntity.ok(overdueBooks);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(overdue.getTotalElements()))
+                .body(overdueBooks);
     }
     
     @GetMapping("/popular-books")
@@ -81,23 +96,14 @@ public class ReportController {
         final LocalDate finalStartDate = (startDate == null) ? LocalDate.now().minusMonths(3) : startDate;
         final LocalDate finalEndDate = (endDate == null) ? LocalDate.now() : endDate;
         
-        List<IssueRecord> allIssues = issueService.getAllIssues();
-        
-        // Group issues by book and count
-        Map<Book, Long> bookCounts = allIssues.stream()
-            .filter(issue -> !issue.getIssueDate().isBefore(finalStartDate) && !issue.getIssueDate().isAfter(finalEndDate))
-            .collect(Collectors.groupingBy(IssueRecord::getBook, Collectors.counting()));
-        
-        // Sort by count and convert to response format
-        List<Map<String, Object>> popularBooks = bookCounts.entrySet().stream()
-            .sorted(Map.Entry.<Book, Long>comparingByValue().reversed())
-            .limit(10)
-            .map(entry -> {
+        // Grouped and ranked by the database
+        List<Map<String, Object>> popularBooks = issueService.getMostIssuedBetween(finalStartDate, finalEndDate, 10).stream()
+            .map(row -> {
                 Map<String, Object> details = new HashMap<>();
-                details.put("bookId", entry.getKey().getId());
-                details.put("title", entry.getKey().getTitle());
-                details.put("author", entry.getKey().getAuthor());
-                details.put("issueCount", entry.getValue());
+                details.put("bookId", row[0]);
+                details.put("title", row[1]);
+                details.put("author", row[2]);
+                details.put("issueCount", row[3]);
                 return details;
             })
             .collect(Collectors.toList());
@@ -121,29 +127,29 @@ public class ReportController {
             return ResponseEntity.badRequest().body(Map.of("error", "User not found"));
         }
         
-        List<IssueRecord> userIssues = issueService.getUserIssues(user);
+        // Only the user's open loans are loaded; the history is just counted
+        LocalDate today = LocalDate.now();
+        List<IssueView> openIssues = issueService.getUserOpenIssueViews(user);
         List<Reservation> userReservations = reservationService.getUserReservations(user);
         
         Map<String, Object> activityReport = new HashMap<>();
         activityReport.put("userId", user.getId());
         activityReport.put("userName", user.getName());
-        activityReport.put("currentIssues", userIssues.stream()
-                .filter(issue -> issue.getReturnDate() == null)
-                .count());
-        activityReport.put("totalIssues", userIssues.size());
+        activityReport.put("currentIssues", openIssues.size());
+        activityReport.put("totalIssues", issueService.countUserIssues(user));
         activityReport.put("activeReservations", userReservations.stream()
                 .filter(Reservation::isActive)
                 .count());
-        activityReport.put("overdueBooks", userIssues.stream()
-                .filter(issue -> issue.getReturnDate() == null && issue.getDueDate().isBefore(LocalDate.now()))
+        activityReport.put("overdueBooks", openIssues.stream()
+                .filter(issue -> issue.dueDate().isBefore(today))
                 .count());
         
         // Calculate total fines
-        double totalFines = userIssues.stream()
-                .filter(issue -> issue.getReturnDate() == null && issue.getDueDate().isBefore(LocalDate.now()))
-                .mapToDouble(issue -> issue.getDueDate().until(LocalDate.now()).getDays() * 1.0)
+        double totalFines = openIssues.stream()
+                .mapToDouble(issue -> issueService.fineFor(issue, today))
                 .sum();
         activityReport.put("estimatedFines", totalFines);
+        activityReport.put("fineBalance", fineLedgerService.getBalance(user.getId()));
         
         return ResponseEntity.ok(activityReport);
     }
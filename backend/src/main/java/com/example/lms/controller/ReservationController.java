@@ -27,7 +27,7 @@ public class ReservationController {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String currentUsername = authentication.getName();
         
-        Book book = bookService.getAllBooks().stream().filter(b -> b.getId().equals(bookId)).findFirst().orElse(null);
+        Book book = bookService.getBookById(bookId).orElse(null);
         User user = userService.findById(userId).orElse(null);
         
         if (book == null) {
@@ -54,9 +54,17 @@ public class ReservationController {
         
         // Process the reservation
         Reservation reservation = reservationService.reserveBook(book, user);
+        if (reservation == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Book is available. No need to reserve"));
+        }
         return ResponseEntity.ok(reservation);
     }
 
+    @ExceptionHandler(CirculationLocks.BusyException.class)
+    public ResponseEntity<?> circulationBusy(CirculationLocks.BusyException e) {
+        return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+    }
+
     @GetMapping("/user/{userId}")
     public ResponseEntity<?> getUserReservations(@PathVariable Long userId) {
         // Get current authenticated user
@@ -78,7 +86,7 @@ public class ReservationController {
             }
         }
         
-        return ResponseEntity.ok(reservationService.getUserReservations(user));
+        return ResponseEntity.ok(reservationService.getUserReservationViews(user));
     }
 
     @GetMapping
@@ -92,7 +100,7 @@ public class ReservationController {
             return ResponseEntity.status(403).body(Map.of("error", "Only librarians and admins can view all reservations"));
         }
         
-        return ResponseEntity.ok(reservationService.getAllReservations());
+        return ResponseEntity.ok(reservationService.getAllReservationViews());
     }
     
     @DeleteMapping("/{id}")
@@ -0,0 +1,5 @@
+package com.example.lms.dto;
+
+/** The book columns shown next to an issue or reservation. */
+public record BookSummary(Long id, String title, String author, String isbn) {
+}
@@ -0,0 +1,6 @@
+package com.example.lms.dto;
+
+import com.example.lms.model.CopyStatus;
+
+/** A copy of a title as listed under its book, without the book itself. */
+public record CopyView(Long id, String barcode, CopyStatus status, String location) {}
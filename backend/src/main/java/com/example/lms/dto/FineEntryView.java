@@ -0,0 +1,10 @@
+package com.example.lms.dto;
+
+import com.example.lms.model.FineEntryType;
+
+import java.time.LocalDate;
+
+/** A fine ledger entry as listed for a user. */
+public record FineEntryView(Long id, Long issueId, LocalDate entryDate, FineEntryType type, double amount,
+                            double balance) {
+}
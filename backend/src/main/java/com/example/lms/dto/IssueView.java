@@ -0,0 +1,20 @@
+package com.example.lms.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Issue record as returned by the list endpoints, selected column by column
+ * through a JPQL constructor expression instead of loading the entity graph.
+ */
+public record IssueView(Long id, BookSummary book, UserSummary user, LocalDate issueDate, LocalDate dueDate,
+                        LocalDate returnDate, Double finePaid) {
+
+    // Flat form used by the constructor queries in IssueRecordRepository
+    public IssueView(Long id, Long bookId, String title, String author, String isbn,
+                     Long userId, String name, String username,
+                     LocalDate issueDate, LocalDate dueDate, LocalDate returnDate, Double finePaid) {
+        this(id, bookId == null ? null : new BookSummary(bookId, title, author, isbn),
+                userId == null ? null : new UserSummary(userId, name, username),
+                issueDate, dueDate, returnDate, finePaid);
+    }
+}
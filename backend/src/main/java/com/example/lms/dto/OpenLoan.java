@@ -0,0 +1,16 @@
+package com.example.lms.dto;
+
+import java.time.LocalDate;
+
+/**
+ * The columns needed to return an issued book or accrue its fine without loading
+ * the entity graph.
+ */
+public record OpenLoan(Long issueId, Long bookId, Long copyId, Long userId, String isbn, String canonicalIsbn,
+                       LocalDate dueDate, LocalDate returnDate, Double fineAccrued, LocalDate accruedThrough) {
+
+    /** First day not yet covered by the ledger. */
+    public LocalDate accrualStart() {
+        return accruedThrough != null && accruedThrough.isAfter(dueDate) ? accruedThrough : dueDate;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.lms.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Reservation as returned by the list endpoints, selected column by column
+ * through a JPQL constructor expression instead of loading the entity graph.
+ */
+public record ReservationView(Long id, BookSummary book, UserSummary user, LocalDate reservationDate,
+                              boolean active, boolean notified) {
+
+    // Flat form used by the constructor queries in ReservationRepository
+    public ReservationView(Long id, Long bookId, String title, String author, String isbn,
+                           Long userId, String name, String username,
+                           LocalDate reservationDate, boolean active, boolean notified) {
+        this(id, bookId == null ? null : new BookSummary(bookId, title, author, isbn),
+                userId == null ? null : new UserSummary(userId, name, username),
+                reservationDate, active, notified);
+    }
+}
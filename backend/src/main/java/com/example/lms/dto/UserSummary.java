@@ -0,0 +1,5 @@
+package com.example.lms.dto;
+
+/** Public columns of a user; never carries the password or role. */
+public record UserSummary(Long id, String name, String username) {
+}
@@ -0,0 +1,232 @@
+package com.example.lms.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Idempotency-Key support for the circulation POST endpoints (issues and reservations,
+ * with or without the /api prefix). The first request with a key runs; if it succeeds its
+ * response is kept in {@link IdempotencyStore} and every retry with the same key gets that
+ * response back without reaching the services. Retries that arrive while it is still
+ * running wait for it. Failed requests are not kept, so they can be retried for real,
+ * including by fetchWithFallback trying the other URL shape.
+ *
+ * Both URL shapes map to one fingerprint, so a key reused for a different request (other
+ * endpoint, parameters or body) is rejected with 422 instead of replaying the wrong answer.
+ * Runs after Spring Security so keys are scoped to the authenticated user.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final List<String> PATHS = List.of("/issues/", "/reservations/");
+
+    private final IdempotencyStore store;
+    private final long waitMs;
+
+    public IdempotencyFilter(IdempotencyStore store, @Value("${lms.idempotency.wait-ms:10000}") long waitMs) {
+        this.store = store;
+        this.waitMs = waitMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equalsIgnoreCase(request.getMethod()) || request.getHeader(KEY_HEADER) == null) {
+            return true;
+        }
+        String path = normalizedPath(request);
+        return PATHS.stream().noneMatch(path::startsWith);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @org.springframework.lang.NonNull HttpServletRequest request,
+            @org.springframework.lang.NonNull HttpServletResponse response,
+            @org.springframework.lang.NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(KEY_HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, 400, KEY_HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String scope = (authentication == null ? "anonymous" : authentication.getName()) + ":" + key;
+
+        byte[] body = isForm(request) ? new byte[0] : StreamUtils.copyToByteArray(request.getInputStream());
+        BufferedRequest buffered = new BufferedRequest(request, body);
+        String fingerprint = fingerprint(buffered, body);
+
+        while (true) {
+            IdempotencyStore.Claim claim = store.claim(scope, fingerprint);
+            IdempotencyStore.Entry entry = claim.entry();
+            if (claim.owner()) {
+                execute(buffered, response, filterChain, scope, entry);
+                return;
+            }
+            if (!entry.fingerprint().equals(fingerprint)) {
+                writeError(response, 422, KEY_HEADER + " was already used for a different request");
+                return;
+            }
+            IdempotencyStore.Response cached;
+            try {
+                cached = entry.await(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writeError(response, 503, "Interrupted while waiting for the original request");
+                return;
+            }
+            if (cached != null) {
+                replay(response, cached);
+                return;
+            }
+            if (!entry.isDone()) {
+                writeError(response, 409, "A request with this " + KEY_HEADER + " is still in progress");
+                return;
+            }
+            // The original failed and released the key; try to run this one instead
+        }
+    }
+
+    private void execute(BufferedRequest request, HttpServletResponse response, FilterChain filterChain,
+                         String scope, IdempotencyStore.Entry entry) throws ServletException, IOException {
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        IdempotencyStore.Response result = null;
+        try {
+            filterChain.doFilter(request, captured);
+            int status = captured.getStatus();
+            if (status >= 200 && status < 300) {
+                result = new IdempotencyStore.Response(status, captured.getContentType(),
+                        captured.getContentAsByteArray());
+            }
+        } finally {
+            store.complete(scope, entry, result);
+            captured.copyBodyToResponse();
+        }
+    }
+
+    private static void replay(HttpServletResponse response, IdempotencyStore.Response cached) throws IOException {
+        response.setStatus(cached.status());
+        if (cached.contentType() != null) {
+            response.setContentType(cached.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+    }
+
+    private static void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    // The same endpoint is served with and without the /api prefix
+    private static String normalizedPath(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith("/api/") ? path.substring(4) : path;
+    }
+
+    private static boolean isForm(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.startsWith("application/x-www-form-urlencoded");
+    }
+
+    // SHA-256 over the endpoint, the sorted parameters and the body
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder head = new StringBuilder(normalizedPath(request)).append('\n');
+        new TreeMap<>(request.getParameterMap()).forEach((name, values) ->
+                head.append(name).append('=').append(String.join(",", values)).append('&'));
+        digest.update(head.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(body);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Serves the body read for the fingerprint to everything downstream
+    private static class BufferedRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BufferedRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (body.length == 0) {
+                return super.getInputStream();
+            }
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is available at once
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (body.length == 0) {
+                return super.getReader();
+            }
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8.name() : encoding));
+        }
+    }
+}
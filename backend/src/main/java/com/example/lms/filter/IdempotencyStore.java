@@ -0,0 +1,114 @@
+package com.example.lms.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded LRU of the requests seen per Idempotency-Key: the fingerprint of the request
+ * that first used the key and, once it has succeeded, its response. Entries expire after
+ * lms.idempotency.ttl-seconds; the least recently used go once there are more than
+ * lms.idempotency.capacity. Keys are scoped by user, so one user cannot replay another's.
+ */
+@Component
+public class IdempotencyStore {
+    private final int capacity;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private long replays;
+    private long mismatches;
+    private long evictions;
+
+    /** A response kept for replay. */
+    public record Response(int status, String contentType, byte[] body) {}
+
+    /** The outcome of claiming a key: either this request runs, or it must wait for the entry's owner. */
+    public record Claim(Entry entry, boolean owner) {}
+
+    public static final class Entry {
+        private final String fingerprint;
+        private final long expiresAt;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Response response;
+
+        private Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        public String fingerprint() {
+            return fingerprint;
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /** Waits for the owner to finish; its response, or null if it failed or is still running. */
+        public Response await(long timeoutMs) throws InterruptedException {
+            done.await(timeoutMs, TimeUnit.MILLISECONDS);
+            return response;
+        }
+    }
+
+    public IdempotencyStore(@Value("${lms.idempotency.capacity:10000}") int capacity,
+                            @Value("${lms.idempotency.ttl-seconds:3600}") long ttlSeconds) {
+        this.capacity = Math.max(1, capacity);
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1, ttlSeconds));
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > IdempotencyStore.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns the live entry for the key, or registers a new in-flight one owned by the caller. */
+    public synchronized Claim claim(String key, String fingerprint) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            if (entry.fingerprint.equals(fingerprint)) {
+                replays++;
+            } else {
+                mismatches++;
+            }
+            return new Claim(entry, false);
+        }
+        entry = new Entry(fingerprint, now + ttlMillis);
+        entries.put(key, entry);
+        return new Claim(entry, true);
+    }
+
+    /**
+     * Finishes the owner's request. A null response means it did not succeed: the key is
+     * released so a retry runs afresh, and anyone waiting on it claims it again.
+     */
+    public void complete(String key, Entry entry, Response response) {
+        if (response == null) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+        }
+        entry.response = response;
+        entry.done.countDown();
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("capacity", capacity);
+        stats.put("ttlSeconds", TimeUnit.MILLISECONDS.toSeconds(ttlMillis));
+        stats.put("replays", replays);
+        stats.put("mismatches", mismatches);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+}
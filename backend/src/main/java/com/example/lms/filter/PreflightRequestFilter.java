@@ -82,7 +82,7 @@ public class PreflightRequestFilter implements Filter {
                     response.setHeader("Access-Control-Allow-Headers", 
                                       "Authorization, Content-Type, X-Requested-With, Origin, Accept, " +
                                       "Access-Control-Request-Method, Access-Control-Request-Headers, " + 
-                                      "Cache-Control, Pragma");
+                                      "Cache-Control, Pragma, Idempotency-Key");
                     response.setHeader("Access-Control-Max-Age", "3600");
                     response.setHeader("Access-Control-Allow-Credentials", "true");
                     response.setHeader("Vary", "Origin, Access-Control-Request-Method, Access-Control-Request-Headers");
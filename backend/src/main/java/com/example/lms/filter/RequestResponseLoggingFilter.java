@@ -38,6 +38,13 @@ public class RequestResponseLoggingFilter extends OncePerRequestFilter {
             @org.springframework.lang.NonNull FilterChain filterChain) 
             throws ServletException, IOException {
         
+        // Only buffer bodies for paths that are logged in detail. Caching every
+        // response would hold whole payloads in memory and break streamed responses.
+        if (!isDetailedLoggingPath(request.getRequestURI())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
         // Only wrap if not already wrapped - use final local variables 
         final HttpServletRequest requestToUse;
         final HttpServletResponse responseToUse;
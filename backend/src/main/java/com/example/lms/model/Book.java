@@ -1,9 +1,18 @@
 package com.example.lms.model;
 
+import com.example.lms.util.IsbnUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import lombok.*;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_book_genre_year", columnList = "genre, publicationYear"),
+    @Index(name = "idx_book_publisher", columnList = "publisher"),
+    @Index(name = "idx_book_year", columnList = "publicationYear"),
+    @Index(name = "uk_book_canonical_isbn", columnList = "canonicalIsbn", unique = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,9 +22,31 @@ public class Book {
     private String title;
     private String author;
     private String isbn;
+    // ISBN-13 form of isbn, null when isbn is missing or not a valid ISBN
+    private String canonicalIsbn;
     private String genre;
     private String edition;
     private String publisher;
     private Integer publicationYear;
+    // Set when the book is added; after that only the conditional UPDATEs of checkout and
+    // return change it, so an edit saved from an older read cannot undo a checkout
+    @Column(updatable = false)
     private boolean available = true;
+    // Null until copies are catalogued; then available means availableCopies > 0. Only ever
+    // changed by the atomic UPDATEs in BookService, never by saving the entity.
+    @Column(insertable = false, updatable = false)
+    private Integer totalCopies;
+    @Column(insertable = false, updatable = false)
+    private Integer availableCopies;
+    // Set on every write, by the entity callbacks below and by each UPDATE and INSERT that bypasses
+    // them; lets the on-disk search segments replay only what changed while the application was down
+    @JsonIgnore
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void beforeSave() {
+        canonicalIsbn = IsbnUtil.canonicalize(isbn);
+        updatedAt = LocalDateTime.now();
+    }
 } 
\ No newline at end of file
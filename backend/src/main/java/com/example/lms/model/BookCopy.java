@@ -0,0 +1,27 @@
+package com.example.lms.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * One physical copy of a title. Checkouts of a title with copies claim whichever
+ * AVAILABLE copy they can lock first, so several can go through at once.
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_copy_book_status", columnList = "book_id, status"),
+    @Index(name = "uk_copy_barcode", columnList = "barcode", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookCopy {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @ManyToOne
+    private Book book;
+    private String barcode;
+    @Enumerated(EnumType.STRING)
+    private CopyStatus status;
+    private String location;
+}
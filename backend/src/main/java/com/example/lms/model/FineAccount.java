@@ -0,0 +1,17 @@
+package com.example.lms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import lombok.*;
+
+/** A user's current fine balance: everything accrued minus everything paid. */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FineAccount {
+    @Id
+    private Long userId;
+    private double balance;
+    private LocalDate updatedOn;
+}
@@ -0,0 +1,5 @@
+package com.example.lms.model;
+
+public enum FineEntryType {
+    ACCRUAL, PAYMENT
+}
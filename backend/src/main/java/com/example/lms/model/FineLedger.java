@@ -0,0 +1,34 @@
+package com.example.lms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import lombok.*;
+
+/**
+ * One append-only movement on a user's fine balance: a daily accrual on an overdue
+ * loan, or a payment taken when it was returned. balance is the user's running
+ * balance after the entry.
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_ledger_user", columnList = "user_id, id"),
+    @Index(name = "idx_ledger_issue", columnList = "issue_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FineLedger {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    private User user;
+    // No foreign key: once the loan is archived its id lives on in issue_record_archive
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private IssueRecord issue;
+    private LocalDate entryDate;
+    @Enumerated(EnumType.STRING)
+    private FineEntryType type;
+    private double amount;
+    private double balance;
+}
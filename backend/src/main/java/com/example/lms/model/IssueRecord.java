@@ -5,6 +5,10 @@ import java.time.LocalDate;
 import lombok.*;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_issue_open_due", columnList = "returnDate, dueDate"),
+    @Index(name = "idx_issue_user_open", columnList = "user_id, returnDate")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,8 +19,14 @@ public class IssueRecord {
     private Book book;
     @ManyToOne
     private User user;
+    // The copy lent, for titles catalogued by copy
+    @ManyToOne
+    private BookCopy copy;
     private LocalDate issueDate;
     private LocalDate dueDate;
     private LocalDate returnDate;
     private Double finePaid;
+    // Fine posted to the ledger so far, and the day it was accrued up to
+    private Double fineAccrued;
+    private LocalDate accruedThrough;
 } 
\ No newline at end of file
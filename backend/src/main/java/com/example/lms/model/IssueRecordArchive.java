@@ -0,0 +1,35 @@
+package com.example.lms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import lombok.*;
+
+/**
+ * A returned loan moved out of issue_record by the archiver. It keeps the id it had
+ * there, so fine ledger entries and old receipts still identify it.
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_archive_user", columnList = "user_id, id"),
+    @Index(name = "idx_archive_return", columnList = "returnDate"),
+    @Index(name = "idx_archive_issue", columnList = "issueDate")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IssueRecordArchive {
+    @Id
+    private Long id;
+    @ManyToOne
+    private Book book;
+    @ManyToOne
+    private User user;
+    @ManyToOne
+    private BookCopy copy;
+    private LocalDate issueDate;
+    private LocalDate dueDate;
+    private LocalDate returnDate;
+    private Double finePaid;
+    private Double fineAccrued;
+    private LocalDate archivedOn;
+}
@@ -0,0 +1,16 @@
+package com.example.lms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import lombok.*;
+
+/** A day the library is closed besides its regular closed weekdays, e.g. a public holiday. */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LibraryClosure {
+    @Id
+    private LocalDate closedOn;
+    private String reason;
+}
@@ -0,0 +1,35 @@
+package com.example.lms.repository;
+
+import com.example.lms.dto.CopyView;
+import com.example.lms.model.BookCopy;
+import com.example.lms.model.CopyStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+
+public interface BookCopyRepository extends JpaRepository<BookCopy, Long> {
+
+    @Query("select new com.example.lms.dto.CopyView(c.id, c.barcode, c.status, c.location) from BookCopy c "
+            + "where c.book.id = :bookId order by c.id")
+    List<CopyView> findViewsByBookId(@Param("bookId") Long bookId);
+
+    boolean existsByBarcode(String barcode);
+
+    // [barcode, copyId] for the barcodes that name a copy
+    @Query("select c.barcode, c.id from BookCopy c where c.barcode in :barcodes")
+    List<Object[]> findIdsByBarcodes(@Param("barcodes") Collection<String> barcodes);
+
+    // Locks one free copy, passing over copies other checkouts have locked rather than waiting
+    // for them (MySQL 8, PostgreSQL and H2). Served by idx_copy_book_status. Must run inside a transaction.
+    @Query(value = "select id from book_copy where book_id = :bookId and status = 'AVAILABLE' "
+            + "limit 1 for update skip locked", nativeQuery = true)
+    List<Long> lockFreeCopy(@Param("bookId") Long bookId);
+
+    // Check-and-set like BookRepository.setAvailableIfChanged; must run inside a transaction
+    @Modifying
+    @Query("update BookCopy c set c.status = :to where c.id = :id and c.status = :from")
+    int setStatusIfChanged(@Param("id") Long id, @Param("from") CopyStatus from, @Param("to") CopyStatus to);
+}
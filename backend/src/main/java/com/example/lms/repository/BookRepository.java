@@ -1,12 +1,97 @@
 package com.example.lms.repository;
 
 import com.example.lms.model.Book;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
     List<Book> findByTitleContainingIgnoreCase(String title);
     List<Book> findByAuthorContainingIgnoreCase(String author);
     List<Book> findByIsbn(String isbn);
+    Optional<Book> findByCanonicalIsbn(String canonicalIsbn);
     List<Book> findByGenreContainingIgnoreCase(String genre);
-} 
\ No newline at end of file
+
+    // Keyset page: rows strictly after the cursor id, in id order
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // Single-statement check-and-set: 0 rows when the book is missing or already in the target state.
+    // Titles catalogued by copy are left alone; their flag follows availableCopies.
+    // Must run inside a transaction.
+    @Modifying
+    @Query("update Book b set b.available = :available, b.updatedAt = current_timestamp "
+            + "where b.id = :id and b.available <> :available and b.availableCopies is null")
+    int setAvailableIfChanged(@Param("id") Long id, @Param("available") boolean available);
+
+    // Copy counters. available is assigned before availableCopies so that it is computed from the
+    // old count on MySQL too, which applies SET assignments left to right. Must run inside a transaction.
+    @Modifying
+    @Query("update Book b set b.available = case when b.availableCopies > 1 then true else false end, "
+            + "b.availableCopies = b.availableCopies - 1, b.updatedAt = current_timestamp "
+            + "where b.id = :id and b.availableCopies > 0")
+    int takeCopy(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Book b set b.available = true, b.availableCopies = b.availableCopies + 1, "
+            + "b.updatedAt = current_timestamp "
+            + "where b.id = :id and b.availableCopies is not null")
+    int putBackCopy(@Param("id") Long id);
+
+    // The first copy of a title can only be added while the book is on the shelf; a book out on
+    // a loan made before it had copies must come back first
+    @Modifying
+    @Query("update Book b set b.available = true, b.availableCopies = coalesce(b.availableCopies, 0) + 1, "
+            + "b.totalCopies = coalesce(b.totalCopies, 0) + 1, b.updatedAt = current_timestamp "
+            + "where b.id = :id and (b.totalCopies is not null or b.available = true)")
+    int addCopy(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Book b set b.available = case when b.availableCopies > 1 then true else false end, "
+            + "b.availableCopies = b.availableCopies - 1, b.totalCopies = b.totalCopies - 1, "
+            + "b.updatedAt = current_timestamp "
+            + "where b.id = :id and b.availableCopies > 0")
+    int withdrawCopy(@Param("id") Long id);
+
+    // Touches only the canonical ISBN column, so it cannot undo a concurrent checkout.
+    // Must run inside a transaction.
+    @Modifying
+    @Query("update Book b set b.canonicalIsbn = :canonicalIsbn, b.updatedAt = current_timestamp where b.id = :id")
+    int setCanonicalIsbn(@Param("id") Long id, @Param("canonicalIsbn") String canonicalIsbn);
+
+    @Query("select b.availableCopies from Book b where b.id = :id")
+    Integer findAvailableCopies(@Param("id") Long id);
+
+    // [availableCopies, totalCopies]; empty when the book is gone
+    @Query("select b.availableCopies, b.totalCopies from Book b where b.id = :id")
+    List<Object[]> findCopyCounts(@Param("id") Long id);
+
+    // Row locks in id order, so overlapping batches cannot deadlock. Must run inside a transaction.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.id in :ids order by b.id")
+    List<Book> lockAllById(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update Book b set b.available = false, b.updatedAt = current_timestamp where b.id in :ids "
+            + "and b.available = true "
+            + "and b.availableCopies is null")
+    int markIssued(@Param("ids") Collection<Long> ids);
+
+    // Forward-only cursor over the whole catalog; must be consumed inside a transaction
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select b from Book b order by b.id")
+    Stream<Book> streamAllOrderById();
+}
@@ -0,0 +1,74 @@
+package com.example.lms.repository;
+
+import com.example.lms.model.Book;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Locale;
+
+/**
+ * Building blocks for structured book queries. Each returns null when its
+ * argument is absent, so callers can combine them freely with Specification.where/and.
+ */
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Book> titleContains(String title) {
+        return containsIgnoreCase("title", title);
+    }
+
+    public static Specification<Book> authorContains(String author) {
+        return containsIgnoreCase("author", author);
+    }
+
+    public static Specification<Book> genreIs(String genre) {
+        return equalsValue("genre", genre);
+    }
+
+    public static Specification<Book> publisherIs(String publisher) {
+        return equalsValue("publisher", publisher);
+    }
+
+    public static Specification<Book> publishedBetween(Integer fromYear, Integer toYear) {
+        if (fromYear == null && toYear == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            if (fromYear == null) {
+                return cb.lessThanOrEqualTo(root.get("publicationYear"), toYear);
+            }
+            if (toYear == null) {
+                return cb.greaterThanOrEqualTo(root.get("publicationYear"), fromYear);
+            }
+            return cb.between(root.get("publicationYear"), fromYear, toYear);
+        };
+    }
+
+    public static Specification<Book> availableIs(Boolean available) {
+        if (available == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("available"), available);
+    }
+
+    private static Specification<Book> containsIgnoreCase(String attribute, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String pattern = "%" + escapeLike(value.trim().toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get(attribute)), pattern, '\\');
+    }
+
+    // Plain equality so the genre/publisher indexes can be used
+    private static Specification<Book> equalsValue(String attribute, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get(attribute), value.trim());
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.lms.repository;
+
+import com.example.lms.model.FineAccount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface FineAccountRepository extends JpaRepository<FineAccount, Long> {
+
+    @Query("select coalesce(sum(a.balance), 0) from FineAccount a")
+    double sumBalances();
+}
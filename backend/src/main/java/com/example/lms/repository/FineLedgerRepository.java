@@ -0,0 +1,17 @@
+package com.example.lms.repository;
+
+import com.example.lms.dto.FineEntryView;
+import com.example.lms.model.FineLedger;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
+
+public interface FineLedgerRepository extends JpaRepository<FineLedger, Long> {
+
+    // Newest first, served by idx_ledger_user (user_id, id)
+    @Query("select new com.example.lms.dto.FineEntryView(l.id, l.issue.id, l.entryDate, l.type, l.amount, l.balance) "
+            + "from FineLedger l where l.user.id = :userId order by l.id desc")
+    List<FineEntryView> findViewsByUserId(@Param("userId") Long userId, Pageable pageable);
+}
@@ -0,0 +1,48 @@
+package com.example.lms.repository;
+
+import com.example.lms.dto.IssueView;
+import com.example.lms.model.IssueRecordArchive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface IssueRecordArchiveRepository extends JpaRepository<IssueRecordArchive, Long> {
+
+    String VIEW_SELECT = "select new com.example.lms.dto.IssueView(a.id, b.id, b.title, b.author, b.isbn, "
+            + "u.id, u.name, u.username, a.issueDate, a.dueDate, a.returnDate, a.finePaid) "
+            + "from IssueRecordArchive a left join a.book b left join a.user u ";
+
+    @Query(VIEW_SELECT + "order by a.id")
+    List<IssueView> findAllViews();
+
+    @Query(VIEW_SELECT + "where a.user.id = :userId order by a.id")
+    List<IssueView> findViewsByUserId(@Param("userId") Long userId);
+
+    long countByUser_Id(Long userId);
+
+    @Query("select coalesce(sum(a.finePaid), 0) from IssueRecordArchive a where a.user.id = :userId")
+    double sumFinesPaidByUserId(@Param("userId") Long userId);
+
+    @Query("select coalesce(sum(a.finePaid), 0) from IssueRecordArchive a")
+    double sumFinesPaid();
+
+    // [month, fines] of the archived loans returned in [from, to)
+    @Query("select extract(month from a.returnDate), sum(a.finePaid) from IssueRecordArchive a "
+            + "where a.returnDate >= :from and a.returnDate < :to and a.finePaid is not null "
+            + "group by extract(month from a.returnDate)")
+    List<Object[]> sumFinesPaidByMonth(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // [bookId, title, author, issueCount] for the archived loans issued in [from, to]
+    @Query("select b.id, b.title, b.author, count(a) from IssueRecordArchive a join a.book b "
+            + "where a.issueDate >= :from and a.issueDate <= :to "
+            + "group by b.id, b.title, b.author order by count(a) desc, b.id")
+    List<Object[]> countIssuesPerBookBetween(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                            Pageable pageable);
+
+    // [bookId, issueDate, issueCount] for every day on which an archived loan was issued
+    @Query("select a.book.id, a.issueDate, count(a) from IssueRecordArchive a group by a.book.id, a.issueDate")
+    List<Object[]> countIssuesPerBookAndDay();
+}
@@ -1,10 +1,95 @@
 package com.example.lms.repository;
 
+import com.example.lms.dto.IssueView;
+import com.example.lms.dto.OpenLoan;
 import com.example.lms.model.IssueRecord;
 import com.example.lms.model.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface IssueRecordRepository extends JpaRepository<IssueRecord, Long> {
     List<IssueRecord> findByUser(User user);
+
+    String VIEW_SELECT = "select new com.example.lms.dto.IssueView(i.id, b.id, b.title, b.author, b.isbn, "
+            + "u.id, u.name, u.username, i.issueDate, i.dueDate, i.returnDate, i.finePaid) "
+            + "from IssueRecord i left join i.book b left join i.user u ";
+
+    @Query(VIEW_SELECT + "order by i.id")
+    List<IssueView> findAllViews();
+
+    @Query(VIEW_SELECT + "where i.user.id = :userId order by i.id")
+    List<IssueView> findViewsByUserId(@Param("userId") Long userId);
+
+    // Open-loan queries below are served by idx_issue_open_due (return_date, due_date)
+    // and idx_issue_user_open (user_id, return_date), so they scale with open loans
+    @Query(value = VIEW_SELECT + "where i.returnDate is null and i.dueDate < :today order by i.dueDate, i.id",
+            countQuery = "select count(i) from IssueRecord i where i.returnDate is null and i.dueDate < :today")
+    Page<IssueView> findOverdueViews(@Param("today") LocalDate today, Pageable pageable);
+
+    @Query(VIEW_SELECT + "where i.user.id = :userId and i.returnDate is null order by i.dueDate, i.id")
+    List<IssueView> findOpenViewsByUserId(@Param("userId") Long userId);
+
+    long countByUser_Id(Long userId);
+
+    @Query("select coalesce(sum(i.finePaid), 0) from IssueRecord i where i.user.id = :userId")
+    double sumFinesPaidByUserId(@Param("userId") Long userId);
+
+    @Query("select coalesce(sum(i.finePaid), 0) from IssueRecord i")
+    double sumFinesPaid();
+
+    @Query("select coalesce(sum(i.fineAccrued), 0) from IssueRecord i where i.returnDate is null")
+    double sumFineAccruedOnOpenLoans();
+
+    // [dueDate, accruedThrough, loans] of the overdue open loans; few distinct pairs, so the
+    // days not yet accrued can be counted per group instead of per loan
+    @Query("select i.dueDate, i.accruedThrough, count(i) from IssueRecord i "
+            + "where i.returnDate is null and i.dueDate < :today group by i.dueDate, i.accruedThrough")
+    List<Object[]> countOverdueLoansByAccrualStart(@Param("today") LocalDate today);
+
+    // [month, fines] of the loans returned in [from, to)
+    @Query("select extract(month from i.returnDate), sum(i.finePaid) from IssueRecord i "
+            + "where i.returnDate >= :from and i.returnDate < :to and i.finePaid is not null "
+            + "group by extract(month from i.returnDate)")
+    List<Object[]> sumFinesPaidByMonth(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Overdue loans whose fine has not been accrued through today, in id order from afterId
+    @Query(LOAN_SELECT + "where i.returnDate is null and i.dueDate < :today "
+            + "and (i.accruedThrough is null or i.accruedThrough < :today) and i.id > :afterId order by i.id")
+    List<OpenLoan> findLoansToAccrue(@Param("today") LocalDate today, @Param("afterId") Long afterId,
+                                     Pageable pageable);
+
+    // [bookId, title, author, issueCount] for the books issued most in [from, to]
+    @Query("select b.id, b.title, b.author, count(i) from IssueRecord i join i.book b "
+            + "where i.issueDate >= :from and i.issueDate <= :to "
+            + "group by b.id, b.title, b.author order by count(i) desc, b.id")
+    List<Object[]> countIssuesPerBookBetween(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                            Pageable pageable);
+
+    String LOAN_SELECT = "select new com.example.lms.dto.OpenLoan(i.id, b.id, i.copy.id, i.user.id, b.isbn, b.canonicalIsbn, "
+            + "i.dueDate, i.returnDate, i.fineAccrued, i.accruedThrough) from IssueRecord i join i.book b ";
+
+    @Query(LOAN_SELECT + "where i.id in :ids")
+    List<OpenLoan> findLoansByIds(@Param("ids") Collection<Long> ids);
+
+    // Barcodes are ISBNs: matched canonically when valid, verbatim otherwise
+    @Query(LOAN_SELECT + "where (b.canonicalIsbn in :canonical or b.isbn in :raw) and i.returnDate is null")
+    List<OpenLoan> findOpenLoansByIsbns(@Param("canonical") Collection<String> canonical,
+                                       @Param("raw") Collection<String> raw);
+
+    // Loans returned before the cutoff, oldest return first; a range scan of idx_issue_open_due
+    @Query("select i.id from IssueRecord i where i.returnDate < :cutoff order by i.returnDate, i.id")
+    List<Long> findIdsReturnedBefore(@Param("cutoff") LocalDate cutoff, Pageable pageable);
+
+    @Query(LOAN_SELECT + "where i.copy.id in :copyIds and i.returnDate is null")
+    List<OpenLoan> findOpenLoansByCopyIds(@Param("copyIds") Collection<Long> copyIds);
+
+    // [bookId, issueDate, issueCount] for every day on which a book was issued
+    @Query("select i.book.id, i.issueDate, count(i) from IssueRecord i group by i.book.id, i.issueDate")
+    List<Object[]> countIssuesPerBookAndDay();
 } 
\ No newline at end of file
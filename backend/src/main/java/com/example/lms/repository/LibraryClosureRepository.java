@@ -0,0 +1,10 @@
+package com.example.lms.repository;
+
+import com.example.lms.model.LibraryClosure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface LibraryClosureRepository extends JpaRepository<LibraryClosure, LocalDate> {
+    List<LibraryClosure> findAllByOrderByClosedOnAsc();
+}
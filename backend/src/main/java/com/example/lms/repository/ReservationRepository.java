@@ -1,10 +1,23 @@
 package com.example.lms.repository;
 
+import com.example.lms.dto.ReservationView;
 import com.example.lms.model.Reservation;
 import com.example.lms.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
     List<Reservation> findByUser(User user);
+
+    String VIEW_SELECT = "select new com.example.lms.dto.ReservationView(r.id, b.id, b.title, b.author, b.isbn, "
+            + "u.id, u.name, u.username, r.reservationDate, r.active, r.notified) "
+            + "from Reservation r left join r.book b left join r.user u ";
+
+    @Query(VIEW_SELECT + "order by r.id")
+    List<ReservationView> findAllViews();
+
+    @Query(VIEW_SELECT + "where r.user.id = :userId order by r.id")
+    List<ReservationView> findViewsByUserId(@Param("userId") Long userId);
 } 
\ No newline at end of file
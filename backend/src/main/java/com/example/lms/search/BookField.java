@@ -0,0 +1,30 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import java.util.function.Function;
+
+/**
+ * Searchable text fields of a book with the weight each one carries in ranking.
+ */
+public enum BookField {
+    TITLE(Book::getTitle, 2.0),
+    AUTHOR(Book::getAuthor, 1.5),
+    GENRE(Book::getGenre, 1.0),
+    PUBLISHER(Book::getPublisher, 0.8);
+
+    private final Function<Book, String> extractor;
+    private final double weight;
+
+    BookField(Function<Book, String> extractor, double weight) {
+        this.extractor = extractor;
+        this.weight = weight;
+    }
+
+    public String valueOf(Book book) {
+        return extractor.apply(book);
+    }
+
+    public double weight() {
+        return weight;
+    }
+}
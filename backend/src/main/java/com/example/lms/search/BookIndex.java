@@ -0,0 +1,29 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+
+/**
+ * An in-process structure derived from the book catalog.
+ * Implementations are rebuilt by {@link CatalogIndexer} at startup and kept
+ * current by BookService whenever a book is saved or deleted.
+ */
+public interface BookIndex {
+
+    /** Adds the book, replacing whatever was indexed under the same id. */
+    void index(Book book);
+
+    void remove(Long bookId);
+
+    void clear();
+
+    /** Called instead of {@link #index} when only the availability flag of a book changed. */
+    default void availabilityChanged(Long bookId, boolean available) {
+    }
+
+    /**
+     * Called after every change to the copy counters of a title catalogued by copy, including
+     * checkouts and returns that leave the availability flag as it was.
+     */
+    default void copiesChanged(Long bookId, int availableCopies, int totalCopies) {
+    }
+}
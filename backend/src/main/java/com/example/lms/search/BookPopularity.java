@@ -0,0 +1,119 @@
+package com.example.lms.search;
+
+import com.example.lms.repository.IssueRecordArchiveRepository;
+import com.example.lms.repository.IssueRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issue counts per book, loaded once at startup and then bumped as books are issued.
+ *
+ * Alongside the all-time count each book carries a decayed count in which an
+ * issue loses half its weight every half-life, so recent demand outranks old.
+ * Decayed counts are stored relative to a base day: an issue on day d adds
+ * 2^((d - base) / halfLife), and reading multiplies by 2^((base - today) / halfLife).
+ * Issuing a book is one map update; nothing is recomputed from the issue history.
+ */
+@Component
+public class BookPopularity {
+    // Stored weights are rebased once they grow past 2^REBASE_EXPONENT
+    private static final double REBASE_EXPONENT = 256;
+
+    private final IssueRecordRepository issueRepo;
+    private final IssueRecordArchiveRepository archiveRepo;
+    private final double halfLifeDays;
+    private final double weight;
+    private final Map<Long, Long> issueCounts = new ConcurrentHashMap<>();
+    private volatile Decayed decayed = new Decayed(LocalDate.now().toEpochDay(), new ConcurrentHashMap<>());
+
+    private record Decayed(long baseDay, Map<Long, Double> weights) {}
+
+    public record Count(Long bookId, long issueCount) {}
+
+    public BookPopularity(IssueRecordRepository issueRepo, IssueRecordArchiveRepository archiveRepo,
+                          @Value("${lms.search.popularity.half-life-days:30}") double halfLifeDays,
+                          @Value("${lms.search.popularity.weight:0.25}") double weight) {
+        this.issueRepo = issueRepo;
+        this.archiveRepo = archiveRepo;
+        this.halfLifeDays = Math.max(1, halfLifeDays);
+        this.weight = Math.max(0, weight);
+    }
+
+    public synchronized void reload() {
+        issueCounts.clear();
+        Decayed fresh = new Decayed(LocalDate.now().toEpochDay(), new ConcurrentHashMap<>());
+        // All-time counts include the archived loans
+        List<Object[]> rows = new ArrayList<>(issueRepo.countIssuesPerBookAndDay());
+        rows.addAll(archiveRepo.countIssuesPerBookAndDay());
+        for (Object[] row : rows) {
+            Long bookId = (Long) row[0];
+            long count = (Long) row[2];
+            issueCounts.merge(bookId, count, Long::sum);
+            if (row[1] != null) {
+                long day = ((LocalDate) row[1]).toEpochDay();
+                fresh.weights().merge(bookId, count * Math.pow(2, (day - fresh.baseDay()) / halfLifeDays), Double::sum);
+            }
+        }
+        decayed = fresh;
+    }
+
+    public synchronized void recordIssue(Long bookId) {
+        issueCounts.merge(bookId, 1L, Long::sum);
+        long today = LocalDate.now().toEpochDay();
+        double exponent = (today - decayed.baseDay()) / halfLifeDays;
+        if (exponent > REBASE_EXPONENT) {
+            rebase(today);
+            exponent = 0;
+        }
+        decayed.weights().merge(bookId, Math.pow(2, exponent), Double::sum);
+    }
+
+    public long issueCount(Long bookId) {
+        return issueCounts.getOrDefault(bookId, 0L);
+    }
+
+    /** Issues of the book as of today, each weighted by its age. */
+    public double decayedCount(Long bookId) {
+        Decayed current = decayed;
+        Double stored = current.weights().get(bookId);
+        if (stored == null) {
+            return 0;
+        }
+        return stored * Math.pow(2, (current.baseDay() - LocalDate.now().toEpochDay()) / halfLifeDays);
+    }
+
+    /**
+     * Factor applied to a book's text relevance. Logarithmic, so that a bestseller
+     * lifts its matches above obscure ones without burying better text matches.
+     */
+    public double boost(Long bookId) {
+        return 1 + weight * Math.log1p(decayedCount(bookId));
+    }
+
+    /** All-time most issued books, most issued first. */
+    public List<Count> mostIssued(int limit) {
+        PriorityQueue<Count> top = new PriorityQueue<>(Comparator.comparingLong(Count::issueCount)
+                .thenComparing(Count::bookId, Comparator.reverseOrder()));
+        for (Map.Entry<Long, Long> entry : issueCounts.entrySet()) {
+            top.add(new Count(entry.getKey(), entry.getValue()));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Count> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingLong(Count::issueCount).reversed().thenComparing(Count::bookId));
+        return result;
+    }
+
+    private void rebase(long today) {
+        Decayed old = decayed;
+        double scale = Math.pow(2, (old.baseDay() - today) / halfLifeDays);
+        Map<Long, Double> weights = new ConcurrentHashMap<>();
+        old.weights().forEach((bookId, stored) -> weights.put(bookId, stored * scale));
+        decayed = new Decayed(today, weights);
+    }
+}
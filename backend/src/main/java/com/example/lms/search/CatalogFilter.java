@@ -0,0 +1,210 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Ad-hoc conjunction of conditions over book columns, as posted to /api/books/filter.
+ *
+ * String conditions (contains, equals, startsWith, regex; all case-insensitive)
+ * are evaluated once per distinct dictionary value of a {@link ColumnarCatalog}
+ * snapshot, so a row only costs an array lookup per condition however
+ * expensive the match itself is.
+ */
+public final class CatalogFilter {
+    private static final int MAX_CONDITIONS = 16;
+
+    /**
+     * One condition. String fields take op contains, equals, startsWith or regex with a value;
+     * publicationYear takes eq, gte or lte with a value, or between with from and/or to;
+     * available takes eq with "true" or "false".
+     */
+    public record Condition(String field, String op, String value, Integer from, Integer to) {}
+
+    private final List<StringCondition> strings = new ArrayList<>();
+    private int minYear = Integer.MIN_VALUE;
+    private int maxYear = Integer.MAX_VALUE;
+    private boolean yearFiltered;
+    private Boolean available;
+    private boolean contradictory;
+
+    private record StringCondition(ColumnarCatalog.Column column, Predicate<String> matcher) {}
+
+    private CatalogFilter() {
+    }
+
+    /** Validates and parses the conditions, throwing IllegalArgumentException with a client-facing message. */
+    public static CatalogFilter parse(List<Condition> conditions) {
+        if (conditions == null) {
+            conditions = List.of();
+        }
+        if (conditions.size() > MAX_CONDITIONS) {
+            throw new IllegalArgumentException("At most " + MAX_CONDITIONS + " conditions are allowed");
+        }
+        CatalogFilter filter = new CatalogFilter();
+        for (Condition condition : conditions) {
+            if (condition == null || condition.field() == null) {
+                throw new IllegalArgumentException("Every condition needs a field");
+            }
+            String op = condition.op() == null ? "eq" : condition.op();
+            switch (condition.field()) {
+                case "publicationYear" -> filter.addYear(op, condition);
+                case "available" -> filter.addAvailable(op, condition.value());
+                default -> {
+                    ColumnarCatalog.Column column = ColumnarCatalog.Column.byName(condition.field());
+                    if (column == null) {
+                        throw new IllegalArgumentException("Cannot filter on " + condition.field());
+                    }
+                    filter.strings.add(new StringCondition(column, matcher(op, condition.value())));
+                }
+            }
+        }
+        return filter;
+    }
+
+    private static Predicate<String> matcher(String op, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Operator " + op + " needs a value");
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        switch (op) {
+            case "contains":
+                return s -> s.toLowerCase(Locale.ROOT).contains(lower);
+            case "eq":
+            case "equals":
+                return s -> s.equalsIgnoreCase(value);
+            case "startsWith":
+                return s -> s.regionMatches(true, 0, value, 0, value.length());
+            case "regex":
+                try {
+                    Pattern pattern = Pattern.compile(value, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                    return s -> pattern.matcher(s).find();
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid regex: " + e.getDescription());
+                }
+            default:
+                throw new IllegalArgumentException("Unsupported operator " + op + " for text fields");
+        }
+    }
+
+    private void addYear(String op, Condition condition) {
+        int low;
+        int high;
+        if (op.equals("between")) {
+            if (condition.from() == null && condition.to() == null) {
+                throw new IllegalArgumentException("between needs from and/or to");
+            }
+            low = condition.from() == null ? Integer.MIN_VALUE : condition.from();
+            high = condition.to() == null ? Integer.MAX_VALUE : condition.to();
+        } else {
+            int year;
+            try {
+                year = Integer.parseInt(String.valueOf(condition.value()).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("publicationYear needs a numeric value");
+            }
+            switch (op) {
+                case "eq" -> { low = year; high = year; }
+                case "gte" -> { low = year; high = Integer.MAX_VALUE; }
+                case "lte" -> { low = Integer.MIN_VALUE; high = year; }
+                default -> throw new IllegalArgumentException("Unsupported operator " + op + " for publicationYear");
+            }
+        }
+        yearFiltered = true;
+        minYear = Math.max(minYear, low);
+        maxYear = Math.min(maxYear, high);
+    }
+
+    private void addAvailable(String op, String value) {
+        if (!op.equals("eq") || !("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value))) {
+            throw new IllegalArgumentException("available takes op eq with true or false");
+        }
+        boolean wanted = Boolean.parseBoolean(value);
+        contradictory |= available != null && available != wanted;
+        available = wanted;
+    }
+
+    /** The filter bound to one snapshot's dictionaries, safe to share between scanning threads. */
+    interface Bound {
+        boolean test(int row);
+
+        boolean test(Book book);
+    }
+
+    Bound bind(ColumnarCatalog.Columns columns) {
+        if (contradictory) {
+            return new Bound() {
+                @Override
+                public boolean test(int row) {
+                    return false;
+                }
+
+                @Override
+                public boolean test(Book book) {
+                    return false;
+                }
+            };
+        }
+        int n = strings.size();
+        int[][] codes = new int[n][];
+        boolean[][] accepted = new boolean[n][];
+        for (int i = 0; i < n; i++) {
+            StringCondition condition = strings.get(i);
+            codes[i] = columns.codes(condition.column());
+            accepted[i] = columns.matchDictionary(condition.column(), condition.matcher());
+        }
+        int[] years = columns.years();
+        boolean[] availability = columns.available();
+        int low = minYear;
+        int high = maxYear;
+        boolean checkYear = yearFiltered;
+        boolean checkAvailable = available != null;
+        boolean wantAvailable = checkAvailable && available;
+        return new Bound() {
+            @Override
+            public boolean test(int row) {
+                if (checkYear) {
+                    int year = years[row];
+                    if (year == ColumnarCatalog.NO_YEAR || year < low || year > high) {
+                        return false;
+                    }
+                }
+                if (checkAvailable && availability[row] != wantAvailable) {
+                    return false;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (!accepted[i][codes[i][row]]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean test(Book book) {
+                if (checkYear) {
+                    Integer year = book.getPublicationYear();
+                    if (year == null || year < low || year > high) {
+                        return false;
+                    }
+                }
+                if (checkAvailable && book.isAvailable() != wantAvailable) {
+                    return false;
+                }
+                for (StringCondition condition : strings) {
+                    String value = condition.column().valueOf(book);
+                    if (value == null || !condition.matcher().test(value)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import com.example.lms.repository.BookRepository;
+import com.example.lms.service.CatalogVersion;
+import com.example.lms.util.IsbnUtil;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Builds every {@link BookIndex} from the database once the application has started.
+ * Segments restored from the last run are not rebuilt: the same scan replays into
+ * them only what changed since their checkpoint.
+ */
+@Component
+public class CatalogIndexer {
+    private static final int BATCH_SIZE = 1000;
+
+    private final BookRepository bookRepo;
+    private final List<BookIndex> indexes;
+    private final FullTextIndex fullTextIndex;
+    private final BookPopularity popularity;
+    private final CatalogVersion catalogVersion;
+    private final TransactionTemplate transactionTemplate;
+    private final SegmentIndex segmentIndex;
+
+    public CatalogIndexer(BookRepository bookRepo, List<BookIndex> indexes, FullTextIndex fullTextIndex,
+                          BookPopularity popularity, CatalogVersion catalogVersion,
+                          TransactionTemplate transactionTemplate, Optional<SegmentIndex> segmentIndex) {
+        this.bookRepo = bookRepo;
+        this.indexes = indexes;
+        this.fullTextIndex = fullTextIndex;
+        this.popularity = popularity;
+        this.catalogVersion = catalogVersion;
+        this.transactionTemplate = transactionTemplate;
+        this.segmentIndex = segmentIndex.orElse(null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        popularity.reload();
+        boolean catchUp = segmentIndex != null && segmentIndex.isCatchingUp();
+        List<BookIndex> rebuilt = catchUp
+                ? indexes.stream().filter(index -> index != segmentIndex).toList()
+                : indexes;
+        LocalDateTime checkpoint = segmentIndex == null ? null : segmentIndex.databaseTime();
+        rebuilt.forEach(BookIndex::clear);
+        long count = 0;
+        int canonicalized = 0;
+        int replayed = 0;
+        Long cursor = 0L;
+        List<Book> batch;
+        do {
+            batch = bookRepo.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, BATCH_SIZE));
+            Map<Long, String> staleIsbns = new LinkedHashMap<>();
+            long from = cursor;
+            for (Book book : batch) {
+                rebuilt.forEach(index -> index.index(book));
+                cursor = book.getId();
+                String canonical = IsbnUtil.canonicalize(book.getIsbn());
+                if (!Objects.equals(book.getCanonicalIsbn(), canonical)) {
+                    staleIsbns.put(book.getId(), canonical);
+                }
+            }
+            canonicalized += backfillCanonicalIsbns(staleIsbns);
+            if (catchUp) {
+                replayed += segmentIndex.catchUp(batch, from, batch.size() == BATCH_SIZE ? cursor : Long.MAX_VALUE);
+            }
+            count += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+        fullTextIndex.markReady();
+        if (segmentIndex != null) {
+            segmentIndex.checkpoint(checkpoint);
+        }
+        if (catchUp) {
+            System.out.println("Replayed " + replayed + " books changed since the last checkpoint into restored segments");
+        }
+        if (canonicalized > 0) {
+            catalogVersion.bump();
+            System.out.println("Canonicalized ISBNs of " + canonicalized + " books");
+        }
+        System.out.println("Catalog indexes built for " + count + " books in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Rows written before canonical ISBNs existed get the column filled in, one transaction
+    // per batch. The unique index rejects duplicates; the batch is then redone row by row so
+    // only the duplicates are reported and left for a librarian to resolve.
+    private int backfillCanonicalIsbns(Map<Long, String> staleIsbns) {
+        if (staleIsbns.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    staleIsbns.forEach(bookRepo::setCanonicalIsbn));
+            return staleIsbns.size();
+        } catch (DataIntegrityViolationException e) {
+            int updated = 0;
+            for (Map.Entry<Long, String> stale : staleIsbns.entrySet()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                            bookRepo.setCanonicalIsbn(stale.getKey(), stale.getValue()));
+                    updated++;
+                } catch (DataIntegrityViolationException duplicate) {
+                    System.out.println("Duplicate ISBN " + stale.getValue() + " on book " + stale.getKey()
+                            + ", not canonicalized");
+                }
+            }
+            return updated;
+        }
+    }
+}
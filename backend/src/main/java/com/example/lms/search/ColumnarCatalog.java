@@ -0,0 +1,473 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable column-oriented copy of the catalog for ad-hoc filters that no index covers.
+ *
+ * Text columns are dictionary-encoded into int codes (0 is null), the year is a
+ * primitive int column and rows are sorted by id. A {@link CatalogFilter} is
+ * bound to the dictionaries once and then evaluated as a ForkJoin scan over
+ * row ranges on all cores.
+ *
+ * Writes are buffered and published copy-on-write on the next scan: small
+ * batches become a new overlay of changed books that shadows their base rows,
+ * and once the overlay outgrows a fraction of the base it is compacted into
+ * fresh columns. Writers only hold the monitor to buffer a change: a refresh
+ * takes the buffer in one swap and builds the next snapshot outside it, so
+ * neither scans nor compaction block writers, and scans always see one snapshot.
+ */
+@Component
+public class ColumnarCatalog implements BookIndex {
+    static final int NO_YEAR = Integer.MIN_VALUE;
+    private static final int SCAN_CHUNK = 1 << 15;
+    private static final int MIN_OVERLAY = 4096;
+    // Past this many distinct values a column (ISBNs, titles) is treated as near-unique and values
+    // are appended without de-duplication, which keeps compaction from building huge hash maps
+    private static final int DEDUPE_LIMIT = 1 << 16;
+
+    public enum Column {
+        TITLE("title", Book::getTitle),
+        AUTHOR("author", Book::getAuthor),
+        ISBN("isbn", Book::getIsbn),
+        CANONICAL_ISBN("canonicalIsbn", Book::getCanonicalIsbn),
+        GENRE("genre", Book::getGenre),
+        EDITION("edition", Book::getEdition),
+        PUBLISHER("publisher", Book::getPublisher);
+
+        private final String field;
+        private final Function<Book, String> extractor;
+
+        Column(String field, Function<Book, String> extractor) {
+            this.field = field;
+            this.extractor = extractor;
+        }
+
+        String valueOf(Book book) {
+            return extractor.apply(book);
+        }
+
+        static Column byName(String field) {
+            for (Column column : values()) {
+                if (column.field.equals(field)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    public record Result(int total, List<Book> items, int rows, long micros) {}
+
+    /** Dictionary-encoded rows, sorted by id. Never modified once built. */
+    static final class Columns {
+        static final Columns EMPTY = new Builder(0).build();
+
+        private final long[] ids;
+        private final int[][] codes;
+        private final String[][] dictionaries;
+        private final int[] years;
+        private final boolean[] available;
+
+        private Columns(long[] ids, int[][] codes, String[][] dictionaries, int[] years, boolean[] available) {
+            this.ids = ids;
+            this.codes = codes;
+            this.dictionaries = dictionaries;
+            this.years = years;
+            this.available = available;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        int rowOf(long id) {
+            return Arrays.binarySearch(ids, id);
+        }
+
+        int[] codes(Column column) {
+            return codes[column.ordinal()];
+        }
+
+        int[] years() {
+            return years;
+        }
+
+        boolean[] available() {
+            return available;
+        }
+
+        // Each distinct value is tested once; large dictionaries are matched in parallel
+        boolean[] matchDictionary(Column column, Predicate<String> matcher) {
+            String[] dictionary = dictionaries[column.ordinal()];
+            boolean[] accepted = new boolean[dictionary.length];
+            IntStream range = IntStream.range(1, dictionary.length);
+            (dictionary.length > SCAN_CHUNK ? range.parallel() : range)
+                    .forEach(code -> accepted[code] = matcher.test(dictionary[code]));
+            return accepted;
+        }
+
+        Book book(int row) {
+            Book book = new Book();
+            book.setId(ids[row]);
+            book.setTitle(value(Column.TITLE, row));
+            book.setAuthor(value(Column.AUTHOR, row));
+            book.setIsbn(value(Column.ISBN, row));
+            book.setCanonicalIsbn(value(Column.CANONICAL_ISBN, row));
+            book.setGenre(value(Column.GENRE, row));
+            book.setEdition(value(Column.EDITION, row));
+            book.setPublisher(value(Column.PUBLISHER, row));
+            book.setPublicationYear(years[row] == NO_YEAR ? null : years[row]);
+            book.setAvailable(available[row]);
+            return book;
+        }
+
+        private String value(Column column, int row) {
+            return dictionaries[column.ordinal()][codes[column.ordinal()][row]];
+        }
+    }
+
+    /** Appends rows in id order, sharing one code per distinct value of low-cardinality columns. */
+    private static final class Builder {
+        private final int capacity;
+        private final long[] ids;
+        private final int[][] codes;
+        private final List<Map<String, Integer>> lookups = new ArrayList<>();
+        private final List<List<String>> dictionaries = new ArrayList<>();
+        private final int[] years;
+        private final boolean[] available;
+        private int size;
+
+        Builder(int capacity) {
+            this.capacity = capacity;
+            ids = new long[capacity];
+            codes = new int[Column.values().length][capacity];
+            years = new int[capacity];
+            available = new boolean[capacity];
+            for (int c = 0; c < Column.values().length; c++) {
+                lookups.add(new HashMap<>());
+                List<String> dictionary = new ArrayList<>();
+                dictionary.add(null);
+                dictionaries.add(dictionary);
+            }
+        }
+
+        void add(Book book) {
+            for (Column column : Column.values()) {
+                codes[column.ordinal()][size] = code(column.ordinal(), column.valueOf(book));
+            }
+            finish(book.getId(), book.getPublicationYear() == null ? NO_YEAR : book.getPublicationYear(),
+                    book.isAvailable());
+        }
+
+        // Copies a row of the previous columns, translating codes through per-column remap tables
+        void add(Columns from, int row, int[][] remap) {
+            for (int c = 0; c < remap.length; c++) {
+                int old = from.codes[c][row];
+                int code = remap[c][old];
+                if (code < 0) {
+                    code = code(c, from.dictionaries[c][old]);
+                    remap[c][old] = code;
+                }
+                codes[c][size] = code;
+            }
+            finish(from.ids[row], from.years[row], from.available[row]);
+        }
+
+        private int code(int column, String value) {
+            if (value == null) {
+                return 0;
+            }
+            List<String> dictionary = dictionaries.get(column);
+            Map<String, Integer> lookup = lookups.get(column);
+            if (lookup == null) {
+                dictionary.add(value);
+                return dictionary.size() - 1;
+            }
+            int code = lookup.computeIfAbsent(value, v -> {
+                dictionary.add(v);
+                return dictionary.size() - 1;
+            });
+            if (lookup.size() > DEDUPE_LIMIT) {
+                lookups.set(column, null);
+            }
+            return code;
+        }
+
+        private void finish(long id, int year, boolean isAvailable) {
+            ids[size] = id;
+            years[size] = year;
+            available[size] = isAvailable;
+            size++;
+        }
+
+        Columns build() {
+            int[][] trimmed = new int[codes.length][];
+            String[][] dicts = new String[codes.length][];
+            for (int c = 0; c < codes.length; c++) {
+                trimmed[c] = size == capacity ? codes[c] : Arrays.copyOf(codes[c], size);
+                dicts[c] = dictionaries.get(c).toArray(new String[0]);
+            }
+            return new Columns(size == capacity ? ids : Arrays.copyOf(ids, size), trimmed, dicts,
+                    size == capacity ? years : Arrays.copyOf(years, size),
+                    size == capacity ? available : Arrays.copyOf(available, size));
+        }
+    }
+
+    /**
+     * What scans see: base columns, books changed since they were built (by id)
+     * and the sorted base rows those changes shadow, deletions included.
+     */
+    private record Snapshot(Columns base, TreeMap<Long, Book> overlay, int[] shadowed) {
+        static final Snapshot EMPTY = new Snapshot(Columns.EMPTY, new TreeMap<>(), new int[0]);
+
+        boolean isShadowed(int row) {
+            return Arrays.binarySearch(shadowed, row) >= 0;
+        }
+
+        int size() {
+            return base.size() - shadowed.length + overlay.size();
+        }
+    }
+
+    private volatile Snapshot published = Snapshot.EMPTY;
+    // Latest state of every book written since the last publish; null marks a removal
+    private Map<Long, Book> pending = new HashMap<>();
+    // The buffer a refresh has taken but not yet published, null otherwise
+    private Map<Long, Book> inFlight;
+    // Counts clears, so a refresh that started before one does not publish over it
+    private long clears;
+    private volatile boolean dirty;
+    // One refresh at a time; writers never take it
+    private final Object refreshLock = new Object();
+
+    @Override
+    public synchronized void index(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        Book copy = new Book();
+        BeanUtils.copyProperties(book, copy);
+        pending.put(copy.getId(), copy);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void remove(Long bookId) {
+        pending.put(bookId, null);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void availabilityChanged(Long bookId, boolean available) {
+        Book current = pending.containsKey(bookId) ? pending.get(bookId)
+                : inFlight != null && inFlight.containsKey(bookId) ? inFlight.get(bookId)
+                : find(published, bookId);
+        if (current != null) {
+            Book copy = new Book();
+            BeanUtils.copyProperties(current, copy);
+            copy.setAvailable(available);
+            pending.put(bookId, copy);
+            dirty = true;
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        pending.clear();
+        inFlight = null;
+        clears++;
+        published = Snapshot.EMPTY;
+        dirty = false;
+    }
+
+    public int size() {
+        return refresh().size();
+    }
+
+    /** Matching books in id order: the total count and up to limit of them. */
+    public Result filter(CatalogFilter filter, int limit) {
+        long start = System.nanoTime();
+        Snapshot snapshot = refresh();
+        CatalogFilter.Bound bound = filter.bind(snapshot.base());
+        int[] rows = snapshot.base().size() == 0 ? new int[0]
+                : ForkJoinPool.commonPool().invoke(new Scan(snapshot, bound, 0, snapshot.base().size()));
+
+        List<Book> overlayMatches = new ArrayList<>();
+        for (Book book : snapshot.overlay().values()) {
+            if (bound.test(book)) {
+                overlayMatches.add(book);
+            }
+        }
+
+        // Both sides are in id order, so the first items come from a merge
+        List<Book> items = new ArrayList<>(Math.min(limit, rows.length + overlayMatches.size()));
+        int r = 0;
+        int o = 0;
+        while (items.size() < limit && (r < rows.length || o < overlayMatches.size())) {
+            boolean takeRow = o == overlayMatches.size()
+                    || (r < rows.length && snapshot.base().ids[rows[r]] < overlayMatches.get(o).getId());
+            if (takeRow) {
+                items.add(snapshot.base().book(rows[r++]));
+            } else {
+                Book copy = new Book();
+                BeanUtils.copyProperties(overlayMatches.get(o++), copy);
+                items.add(copy);
+            }
+        }
+        return new Result(rows.length + overlayMatches.size(), items, snapshot.size(),
+                (System.nanoTime() - start) / 1000);
+    }
+
+    private static final class Scan extends RecursiveTask<int[]> {
+        private final Snapshot snapshot;
+        private final CatalogFilter.Bound bound;
+        private final int from;
+        private final int to;
+
+        Scan(Snapshot snapshot, CatalogFilter.Bound bound, int from, int to) {
+            this.snapshot = snapshot;
+            this.bound = bound;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= SCAN_CHUNK) {
+                int[] matches = new int[16];
+                int count = 0;
+                boolean anyShadowed = snapshot.shadowed().length > 0;
+                for (int row = from; row < to; row++) {
+                    if (bound.test(row) && !(anyShadowed && snapshot.isShadowed(row))) {
+                        if (count == matches.length) {
+                            matches = Arrays.copyOf(matches, Math.min(count * 2, to - from));
+                        }
+                        matches[count++] = row;
+                    }
+                }
+                return Arrays.copyOf(matches, count);
+            }
+            int mid = (from + to) >>> 1;
+            Scan left = new Scan(snapshot, bound, from, mid);
+            left.fork();
+            int[] right = new Scan(snapshot, bound, mid, to).compute();
+            int[] leftRows = left.join();
+            int[] all = Arrays.copyOf(leftRows, leftRows.length + right.length);
+            System.arraycopy(right, 0, all, leftRows.length, right.length);
+            return all;
+        }
+    }
+
+    private static Book find(Snapshot snapshot, Long bookId) {
+        if (snapshot.overlay().containsKey(bookId)) {
+            return snapshot.overlay().get(bookId);
+        }
+        int row = snapshot.base().rowOf(bookId);
+        return row < 0 || snapshot.isShadowed(row) ? null : snapshot.base().book(row);
+    }
+
+    // Buffered writes are published before the next scan. The buffer is swapped out under the
+    // monitor, the next snapshot built outside it, and published only if no clear came between.
+    private Snapshot refresh() {
+        if (!dirty) {
+            return published;
+        }
+        synchronized (refreshLock) {
+            Snapshot current;
+            Map<Long, Book> batch;
+            long clearsAtStart;
+            synchronized (this) {
+                if (!dirty) {
+                    return published;
+                }
+                current = published;
+                batch = pending;
+                pending = new HashMap<>();
+                inFlight = batch;
+                clearsAtStart = clears;
+                dirty = false;
+            }
+            Snapshot next = apply(current, batch);
+            synchronized (this) {
+                inFlight = null;
+                if (clears == clearsAtStart) {
+                    published = next;
+                }
+                return published;
+            }
+        }
+    }
+
+    private static Snapshot apply(Snapshot current, Map<Long, Book> batch) {
+        Set<Integer> newlyShadowed = new HashSet<>();
+        for (Long id : batch.keySet()) {
+            int row = current.base().rowOf(id);
+            if (row >= 0) {
+                newlyShadowed.add(row);
+            }
+        }
+        int[] shadowed = IntStream.concat(Arrays.stream(current.shadowed()),
+                newlyShadowed.stream().mapToInt(Integer::intValue)).sorted().distinct().toArray();
+        if (current.overlay().size() + batch.size() + shadowed.length
+                > Math.max(MIN_OVERLAY, current.base().size() / 64)) {
+            Map<Long, Book> changed = new HashMap<>(current.overlay());
+            changed.putAll(batch);
+            changed.values().removeIf(Objects::isNull);
+            List<Book> sorted = new ArrayList<>(changed.values());
+            sorted.sort(Comparator.comparing(Book::getId));
+            return compact(current.base(), shadowed, sorted);
+        }
+        TreeMap<Long, Book> overlay = new TreeMap<>(current.overlay());
+        batch.forEach((id, book) -> {
+            if (book == null) {
+                overlay.remove(id);
+            } else {
+                overlay.put(id, book);
+            }
+        });
+        return new Snapshot(current.base(), overlay, shadowed);
+    }
+
+    // Rebuilds the columns from the unshadowed base rows and the changed books, both in id order
+    private static Snapshot compact(Columns base, int[] shadowed, List<Book> changed) {
+        long start = System.currentTimeMillis();
+        Builder builder = new Builder(base.size() - shadowed.length + changed.size());
+        int[][] remap = new int[Column.values().length][];
+        for (int c = 0; c < remap.length; c++) {
+            remap[c] = new int[base.dictionaries[c].length];
+            Arrays.fill(remap[c], -1);
+            remap[c][0] = 0;
+        }
+        int next = 0;
+        int shadowIndex = 0;
+        for (int row = 0; row < base.size(); row++) {
+            if (shadowIndex < shadowed.length && shadowed[shadowIndex] == row) {
+                shadowIndex++;
+                continue;
+            }
+            while (next < changed.size() && changed.get(next).getId() < base.ids[row]) {
+                builder.add(changed.get(next++));
+            }
+            builder.add(base, row, remap);
+        }
+        while (next < changed.size()) {
+            builder.add(changed.get(next++));
+        }
+        Columns columns = builder.build();
+        if (columns.size() > 100_000) {
+            System.out.println("Columnar catalog compacted to " + columns.size() + " rows in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+        return new Snapshot(columns, new TreeMap<>(), new int[0]);
+    }
+}
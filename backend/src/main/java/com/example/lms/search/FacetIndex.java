@@ -0,0 +1,165 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Per-value bitmaps of book ids for the catalog facets (genre, publisher,
+ * publication decade and availability). Counts for any set of books are the
+ * intersection cardinalities of that set with each value's bitmap.
+ *
+ * Book ids are stored as ints; ids beyond Integer.MAX_VALUE are not faceted.
+ */
+@Component
+public class FacetIndex implements BookIndex {
+    public static final String GENRE = "genre";
+    public static final String PUBLISHER = "publisher";
+    public static final String DECADE = "decade";
+    public static final String AVAILABILITY = "availability";
+    public static final String AVAILABLE = "available";
+    public static final String CHECKED_OUT = "checkedOut";
+
+    private final Map<String, Map<String, CompressedBitmap>> facets = new LinkedHashMap<>();
+    private final Map<Long, String[]> docValues = new HashMap<>();
+    private CompressedBitmap all = new CompressedBitmap();
+
+    public FacetIndex() {
+        for (String facet : List.of(GENRE, PUBLISHER, DECADE, AVAILABILITY)) {
+            facets.put(facet, new HashMap<>());
+        }
+    }
+
+    @Override
+    public synchronized void index(Book book) {
+        if (book.getId() == null || book.getId() > Integer.MAX_VALUE) {
+            return;
+        }
+        removeLocked(book.getId());
+        int id = book.getId().intValue();
+        String[] values = {
+            normalize(book.getGenre()),
+            normalize(book.getPublisher()),
+            book.getPublicationYear() == null ? null : (book.getPublicationYear() / 10 * 10) + "s",
+            book.isAvailable() ? AVAILABLE : CHECKED_OUT
+        };
+        int f = 0;
+        for (Map<String, CompressedBitmap> facet : facets.values()) {
+            if (values[f] != null) {
+                facet.computeIfAbsent(values[f], v -> new CompressedBitmap()).add(id);
+            }
+            f++;
+        }
+        docValues.put(book.getId(), values);
+        all.add(id);
+    }
+
+    @Override
+    public synchronized void remove(Long bookId) {
+        removeLocked(bookId);
+    }
+
+    @Override
+    public synchronized void clear() {
+        facets.values().forEach(Map::clear);
+        docValues.clear();
+        all = new CompressedBitmap();
+    }
+
+    // Only the two availability bitmaps change; nothing else is re-indexed
+    @Override
+    public synchronized void availabilityChanged(Long bookId, boolean available) {
+        String[] values = docValues.get(bookId);
+        if (values == null) {
+            return;
+        }
+        int id = bookId.intValue();
+        Map<String, CompressedBitmap> availability = facets.get(AVAILABILITY);
+        availability.computeIfAbsent(available ? AVAILABLE : CHECKED_OUT, v -> new CompressedBitmap()).add(id);
+        CompressedBitmap previous = availability.get(available ? CHECKED_OUT : AVAILABLE);
+        if (previous != null) {
+            previous.remove(id);
+        }
+        values[3] = available ? AVAILABLE : CHECKED_OUT;
+    }
+
+    private void removeLocked(Long bookId) {
+        String[] values = docValues.remove(bookId);
+        if (values == null) {
+            return;
+        }
+        int id = bookId.intValue();
+        int f = 0;
+        for (Map<String, CompressedBitmap> facet : facets.values()) {
+            CompressedBitmap bitmap = values[f] == null ? null : facet.get(values[f]);
+            if (bitmap != null) {
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    facet.remove(values[f]);
+                }
+            }
+            f++;
+        }
+        all.remove(id);
+    }
+
+    public static CompressedBitmap bitmapOf(Collection<Book> books) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (Book book : books) {
+            if (book.getId() != null && book.getId() <= Integer.MAX_VALUE) {
+                bitmap.add(book.getId().intValue());
+            }
+        }
+        return bitmap;
+    }
+
+    public synchronized CompressedBitmap allBooks() {
+        return all.copy();
+    }
+
+    /**
+     * Narrows the set to books carrying every selected facet value.
+     * Unknown values leave nothing selected.
+     */
+    public synchronized CompressedBitmap filter(CompressedBitmap books, Map<String, String> selected) {
+        CompressedBitmap result = books;
+        for (Map.Entry<String, String> selection : selected.entrySet()) {
+            Map<String, CompressedBitmap> facet = facets.get(selection.getKey());
+            if (facet == null || selection.getValue() == null) {
+                continue;
+            }
+            String value = selection.getKey().equals(AVAILABILITY) ? selection.getValue() : normalize(selection.getValue());
+            CompressedBitmap bitmap = facet.get(value);
+            result = bitmap == null ? new CompressedBitmap() : result.and(bitmap);
+        }
+        return result;
+    }
+
+    /** The most frequent values of every facet within the given set, with their counts. */
+    public synchronized Map<String, Map<String, Integer>> counts(CompressedBitmap books, int valuesPerFacet) {
+        Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, CompressedBitmap>> facet : facets.entrySet()) {
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+            for (Map.Entry<String, CompressedBitmap> value : facet.getValue().entrySet()) {
+                int count = books.andCardinality(value.getValue());
+                if (count > 0) {
+                    counts.add(Map.entry(value.getKey(), count));
+                }
+            }
+            counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            Map<String, Integer> top = new LinkedHashMap<>();
+            counts.stream().limit(valuesPerFacet).forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+            result.put(facet.getKey(), top);
+        }
+        return result;
+    }
+
+    // Facet values are grouped case-insensitively; surrounding whitespace is ignored
+    private static String normalize(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over the searchable text fields of every book, ranked with BM25.
+ *
+ * Every query term must match in at least one of the requested fields. The last
+ * term is also expanded as a prefix so that results keep up with a user who is
+ * still typing.
+ *
+ * Stays empty when lms.search.segments.enabled is set, since {@link SegmentIndex}
+ * then serves text search.
+ */
+@Component
+public class FullTextIndex implements BookIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_PENALTY = 0.5;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_QUERY_TERMS = 32;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Book> docs = new HashMap<>();
+    private final Map<Long, int[]> docLengths = new HashMap<>();
+    private final EnumMap<BookField, TreeMap<String, Map<Long, Integer>>> postings = new EnumMap<>(BookField.class);
+    private final long[] totalLengths = new long[BookField.values().length];
+    private final boolean enabled;
+    private volatile boolean ready;
+
+    public FullTextIndex(@Value("${lms.search.segments.enabled:false}") boolean segmentsEnabled) {
+        this.enabled = !segmentsEnabled;
+        for (BookField field : BookField.values()) {
+            postings.put(field, new TreeMap<>());
+        }
+    }
+
+    public record Hit(Book book, double score) {}
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Book find(Long bookId) {
+        lock.readLock().lock();
+        try {
+            return docs.get(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        if (!enabled || book.getId() == null) {
+            return;
+        }
+        Book copy = new Book();
+        BeanUtils.copyProperties(book, copy);
+        lock.writeLock().lock();
+        try {
+            removeLocked(copy.getId());
+            int[] lengths = new int[BookField.values().length];
+            for (BookField field : BookField.values()) {
+                List<String> tokens = TextAnalyzer.tokenize(field.valueOf(copy));
+                lengths[field.ordinal()] = tokens.size();
+                totalLengths[field.ordinal()] += tokens.size();
+                TreeMap<String, Map<Long, Integer>> dictionary = postings.get(field);
+                for (String token : tokens) {
+                    dictionary.computeIfAbsent(token, t -> new HashMap<>()).merge(copy.getId(), 1, Integer::sum);
+                }
+            }
+            docs.put(copy.getId(), copy);
+            docLengths.put(copy.getId(), lengths);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void availabilityChanged(Long bookId, boolean available) {
+        lock.writeLock().lock();
+        try {
+            Book book = copyOf(bookId);
+            if (book != null) {
+                book.setAvailable(available);
+                docs.put(bookId, book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void copiesChanged(Long bookId, int availableCopies, int totalCopies) {
+        lock.writeLock().lock();
+        try {
+            Book book = copyOf(bookId);
+            if (book != null) {
+                book.setAvailableCopies(availableCopies);
+                book.setTotalCopies(totalCopies);
+                book.setAvailable(availableCopies > 0);
+                docs.put(bookId, book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            docLengths.clear();
+            postings.values().forEach(Map::clear);
+            Arrays.fill(totalLengths, 0);
+            ready = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stored books are handed out by find and search, so changes replace them instead of
+    // mutating an instance a response may be serializing
+    private Book copyOf(Long bookId) {
+        Book book = docs.get(bookId);
+        if (book == null) {
+            return null;
+        }
+        Book copy = new Book();
+        BeanUtils.copyProperties(book, copy);
+        return copy;
+    }
+
+    private void removeLocked(Long bookId) {
+        Book old = docs.remove(bookId);
+        int[] lengths = docLengths.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        for (BookField field : BookField.values()) {
+            totalLengths[field.ordinal()] -= lengths[field.ordinal()];
+            TreeMap<String, Map<Long, Integer>> dictionary = postings.get(field);
+            for (String token : new HashSet<>(TextAnalyzer.tokenize(field.valueOf(old)))) {
+                Map<Long, Integer> list = dictionary.get(token);
+                if (list != null) {
+                    list.remove(bookId);
+                    if (list.isEmpty()) {
+                        dictionary.remove(token);
+                    }
+                }
+            }
+        }
+    }
+
+    public List<Book> search(String query, Set<BookField> fields) {
+        return search(query, fields, Integer.MAX_VALUE).stream().map(Hit::book).toList();
+    }
+
+    public List<Hit> search(String query, Set<BookField> fields, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(query)));
+        if (terms.isEmpty() || fields.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+        long allTerms = (1L << terms.size()) - 1;
+
+        lock.readLock().lock();
+        try {
+            int n = docs.size();
+            if (n == 0) {
+                return List.of();
+            }
+            Map<Long, double[]> scores = new HashMap<>();
+            Map<Long, long[]> matched = new HashMap<>();
+            for (int t = 0; t < terms.size(); t++) {
+                String term = terms.get(t);
+                boolean last = t == terms.size() - 1;
+                for (BookField field : fields) {
+                    TreeMap<String, Map<Long, Integer>> dictionary = postings.get(field);
+                    double avgLength = Math.max(1.0, (double) totalLengths[field.ordinal()] / n);
+                    Map<Long, Integer> exact = dictionary.get(term);
+                    if (exact != null) {
+                        accumulate(exact, field, avgLength, n, 1.0, t, scores, matched);
+                    }
+                    if (last) {
+                        int expansions = 0;
+                        for (Map.Entry<String, Map<Long, Integer>> entry
+                                : dictionary.subMap(term, false, term + Character.MAX_VALUE, false).entrySet()) {
+                            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                                break;
+                            }
+                            accumulate(entry.getValue(), field, avgLength, n, PREFIX_PENALTY, t, scores, matched);
+                        }
+                    }
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            for (Map.Entry<Long, long[]> entry : matched.entrySet()) {
+                if (entry.getValue()[0] == allTerms) {
+                    hits.add(new Hit(docs.get(entry.getKey()), scores.get(entry.getKey())[0]));
+                }
+            }
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                    .thenComparing(hit -> hit.book().getId()));
+            return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void accumulate(Map<Long, Integer> list, BookField field, double avgLength, int n, double boost,
+                            int termIndex, Map<Long, double[]> scores, Map<Long, long[]> matched) {
+        int df = list.size();
+        double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Long, Integer> posting : list.entrySet()) {
+            int tf = posting.getValue();
+            int length = docLengths.get(posting.getKey())[field.ordinal()];
+            double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+            scores.computeIfAbsent(posting.getKey(), id -> new double[1])[0] += field.weight() * boost * idf * norm;
+            matched.computeIfAbsent(posting.getKey(), id -> new long[1])[0] |= 1L << termIndex;
+        }
+    }
+}
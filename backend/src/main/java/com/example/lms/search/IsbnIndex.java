@@ -0,0 +1,54 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import com.example.lms.util.IsbnUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical ISBN-13 to book id, for exact lookups such as barcode scans.
+ * Reads are lock-free; writers synchronize so both maps stay consistent.
+ */
+@Component
+public class IsbnIndex implements BookIndex {
+    private final Map<String, Long> bookIds = new ConcurrentHashMap<>();
+    private final Map<Long, String> isbns = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized void index(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        removeLocked(book.getId());
+        String canonical = IsbnUtil.canonicalize(book.getIsbn());
+        if (canonical != null) {
+            bookIds.put(canonical, book.getId());
+            isbns.put(book.getId(), canonical);
+        }
+    }
+
+    @Override
+    public synchronized void remove(Long bookId) {
+        removeLocked(bookId);
+    }
+
+    @Override
+    public synchronized void clear() {
+        bookIds.clear();
+        isbns.clear();
+    }
+
+    private void removeLocked(Long bookId) {
+        String canonical = isbns.remove(bookId);
+        if (canonical != null) {
+            bookIds.remove(canonical, bookId);
+        }
+    }
+
+    /** Id of the book with this canonical ISBN, or null. */
+    public Long find(String canonicalIsbn) {
+        return bookIds.get(canonicalIsbn);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.lms.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Weighted radix trie (path-compressed, children kept in sorted arrays) that
+ * answers top-k completions of a prefix. Every node records the highest weight
+ * in its subtree, so a best-first walk can stop after k results.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+final class RadixTrie {
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        String label;
+        Node[] children = NO_CHILDREN;
+        Terminal terminal;
+        long maxWeight;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class Terminal {
+        final String text;
+        long weight;
+        int refs;
+
+        Terminal(String text) {
+            this.text = text;
+        }
+    }
+
+    record Completion(String text, long weight) {}
+
+    private record Candidate(Node node, Terminal terminal, long priority, String key) {}
+
+    // Best first; equal weights come out in key order, so a cut at k keeps the first keys
+    private static final Comparator<Candidate> BEST_FIRST = Comparator.comparingLong(Candidate::priority).reversed()
+            .thenComparing(Candidate::key);
+
+    private final Node root = new Node("");
+
+    void clear() {
+        root.children = NO_CHILDREN;
+        root.terminal = null;
+        root.maxWeight = 0;
+    }
+
+    /** Adds weight to the entry for key, creating it with the given display text if needed. */
+    void add(String key, String text, long weight) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (true) {
+            path.add(node);
+            if (i == key.length()) {
+                break;
+            }
+            int slot = findChild(node, key.charAt(i));
+            if (slot < 0) {
+                Node leaf = new Node(key.substring(i));
+                insertChild(node, -slot - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[slot];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children = new Node[]{child};
+                middle.maxWeight = child.maxWeight;
+                node.children[slot] = middle;
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.terminal == null) {
+            node.terminal = new Terminal(text);
+        }
+        node.terminal.weight += weight;
+        node.terminal.refs++;
+        for (int p = path.size() - 1; p >= 0; p--) {
+            refreshMax(path.get(p));
+        }
+    }
+
+    /** Takes back weight added for key; the entry disappears once every add has been undone. */
+    void subtract(String key, long weight) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        path.add(node);
+        while (i < key.length()) {
+            int slot = findChild(node, key.charAt(i));
+            if (slot < 0) {
+                return;
+            }
+            Node child = node.children[slot];
+            if (!key.startsWith(child.label, i)) {
+                return;
+            }
+            node = child;
+            i += child.label.length();
+            path.add(node);
+        }
+        if (node.terminal == null) {
+            return;
+        }
+        node.terminal.weight -= weight;
+        if (--node.terminal.refs <= 0) {
+            node.terminal = null;
+        }
+
+        for (int p = path.size() - 1; p > 0; p--) {
+            Node current = path.get(p);
+            Node parent = path.get(p - 1);
+            if (current.terminal == null && current.children.length == 0) {
+                removeChild(parent, current);
+            } else if (current.terminal == null && current.children.length == 1) {
+                Node only = current.children[0];
+                current.label = current.label + only.label;
+                current.children = only.children;
+                current.terminal = only.terminal;
+            }
+            refreshMax(current);
+        }
+        refreshMax(root);
+    }
+
+    List<Completion> complete(String prefix, int limit) {
+        Node node = root;
+        StringBuilder reached = new StringBuilder();
+        int i = 0;
+        while (i < prefix.length()) {
+            int slot = findChild(node, prefix.charAt(i));
+            if (slot < 0) {
+                return List.of();
+            }
+            Node child = node.children[slot];
+            int common = commonPrefix(child.label, prefix, i);
+            if (i + common < prefix.length() && common < child.label.length()) {
+                return List.of();
+            }
+            node = child;
+            reached.append(child.label);
+            i += common;
+        }
+
+        List<Completion> results = new ArrayList<>();
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(BEST_FIRST);
+        queue.add(new Candidate(node, null, node.maxWeight, reached.toString()));
+        while (!queue.isEmpty() && results.size() < limit) {
+            Candidate next = queue.poll();
+            if (next.terminal() != null) {
+                results.add(new Completion(next.terminal().text, next.terminal().weight));
+                continue;
+            }
+            Node current = next.node();
+            if (current.terminal != null) {
+                queue.add(new Candidate(null, current.terminal, current.terminal.weight, next.key()));
+            }
+            for (Node child : current.children) {
+                queue.add(new Candidate(child, null, child.maxWeight, next.key() + child.label));
+            }
+        }
+        return results;
+    }
+
+    private static void refreshMax(Node node) {
+        long max = node.terminal == null ? Long.MIN_VALUE : node.terminal.weight;
+        for (Node child : node.children) {
+            max = Math.max(max, child.maxWeight);
+        }
+        node.maxWeight = max;
+    }
+
+    private static int findChild(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].label.charAt(0);
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static void insertChild(Node node, int index, Node child) {
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        children[index] = child;
+        System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+        node.children = children;
+    }
+
+    private static void removeChild(Node node, Node child) {
+        int index = findChild(node, child.label.charAt(0));
+        Node[] children = new Node[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        node.children = children;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int n = 0;
+        while (n < max && label.charAt(n) == key.charAt(offset + n)) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import com.example.lms.util.IsbnUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of search results keyed by (type, normalized keyword).
+ *
+ * BookService reports every write once the indexes have been updated. A change
+ * to a book evicts exactly the entries that either returned the book or whose
+ * query the book now matches; an availability change only evicts the entries
+ * that returned it. Results computed while a write was in flight are not cached.
+ */
+@Component
+public class SearchCache {
+    private static final BookField[] FUZZY_FIELDS = {BookField.TITLE, BookField.AUTHOR};
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private record Key(String type, String keyword) {}
+
+    private record Entry(List<String> terms, List<Book> results, Set<Long> ids) {}
+
+    public SearchCache(@Value("${lms.search.cache.size:1000}") int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > SearchCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Cached results for the query, computing and caching them on a miss. */
+    public List<Book> get(String type, String keyword, Supplier<List<Book>> search) {
+        if (capacity <= 0 || keyword == null) {
+            return search.get();
+        }
+        List<String> terms = "isbn".equals(type) ? List.of()
+                : new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(keyword)));
+        Key key = new Key(type, "isbn".equals(type) ? isbnKey(keyword) : String.join(" ", terms));
+        long startGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.results();
+            }
+            misses++;
+            startGeneration = generation;
+        }
+        List<Book> results = List.copyOf(search.get());
+        Set<Long> ids = new HashSet<>();
+        for (Book book : results) {
+            ids.add(book.getId());
+        }
+        synchronized (this) {
+            if (generation == startGeneration) {
+                entries.put(key, new Entry(terms, results, ids));
+            }
+        }
+        return results;
+    }
+
+    public synchronized void bookChanged(Book book) {
+        generation++;
+        invalidate(entry -> entry.getValue().ids().contains(book.getId())
+                || matches(entry.getKey(), entry.getValue(), book));
+    }
+
+    public synchronized void bookRemoved(Long bookId) {
+        generation++;
+        invalidate(entry -> entry.getValue().ids().contains(bookId));
+    }
+
+    public synchronized void availabilityChanged(Long bookId) {
+        generation++;
+        invalidate(entry -> entry.getValue().ids().contains(bookId));
+    }
+
+    // Bulk writes drop everything rather than matching each book against each entry
+    public synchronized void clear() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+
+    private void invalidate(Predicate<Map.Entry<Key, Entry>> stale) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (stale.test(it.next())) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    // Whether the query would now return the book, mirroring the search it caches
+    private static boolean matches(Key key, Entry entry, Book book) {
+        switch (key.type()) {
+            case "isbn":
+                return key.keyword().equals(isbnKey(book.getIsbn()));
+            case "fuzzy":
+                return fuzzyMatches(entry.terms(), book);
+            case "title":
+                return textMatches(entry.terms(), book, BookField.TITLE);
+            case "author":
+                return textMatches(entry.terms(), book, BookField.AUTHOR);
+            case "genre":
+                return textMatches(entry.terms(), book, BookField.GENRE);
+            default:
+                return textMatches(entry.terms(), book, BookField.values());
+        }
+    }
+
+    // Every term is a word of the book, the last one possibly as a prefix
+    private static boolean textMatches(List<String> terms, Book book, BookField... fields) {
+        Set<String> tokens = new HashSet<>();
+        for (BookField field : fields) {
+            tokens.addAll(TextAnalyzer.tokenize(field.valueOf(book)));
+        }
+        for (int t = 0; t < terms.size(); t++) {
+            String term = terms.get(t);
+            boolean found = tokens.contains(term);
+            if (!found && t == terms.size() - 1) {
+                found = tokens.stream().anyMatch(token -> token.startsWith(term));
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return !terms.isEmpty();
+    }
+
+    private static boolean fuzzyMatches(List<String> terms, Book book) {
+        Set<String> tokens = new HashSet<>();
+        for (BookField field : FUZZY_FIELDS) {
+            tokens.addAll(TextAnalyzer.tokenize(field.valueOf(book)));
+        }
+        for (String term : terms) {
+            int bound = TrigramIndex.maxDistance(term.length());
+            if (tokens.stream().noneMatch(token -> TrigramIndex.boundedDistance(term, token, bound) <= bound)) {
+                return false;
+            }
+        }
+        return !terms.isEmpty();
+    }
+
+    private static String isbnKey(String isbn) {
+        String canonical = IsbnUtil.canonicalize(isbn);
+        return canonical != null ? canonical : isbn == null ? "" : isbn;
+    }
+}
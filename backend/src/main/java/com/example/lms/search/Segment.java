@@ -0,0 +1,250 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Read side of a segment written by {@link SegmentWriter}. All data is read
+ * through a read-only mapping of the file, so postings and stored fields live in
+ * the OS page cache rather than on the heap. Only the deletion bitmap, which
+ * marks documents superseded since the segment was written, is held in memory.
+ *
+ * Reads of the mapping are thread-safe; deletions are guarded by the owning
+ * {@link SegmentIndex}.
+ */
+final class Segment {
+    private static final int FIELDS = SegmentWriter.FIELDS;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final long[] totalLengths = new long[FIELDS];
+    private final int idsOffset;
+    private final int lengthsOffset;
+    private final int storedIndexOffset;
+    private final int termIndexOffset;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    private Segment(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != SegmentWriter.MAGIC) {
+            throw new IOException("Not an index segment: " + file);
+        }
+        docCount = buffer.getInt(4);
+        termCount = buffer.getInt(8);
+        int position = 12;
+        for (int f = 0; f < FIELDS; f++) {
+            totalLengths[f] = buffer.getLong(position);
+            position += 8;
+        }
+        idsOffset = buffer.getInt(position);
+        lengthsOffset = buffer.getInt(position + 4);
+        storedIndexOffset = buffer.getInt(position + 8);
+        termIndexOffset = buffer.getInt(position + 12);
+    }
+
+    static Segment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    int liveCount() {
+        return docCount - deletedCount;
+    }
+
+    long totalLength(BookField field) {
+        return totalLengths[field.ordinal()];
+    }
+
+    long id(int ordinal) {
+        return buffer.getLong(idsOffset + 8 * ordinal);
+    }
+
+    /** Ordinal of the document with this id, or -1. */
+    int ordinalOf(long id) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = id(mid);
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Ordinal of the first document with an id greater than this one, or docCount if there is none. */
+    int firstOrdinalAfter(long id) {
+        int low = 0;
+        int high = docCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (id(mid) <= id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    boolean isLive(int ordinal) {
+        return !deleted.get(ordinal);
+    }
+
+    void delete(int ordinal) {
+        if (!deleted.get(ordinal)) {
+            deleted.set(ordinal);
+            deletedCount++;
+        }
+    }
+
+    BitSet deletedDocs() {
+        return (BitSet) deleted.clone();
+    }
+
+    int fieldLength(int ordinal, BookField field) {
+        return buffer.getInt(lengthsOffset + 4 * (ordinal * FIELDS + field.ordinal()));
+    }
+
+    Book book(int ordinal) {
+        int start = buffer.getInt(storedIndexOffset + 4 * ordinal);
+        int end = buffer.getInt(storedIndexOffset + 4 * (ordinal + 1));
+        ByteBuffer in = buffer.slice(start, end - start);
+        Book book = new Book();
+        book.setId(in.getLong());
+        book.setTitle(readString(in));
+        book.setAuthor(readString(in));
+        book.setIsbn(readString(in));
+        book.setCanonicalIsbn(readString(in));
+        book.setGenre(readString(in));
+        book.setEdition(readString(in));
+        book.setPublisher(readString(in));
+        int year = in.getInt();
+        book.setPublicationYear(year == Integer.MIN_VALUE ? null : year);
+        book.setAvailable(in.get() != 0);
+        int totalCopies = in.getInt();
+        book.setTotalCopies(totalCopies == Integer.MIN_VALUE ? null : totalCopies);
+        int availableCopies = in.getInt();
+        book.setAvailableCopies(availableCopies == Integer.MIN_VALUE ? null : availableCopies);
+        return book;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    /** Position of the term in the dictionary, or -(insertion point) - 1 if absent. */
+    int findTerm(BookField field, byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, field.ordinal(), term, false);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    boolean termStartsWith(int termOrdinal, BookField field, byte[] prefix) {
+        return compareTerm(termOrdinal, field.ordinal(), prefix, true) == 0;
+    }
+
+    // Field first, then unsigned bytes; with prefixOnly, any term extending the key compares equal
+    private int compareTerm(int termOrdinal, int field, byte[] key, boolean prefixOnly) {
+        int position = buffer.getInt(termIndexOffset + 4 * termOrdinal);
+        int termField = buffer.get(position);
+        if (termField != field) {
+            return Integer.compare(termField, field);
+        }
+        int length = buffer.getInt(position + 1);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(position + 5 + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        if (prefixOnly && length >= key.length) {
+            return 0;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    String termText(int termOrdinal) {
+        int position = buffer.getInt(termIndexOffset + 4 * termOrdinal);
+        byte[] bytes = new byte[buffer.getInt(position + 1)];
+        buffer.get(position + 5, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int docFrequency(int termOrdinal) {
+        int position = buffer.getInt(termIndexOffset + 4 * termOrdinal);
+        return buffer.getInt(position + 5 + buffer.getInt(position + 1));
+    }
+
+    int postings(int termOrdinal) {
+        int position = buffer.getInt(termIndexOffset + 4 * termOrdinal);
+        return buffer.getInt(position + 9 + buffer.getInt(position + 1));
+    }
+
+    int postingDoc(int postings, int i) {
+        return buffer.getInt(postings + 8 * i);
+    }
+
+    int postingFrequency(int postings, int i) {
+        return buffer.getInt(postings + 8 * i + 4);
+    }
+
+    // On Linux the mapping outlives the unlinked file, so in-flight readers are unaffected
+    void deleteFile() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,739 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full-text index for catalogs too large to keep on the heap, enabled with
+ * lms.search.segments.enabled=true. Ranking matches {@link FullTextIndex}.
+ *
+ * Books are buffered in memory, where queries search them alongside the
+ * segments, and flushed into immutable, memory-mapped {@link Segment} files once
+ * the buffer is full or at the next checkpoint; an update or delete only marks the
+ * old copy deleted in its segment. A background task merges the smallest
+ * segments, dropping deleted documents.
+ *
+ * Segments survive restarts. A manifest next to them lists the live segment files
+ * with their deletion bitmaps, the highest book id indexed and a checkpoint: a
+ * database time before which every change to the catalog is in the segments. On
+ * startup the segments are reopened and {@link CatalogIndexer} replays only the
+ * books added or updated since the checkpoint (book.updated_at) and drops those
+ * deleted meanwhile. Without a usable manifest the directory is emptied and the
+ * index built from scratch.
+ */
+@Component
+@ConditionalOnProperty(name = "lms.search.segments.enabled", havingValue = "true")
+public class SegmentIndex implements BookIndex {
+    private static final String SUFFIX = ".seg";
+    private static final String MANIFEST = "segments.manifest";
+    private static final int MANIFEST_MAGIC = 0x4C4D534D;
+    // Rows changed shortly before a checkpoint are replayed as well: their commit may have
+    // preceded it while their index update arrived after it, and entity saves stamp updated_at
+    // with the application's clock rather than the database's
+    private static final Duration REPLAY_OVERLAP = Duration.ofMinutes(10);
+    private static final int FLUSH_DOCS = 50_000;
+    private static final int MERGE_FACTOR = 10;
+    private static final int MAX_MERGED_DOCS = 2_000_000;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_PENALTY = 0.5;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_QUERY_TERMS = 32;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object mergeLock = new Object();
+    private final Path directory;
+    private final JdbcTemplate jdbcTemplate;
+    private final TreeMap<Long, Book> pending = new TreeMap<>();
+    // Inverted index of the pending books, so they are searchable before they are flushed
+    private final EnumMap<BookField, TreeMap<String, Map<Long, Integer>>> pendingPostings =
+            new EnumMap<>(BookField.class);
+    private final Map<Long, int[]> pendingLengths = new HashMap<>();
+    private final long[] pendingTotalLengths = new long[BookField.values().length];
+    private List<Segment> segments = new ArrayList<>();
+    private long nextGeneration;
+    private long epoch;
+    private long lastId;
+    // Null while the segments do not hold a complete catalog, e.g. during the first build
+    private LocalDateTime checkpoint;
+    private volatile boolean changedSinceCheckpoint;
+    // Set while restored segments wait for the changes made since their checkpoint
+    private boolean catchingUp;
+    private long restoredLastId;
+    private LocalDateTime replayFrom;
+
+    private record ScoredDoc(int segment, int ordinal, long id, double score) {}
+
+    public SegmentIndex(@Value("${lms.search.segments.dir:${java.io.tmpdir}/lms-segments}") String directory,
+                        JdbcTemplate jdbcTemplate) {
+        this.directory = Path.of(directory);
+        this.jdbcTemplate = jdbcTemplate;
+        for (BookField field : BookField.values()) {
+            pendingPostings.put(field, new TreeMap<>());
+        }
+        try {
+            Files.createDirectories(this.directory);
+            if (!restore()) {
+                deleteFiles(Set.of());
+                Files.deleteIfExists(this.directory.resolve(MANIFEST));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare segment directory " + directory, e);
+        }
+        System.out.println("Serving book search from on-disk segments in " + this.directory.toAbsolutePath());
+    }
+
+    // Reopens the segments listed in the manifest; false when there is none or it cannot be used
+    private boolean restore() throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return false;
+        }
+        List<Segment> restored = new ArrayList<>();
+        Set<Path> files = new HashSet<>();
+        long maxGeneration = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+            if (in.readInt() != MANIFEST_MAGIC) {
+                throw new IOException("Not a segment manifest: " + manifest);
+            }
+            long restoredId = in.readLong();
+            LocalDateTime restoredCheckpoint = LocalDateTime.parse(in.readUTF());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long[] words = new long[in.readInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = in.readLong();
+                }
+                Segment segment = Segment.open(directory.resolve(name));
+                BitSet deleted = BitSet.valueOf(words);
+                for (int ordinal = deleted.nextSetBit(0); ordinal >= 0; ordinal = deleted.nextSetBit(ordinal + 1)) {
+                    segment.delete(ordinal);
+                }
+                restored.add(segment);
+                files.add(segment.file());
+                maxGeneration = Math.max(maxGeneration,
+                        Long.parseLong(name.substring("segment-".length(), name.length() - SUFFIX.length())));
+            }
+            lastId = restoredId;
+            restoredLastId = restoredId;
+            checkpoint = restoredCheckpoint;
+            replayFrom = restoredCheckpoint.minus(REPLAY_OVERLAP);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Cannot restore index segments, rebuilding them: " + e.getMessage());
+            return false;
+        }
+        segments = restored;
+        nextGeneration = maxGeneration + 1;
+        catchingUp = true;
+        // Segments flushed after the manifest was written hold nothing the replay will not bring back
+        deleteFiles(files);
+        System.out.println("Restored " + restored.size() + " index segments checkpointed at " + checkpoint);
+        return true;
+    }
+
+    private void deleteFiles(Set<Path> keep) throws IOException {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stale) {
+                if (!keep.contains(file)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void index(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        Book copy = new Book();
+        BeanUtils.copyProperties(book, copy);
+        lock.writeLock().lock();
+        try {
+            deleteLocked(copy.getId());
+            removePendingLocked(copy.getId());
+            addPendingLocked(copy);
+            lastId = Math.max(lastId, copy.getId());
+            changedSinceCheckpoint = true;
+            if (pending.size() >= FLUSH_DOCS) {
+                flushLocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removePendingLocked(bookId);
+            deleteLocked(bookId);
+            changedSinceCheckpoint = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stored fields are immutable, so the book is rewritten with the new flag
+    @Override
+    public void availabilityChanged(Long bookId, boolean available) {
+        Book book = find(bookId);
+        if (book != null) {
+            book.setAvailable(available);
+            index(book);
+        }
+    }
+
+    @Override
+    public void copiesChanged(Long bookId, int availableCopies, int totalCopies) {
+        Book book = find(bookId);
+        if (book != null) {
+            book.setAvailableCopies(availableCopies);
+            book.setTotalCopies(totalCopies);
+            book.setAvailable(availableCopies > 0);
+            index(book);
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearPendingLocked();
+            segments.forEach(Segment::deleteFile);
+            segments = new ArrayList<>();
+            epoch++;
+            lastId = 0;
+            checkpoint = null;
+            catchingUp = false;
+            Files.deleteIfExists(directory.resolve(MANIFEST));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot remove segment manifest in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** True while segments restored at startup still lack the changes made since their checkpoint. */
+    public boolean isCatchingUp() {
+        lock.readLock().lock();
+        try {
+            return catchingUp;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replays one keyset batch of the catalog into restored segments. Books added or updated
+     * since the checkpoint are indexed again; restored books with ids in (afterId, throughId]
+     * that the batch does not have were deleted while the application was down. Returns how
+     * many books were indexed again.
+     */
+    public int catchUp(List<Book> batch, long afterId, long throughId) {
+        Set<Long> present = new HashSet<>();
+        int replayed = 0;
+        for (Book book : batch) {
+            present.add(book.getId());
+            if (book.getId() > restoredLastId || book.getUpdatedAt() == null
+                    || !book.getUpdatedAt().isBefore(replayFrom)) {
+                index(book);
+                replayed++;
+            }
+        }
+        // Later ids were never restored; anything indexed under them is live
+        long through = Math.min(throughId, restoredLastId);
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                for (int ordinal = segment.firstOrdinalAfter(afterId);
+                     ordinal < segment.docCount() && segment.id(ordinal) <= through; ordinal++) {
+                    if (segment.isLive(ordinal) && !present.contains(segment.id(ordinal))) {
+                        segment.delete(ordinal);
+                        changedSinceCheckpoint = true;
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return replayed;
+    }
+
+    /** Database time, the clock of the UPDATEs that stamp book.updated_at; taken before a checkpoint's scan. */
+    public LocalDateTime databaseTime() {
+        return jdbcTemplate.queryForObject("select current_timestamp", Timestamp.class).toLocalDateTime();
+    }
+
+    /**
+     * Records that every change made to the catalog before the given database time is in the
+     * segments, ending any catch-up: the buffer is flushed and the manifest rewritten.
+     */
+    public void checkpoint(LocalDateTime time) {
+        lock.writeLock().lock();
+        try {
+            changedSinceCheckpoint = false;
+            flushLocked();
+            checkpoint = time;
+            catchingUp = false;
+            writeManifestLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Keeps the replay after a restart short; skipped while the index is incomplete
+    @Scheduled(fixedDelayString = "${lms.search.segments.checkpoint-interval-ms:60000}")
+    public void checkpointChanges() {
+        if (changedSinceCheckpoint && isComplete()) {
+            checkpoint(databaseTime());
+        }
+    }
+
+    @PreDestroy
+    public void checkpointOnShutdown() {
+        if (!changedSinceCheckpoint || !isComplete()) {
+            return;
+        }
+        LocalDateTime time;
+        try {
+            time = databaseTime();
+        } catch (RuntimeException e) {
+            // The database may already be closed; the buffer is still saved under the last checkpoint
+            lock.readLock().lock();
+            try {
+                time = checkpoint;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        checkpoint(time);
+    }
+
+    private boolean isComplete() {
+        lock.readLock().lock();
+        try {
+            return checkpoint != null && !catchingUp;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a crash leaves the old manifest or
+    // the new one. Segment files it lists are only deleted after it has been replaced.
+    private void writeManifestLocked() {
+        if (checkpoint == null) {
+            return;
+        }
+        Path manifest = directory.resolve(MANIFEST);
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MANIFEST_MAGIC);
+                out.writeLong(lastId);
+                out.writeUTF(checkpoint.toString());
+                out.writeInt(segments.size());
+                for (Segment segment : segments) {
+                    out.writeUTF(segment.file().getFileName().toString());
+                    long[] words = segment.deletedDocs().toLongArray();
+                    out.writeInt(words.length);
+                    for (long word : words) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+            Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The old manifest may now name merged-away files; the next start then rebuilds
+            System.out.println("Cannot write segment manifest: " + e.getMessage());
+        }
+    }
+
+    public Book find(Long bookId) {
+        lock.readLock().lock();
+        try {
+            Book buffered = pending.get(bookId);
+            if (buffered != null) {
+                Book copy = new Book();
+                BeanUtils.copyProperties(buffered, copy);
+                return copy;
+            }
+            for (Segment segment : segments) {
+                int ordinal = segment.ordinalOf(bookId);
+                if (ordinal >= 0 && segment.isLive(ordinal)) {
+                    return segment.book(ordinal);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void deleteLocked(Long bookId) {
+        for (Segment segment : segments) {
+            int ordinal = segment.ordinalOf(bookId);
+            if (ordinal >= 0) {
+                segment.delete(ordinal);
+            }
+        }
+    }
+
+    private void flushLocked() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Path file = directory.resolve("segment-" + nextGeneration++ + SUFFIX);
+        try {
+            SegmentWriter.write(file, pending.values().iterator());
+            segments.add(Segment.open(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write index segment " + file, e);
+        }
+        clearPendingLocked();
+    }
+
+    private void addPendingLocked(Book book) {
+        int[] lengths = new int[BookField.values().length];
+        for (BookField field : BookField.values()) {
+            List<String> tokens = TextAnalyzer.tokenize(field.valueOf(book));
+            lengths[field.ordinal()] = tokens.size();
+            pendingTotalLengths[field.ordinal()] += tokens.size();
+            TreeMap<String, Map<Long, Integer>> dictionary = pendingPostings.get(field);
+            for (String token : tokens) {
+                dictionary.computeIfAbsent(token, t -> new HashMap<>()).merge(book.getId(), 1, Integer::sum);
+            }
+        }
+        pending.put(book.getId(), book);
+        pendingLengths.put(book.getId(), lengths);
+    }
+
+    private void removePendingLocked(Long bookId) {
+        Book old = pending.remove(bookId);
+        int[] lengths = pendingLengths.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        for (BookField field : BookField.values()) {
+            pendingTotalLengths[field.ordinal()] -= lengths[field.ordinal()];
+            TreeMap<String, Map<Long, Integer>> dictionary = pendingPostings.get(field);
+            for (String token : new HashSet<>(TextAnalyzer.tokenize(field.valueOf(old)))) {
+                Map<Long, Integer> list = dictionary.get(token);
+                if (list != null) {
+                    list.remove(bookId);
+                    if (list.isEmpty()) {
+                        dictionary.remove(token);
+                    }
+                }
+            }
+        }
+    }
+
+    private void clearPendingLocked() {
+        pending.clear();
+        pendingLengths.clear();
+        pendingPostings.values().forEach(Map::clear);
+        Arrays.fill(pendingTotalLengths, 0);
+    }
+
+    /** Same semantics as {@link FullTextIndex#search(String, Set, int)}; only the top hits are loaded. */
+    public List<FullTextIndex.Hit> search(String query, Set<BookField> fields, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(query)));
+        if (terms.isEmpty() || fields.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+        long allTerms = (1L << terms.size()) - 1;
+
+        lock.readLock().lock();
+        try {
+            long n = pending.size();
+            long docs = pending.size();
+            long[] totalLengths = pendingTotalLengths.clone();
+            for (Segment segment : segments) {
+                n += segment.liveCount();
+                docs += segment.docCount();
+                for (BookField field : BookField.values()) {
+                    totalLengths[field.ordinal()] += segment.totalLength(field);
+                }
+            }
+            if (n == 0) {
+                return List.of();
+            }
+
+            // Keyed by segment position in the high word and document ordinal in the low word;
+            // pending books by their negated id
+            Map<Long, double[]> scores = new HashMap<>();
+            Map<Long, long[]> matched = new HashMap<>();
+            for (int t = 0; t < terms.size(); t++) {
+                String term = terms.get(t);
+                for (BookField field : fields) {
+                    double avgLength = Math.max(1.0, (double) totalLengths[field.ordinal()] / docs);
+                    accumulate(term, field, avgLength, n, 1.0, t, scores, matched);
+                    if (t == terms.size() - 1) {
+                        for (String expansion : prefixExpansions(field, term)) {
+                            accumulate(expansion, field, avgLength, n, PREFIX_PENALTY, t, scores, matched);
+                        }
+                    }
+                }
+            }
+
+            List<ScoredDoc> hits = new ArrayList<>();
+            for (Map.Entry<Long, long[]> entry : matched.entrySet()) {
+                if (entry.getValue()[0] == allTerms) {
+                    long key = entry.getKey();
+                    if (key < 0) {
+                        hits.add(new ScoredDoc(-1, -1, -key, scores.get(key)[0]));
+                    } else {
+                        int s = (int) (key >>> 32);
+                        int ordinal = (int) key;
+                        hits.add(new ScoredDoc(s, ordinal, segments.get(s).id(ordinal), scores.get(key)[0]));
+                    }
+                }
+            }
+            hits.sort(Comparator.comparingDouble(ScoredDoc::score).reversed().thenComparingLong(ScoredDoc::id));
+            List<FullTextIndex.Hit> top = new ArrayList<>(Math.min(limit, hits.size()));
+            for (ScoredDoc hit : hits.subList(0, Math.min(limit, hits.size()))) {
+                Book book;
+                if (hit.segment() < 0) {
+                    book = new Book();
+                    BeanUtils.copyProperties(pending.get(hit.id()), book);
+                } else {
+                    book = segments.get(hit.segment()).book(hit.ordinal());
+                }
+                top.add(new FullTextIndex.Hit(book, hit.score()));
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private SortedSet<String> prefixExpansions(BookField field, String term) {
+        byte[] prefix = term.getBytes(StandardCharsets.UTF_8);
+        TreeSet<String> expansions = new TreeSet<>();
+        for (String buffered : pendingPostings.get(field).subMap(term, false, term + Character.MAX_VALUE, false)
+                .keySet()) {
+            if (expansions.size() == MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            expansions.add(buffered);
+        }
+        for (Segment segment : segments) {
+            int found = segment.findTerm(field, prefix);
+            int termOrdinal = found >= 0 ? found + 1 : -found - 1;
+            int taken = 0;
+            while (termOrdinal < segment.termCount() && taken < MAX_PREFIX_EXPANSIONS
+                    && segment.termStartsWith(termOrdinal, field, prefix)) {
+                expansions.add(segment.termText(termOrdinal++));
+                taken++;
+            }
+        }
+        while (expansions.size() > MAX_PREFIX_EXPANSIONS) {
+            expansions.pollLast();
+        }
+        return expansions;
+    }
+
+    private void accumulate(String text, BookField field, double avgLength, long n, double boost, int termIndex,
+                            Map<Long, double[]> scores, Map<Long, long[]> matched) {
+        byte[] term = text.getBytes(StandardCharsets.UTF_8);
+        Map<Long, Integer> buffered = pendingPostings.get(field).getOrDefault(text, Map.of());
+        int[] termOrdinals = new int[segments.size()];
+        long df = buffered.size();
+        for (int s = 0; s < segments.size(); s++) {
+            termOrdinals[s] = segments.get(s).findTerm(field, term);
+            if (termOrdinals[s] >= 0) {
+                df += segments.get(s).docFrequency(termOrdinals[s]);
+            }
+        }
+        if (df == 0) {
+            return;
+        }
+        // Document frequencies still count deleted copies until their segment is merged
+        df = Math.min(df, n);
+        double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Long, Integer> posting : buffered.entrySet()) {
+            long key = -posting.getKey();
+            if (termIndex > 0 && !matched.containsKey(key)) {
+                continue;
+            }
+            int tf = posting.getValue();
+            int length = pendingLengths.get(posting.getKey())[field.ordinal()];
+            double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+            scores.computeIfAbsent(key, k -> new double[1])[0] += field.weight() * boost * idf * norm;
+            matched.computeIfAbsent(key, k -> new long[1])[0] |= 1L << termIndex;
+        }
+        for (int s = 0; s < segments.size(); s++) {
+            if (termOrdinals[s] < 0) {
+                continue;
+            }
+            Segment segment = segments.get(s);
+            int postings = segment.postings(termOrdinals[s]);
+            int count = segment.docFrequency(termOrdinals[s]);
+            for (int i = 0; i < count; i++) {
+                int ordinal = segment.postingDoc(postings, i);
+                if (!segment.isLive(ordinal)) {
+                    continue;
+                }
+                int tf = segment.postingFrequency(postings, i);
+                int length = segment.fieldLength(ordinal, field);
+                double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+                long key = (long) s << 32 | ordinal;
+                // Every term must match, so after the first term only existing candidates are updated
+                if (termIndex > 0 && !matched.containsKey(key)) {
+                    continue;
+                }
+                scores.computeIfAbsent(key, k -> new double[1])[0] += field.weight() * boost * idf * norm;
+                matched.computeIfAbsent(key, k -> new long[1])[0] |= 1L << termIndex;
+            }
+        }
+    }
+
+    /**
+     * Merges the MERGE_FACTOR smallest segments (by live documents) into one once
+     * there are more than that many. Heavily updated segments shrink as their
+     * documents are deleted, so they are rewritten sooner. The merged file is
+     * written without holding the index lock; deletions that happen meanwhile
+     * are carried over when it is swapped in.
+     */
+    @Scheduled(fixedDelayString = "${lms.search.segments.merge-interval-ms:30000}")
+    public void merge() {
+        synchronized (mergeLock) {
+            boolean merged;
+            do {
+                merged = mergeOnce();
+            } while (merged);
+        }
+    }
+
+    private boolean mergeOnce() {
+        List<Segment> merging;
+        List<BitSet> deletedAtStart = new ArrayList<>();
+        long mergeEpoch;
+        long generation;
+        lock.readLock().lock();
+        try {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.liveCount() < MAX_MERGED_DOCS) {
+                    candidates.add(segment);
+                }
+            }
+            if (candidates.size() <= MERGE_FACTOR) {
+                return false;
+            }
+            candidates.sort(Comparator.comparingInt(Segment::liveCount));
+            merging = new ArrayList<>(candidates.subList(0, MERGE_FACTOR));
+            for (Segment segment : merging) {
+                deletedAtStart.add(segment.deletedDocs());
+            }
+            mergeEpoch = epoch;
+            generation = nextGeneration++;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long start = System.currentTimeMillis();
+        Path file = directory.resolve("segment-" + generation + SUFFIX);
+        Segment merged;
+        try {
+            int docCount = SegmentWriter.write(file, liveBooks(merging, deletedAtStart));
+            merged = Segment.open(file);
+            System.out.println("Merged " + merging.size() + " index segments into " + docCount + " books in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException e) {
+            System.out.println("Index segment merge failed: " + e.getMessage());
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (epoch != mergeEpoch) {
+                merged.deleteFile();
+                return false;
+            }
+            for (int m = 0; m < merging.size(); m++) {
+                Segment old = merging.get(m);
+                BitSet deletedSince = old.deletedDocs();
+                deletedSince.andNot(deletedAtStart.get(m));
+                for (int ordinal = deletedSince.nextSetBit(0); ordinal >= 0;
+                     ordinal = deletedSince.nextSetBit(ordinal + 1)) {
+                    int mergedOrdinal = merged.ordinalOf(old.id(ordinal));
+                    if (mergedOrdinal >= 0) {
+                        merged.delete(mergedOrdinal);
+                    }
+                }
+            }
+            List<Segment> next = new ArrayList<>(segments);
+            next.removeAll(merging);
+            if (merged.liveCount() > 0) {
+                next.add(merged);
+            } else {
+                merged.deleteFile();
+            }
+            segments = next;
+            writeManifestLocked();
+            merging.forEach(Segment::deleteFile);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Live documents of several segments in ascending id order; an id is live in at most one of them
+    private static Iterator<Book> liveBooks(List<Segment> sources, List<BitSet> deleted) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+                Comparator.comparingLong(head -> sources.get(head[0]).id(head[1])));
+        for (int s = 0; s < sources.size(); s++) {
+            int ordinal = deleted.get(s).nextClearBit(0);
+            if (ordinal < sources.get(s).docCount()) {
+                heads.add(new int[]{s, ordinal});
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Book next() {
+                int[] head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                Segment segment = sources.get(head[0]);
+                Book book = segment.book(head[1]);
+                int following = deleted.get(head[0]).nextClearBit(head[1] + 1);
+                if (following < segment.docCount()) {
+                    heads.add(new int[]{head[0], following});
+                }
+                return book;
+            }
+        };
+    }
+}
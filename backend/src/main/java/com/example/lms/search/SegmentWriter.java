@@ -0,0 +1,206 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Writes an immutable index segment file that {@link Segment} maps into memory.
+ *
+ * Layout (big-endian, every offset absolute):
+ * <pre>
+ * header       magic, docCount, termCount, total token count per field,
+ *              and the offsets of the sections below
+ * stored data  one record per document: id, the string fields, year, available,
+ *              total and available copies
+ * ids          docCount longs, ascending; a document's position is its ordinal
+ * lengths      docCount x fields ints: token count of each field
+ * stored index docCount + 1 ints: start of each stored record, then the end
+ * term index   termCount ints: start of each term entry
+ * terms        field ordinal (byte), UTF-8 length and bytes, df, postings offset;
+ *              sorted by field, then by unsigned UTF-8 bytes
+ * postings     df pairs of (doc ordinal, term frequency) per term
+ * </pre>
+ * Books must arrive in ascending id order.
+ */
+final class SegmentWriter {
+    static final int MAGIC = 0x4C4D5332;
+    static final int FIELDS = BookField.values().length;
+    static final int HEADER_BYTES = 4 * 3 + 8 * FIELDS + 4 * 5;
+
+    private SegmentWriter() {
+    }
+
+    /** Writes the books to a new file and returns how many were written. */
+    static int write(Path file, Iterator<Book> books) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            return write(channel, books);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private static int write(FileChannel channel, Iterator<Book> books) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        out.write(new byte[HEADER_BYTES]);
+
+        long[] ids = new long[1024];
+        int[] storedOffsets = new int[1025];
+        int[] lengths = new int[1024 * FIELDS];
+        long[] totalLengths = new long[FIELDS];
+        List<Map<String, IntList>> postings = new ArrayList<>();
+        for (int f = 0; f < FIELDS; f++) {
+            postings.add(new HashMap<>());
+        }
+
+        int docCount = 0;
+        long previousId = Long.MIN_VALUE;
+        while (books.hasNext()) {
+            Book book = books.next();
+            if (book.getId() <= previousId) {
+                throw new IllegalArgumentException("Books must be written in ascending id order");
+            }
+            previousId = book.getId();
+            if (docCount == ids.length) {
+                ids = Arrays.copyOf(ids, docCount * 2);
+                storedOffsets = Arrays.copyOf(storedOffsets, docCount * 2 + 1);
+                lengths = Arrays.copyOf(lengths, docCount * 2 * FIELDS);
+            }
+            ids[docCount] = book.getId();
+            storedOffsets[docCount] = checkedPosition(out);
+            writeStored(out, book);
+            for (BookField field : BookField.values()) {
+                List<String> tokens = TextAnalyzer.tokenize(field.valueOf(book));
+                lengths[docCount * FIELDS + field.ordinal()] = tokens.size();
+                totalLengths[field.ordinal()] += tokens.size();
+                Map<String, Integer> frequencies = new HashMap<>();
+                for (String token : tokens) {
+                    frequencies.merge(token, 1, Integer::sum);
+                }
+                Map<String, IntList> dictionary = postings.get(field.ordinal());
+                for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                    IntList list = dictionary.computeIfAbsent(entry.getKey(), t -> new IntList());
+                    list.add(docCount);
+                    list.add(entry.getValue());
+                }
+            }
+            docCount++;
+        }
+
+        int idsOffset = checkedPosition(out);
+        storedOffsets[docCount] = idsOffset;
+        for (int i = 0; i < docCount; i++) {
+            out.writeLong(ids[i]);
+        }
+        int lengthsOffset = checkedPosition(out);
+        for (int i = 0; i < docCount * FIELDS; i++) {
+            out.writeInt(lengths[i]);
+        }
+        int storedIndexOffset = checkedPosition(out);
+        for (int i = 0; i <= docCount; i++) {
+            out.writeInt(storedOffsets[i]);
+        }
+
+        List<TermEntry> terms = new ArrayList<>();
+        for (int f = 0; f < FIELDS; f++) {
+            for (Map.Entry<String, IntList> entry : postings.get(f).entrySet()) {
+                terms.add(new TermEntry(f, entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+            }
+        }
+        terms.sort((a, b) -> a.field != b.field ? Integer.compare(a.field, b.field)
+                : Arrays.compareUnsigned(a.bytes, b.bytes));
+
+        int termIndexOffset = checkedPosition(out);
+        long entryStart = termIndexOffset + 4L * terms.size();
+        for (TermEntry term : terms) {
+            out.writeInt(checkedOffset(entryStart));
+            entryStart += 1 + 4 + term.bytes.length + 4 + 4;
+        }
+        long postingsStart = entryStart;
+        for (TermEntry term : terms) {
+            out.writeByte(term.field);
+            out.writeInt(term.bytes.length);
+            out.write(term.bytes);
+            out.writeInt(term.postings.size / 2);
+            out.writeInt(checkedOffset(postingsStart));
+            postingsStart += 4L * term.postings.size;
+        }
+        int postingsOffset = checkedPosition(out);
+        for (TermEntry term : terms) {
+            for (int i = 0; i < term.postings.size; i++) {
+                out.writeInt(term.postings.values[i]);
+            }
+        }
+        checkedPosition(out);
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(docCount).putInt(terms.size());
+        for (long total : totalLengths) {
+            header.putLong(total);
+        }
+        header.putInt(idsOffset).putInt(lengthsOffset).putInt(storedIndexOffset).putInt(termIndexOffset)
+                .putInt(postingsOffset);
+        header.flip();
+        channel.write(header, 0);
+        return docCount;
+    }
+
+    private static void writeStored(DataOutputStream out, Book book) throws IOException {
+        out.writeLong(book.getId());
+        for (String value : new String[]{book.getTitle(), book.getAuthor(), book.getIsbn(), book.getCanonicalIsbn(),
+                book.getGenre(), book.getEdition(), book.getPublisher()}) {
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        out.writeInt(book.getPublicationYear() == null ? Integer.MIN_VALUE : book.getPublicationYear());
+        out.writeBoolean(book.isAvailable());
+        out.writeInt(book.getTotalCopies() == null ? Integer.MIN_VALUE : book.getTotalCopies());
+        out.writeInt(book.getAvailableCopies() == null ? Integer.MIN_VALUE : book.getAvailableCopies());
+    }
+
+    // Segments are read through a single mapping, so they must stay under 2 GB
+    private static int checkedPosition(DataOutputStream out) throws IOException {
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("Segment exceeds 2 GB");
+        }
+        return out.size();
+    }
+
+    private static int checkedOffset(long offset) throws IOException {
+        if (offset >= Integer.MAX_VALUE) {
+            throw new IOException("Segment exceeds 2 GB");
+        }
+        return (int) offset;
+    }
+
+    private record TermEntry(int field, byte[] bytes, IntList postings) {}
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
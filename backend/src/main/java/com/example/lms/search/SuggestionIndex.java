@@ -0,0 +1,107 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Autocomplete over book titles and author names.
+ *
+ * Each distinct title or author is one trie entry weighted by the books behind
+ * it: one point per book plus its issue count, so popular works surface first.
+ * Each issue moves the book's weight along without re-indexing it.
+ */
+@Component
+public class SuggestionIndex implements BookIndex {
+    public enum Kind { TITLE, AUTHOR }
+
+    public record Suggestion(String text, Kind type, long weight) {}
+
+    private record Contribution(String titleKey, String title, String authorKey, String author, long weight) {}
+
+    private final BookPopularity popularity;
+    private final RadixTrie titles = new RadixTrie();
+    private final RadixTrie authors = new RadixTrie();
+    private final Map<Long, Contribution> contributions = new HashMap<>();
+
+    public SuggestionIndex(BookPopularity popularity) {
+        this.popularity = popularity;
+    }
+
+    @Override
+    public synchronized void index(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        removeLocked(book.getId());
+        String titleKey = key(book.getTitle());
+        String authorKey = key(book.getAuthor());
+        addLocked(book.getId(), new Contribution(titleKey, titleKey.isEmpty() ? null : book.getTitle().trim(),
+                authorKey, authorKey.isEmpty() ? null : book.getAuthor().trim(),
+                1 + popularity.issueCount(book.getId())));
+    }
+
+    /** Called after an issue of the book has been recorded in {@link BookPopularity}. */
+    public synchronized void issued(Long bookId) {
+        Contribution old = contributions.get(bookId);
+        long weight = 1 + popularity.issueCount(bookId);
+        if (old == null || old.weight() == weight) {
+            return;
+        }
+        removeLocked(bookId);
+        addLocked(bookId, new Contribution(old.titleKey(), old.title(), old.authorKey(), old.author(), weight));
+    }
+
+    @Override
+    public synchronized void remove(Long bookId) {
+        removeLocked(bookId);
+    }
+
+    @Override
+    public synchronized void clear() {
+        titles.clear();
+        authors.clear();
+        contributions.clear();
+    }
+
+    private void addLocked(Long bookId, Contribution contribution) {
+        if (!contribution.titleKey().isEmpty()) {
+            titles.add(contribution.titleKey(), contribution.title(), contribution.weight());
+        }
+        if (!contribution.authorKey().isEmpty()) {
+            authors.add(contribution.authorKey(), contribution.author(), contribution.weight());
+        }
+        contributions.put(bookId, contribution);
+    }
+
+    private void removeLocked(Long bookId) {
+        Contribution old = contributions.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        if (!old.titleKey().isEmpty()) {
+            titles.subtract(old.titleKey(), old.weight());
+        }
+        if (!old.authorKey().isEmpty()) {
+            authors.subtract(old.authorKey(), old.weight());
+        }
+    }
+
+    public synchronized List<Suggestion> suggest(String prefix, int limit) {
+        String key = key(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        List<Suggestion> merged = new ArrayList<>();
+        titles.complete(key, limit).forEach(c -> merged.add(new Suggestion(c.text(), Kind.TITLE, c.weight())));
+        authors.complete(key, limit).forEach(c -> merged.add(new Suggestion(c.text(), Kind.AUTHOR, c.weight())));
+        merged.sort(Comparator.comparingLong(Suggestion::weight).reversed().thenComparing(Suggestion::text));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    // Case- and accent-folded with runs of whitespace collapsed, so "the  Hobbit" completes "The Hobbit"
+    private static String key(String text) {
+        return TextAnalyzer.fold(text).trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo-tolerant matching over title and author words.
+ *
+ * Trigrams index the distinct words of the catalog rather than the books
+ * themselves, so a query only scans the vocabulary. Candidate words that share
+ * too few trigrams to be within the edit-distance bound are skipped before the
+ * (bounded) distance is computed; survivors are then mapped back to books.
+ */
+@Component
+public class TrigramIndex implements BookIndex {
+    private static final BookField[] FIELDS = {BookField.TITLE, BookField.AUTHOR};
+    // Per-thread scratch counters indexed by word id, reset after every term
+    private static final ThreadLocal<int[]> SHARED_COUNTS = ThreadLocal.withInitial(() -> new int[1024]);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    private final List<Set<Long>> wordDocs = new ArrayList<>();
+    private final Map<String, int[]> trigramWords = new HashMap<>();
+    private final Map<String, Integer> trigramSizes = new HashMap<>();
+    private final Map<Long, int[]> docWords = new HashMap<>();
+
+    public record Match(Long bookId, double score) {}
+
+    @Override
+    public void index(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        for (BookField field : FIELDS) {
+            tokens.addAll(TextAnalyzer.tokenize(field.valueOf(book)));
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(book.getId());
+            int[] ids = new int[tokens.size()];
+            int i = 0;
+            for (String token : tokens) {
+                int wordId = wordIdLocked(token);
+                wordDocs.get(wordId).add(book.getId());
+                ids[i++] = wordId;
+            }
+            docWords.put(book.getId(), ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            wordIds.clear();
+            words.clear();
+            wordDocs.clear();
+            trigramWords.clear();
+            trigramSizes.clear();
+            docWords.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long bookId) {
+        int[] ids = docWords.remove(bookId);
+        if (ids != null) {
+            for (int wordId : ids) {
+                wordDocs.get(wordId).remove(bookId);
+            }
+        }
+    }
+
+    // Words are never dropped from the trigram postings; a word with no books is
+    // simply skipped at query time and picked up again if it reappears.
+    private int wordIdLocked(String word) {
+        Integer existing = wordIds.get(word);
+        if (existing != null) {
+            return existing;
+        }
+        int id = words.size();
+        words.add(word);
+        wordDocs.add(new HashSet<>());
+        wordIds.put(word, id);
+        for (String trigram : trigrams(word)) {
+            int size = trigramSizes.getOrDefault(trigram, 0);
+            int[] list = trigramWords.get(trigram);
+            if (list == null || list.length == size) {
+                list = list == null ? new int[4] : Arrays.copyOf(list, size * 2);
+                trigramWords.put(trigram, list);
+            }
+            list[size] = id;
+            trigramSizes.put(trigram, size + 1);
+        }
+        return id;
+    }
+
+    /**
+     * Books whose title or author contain, for every query term, a word within
+     * the term's edit-distance bound. Scores are the summed word similarities.
+     */
+    public List<Match> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String term : terms) {
+                Map<Long, Double> termScores = new HashMap<>();
+                for (Map.Entry<Integer, Double> word : similarWords(term).entrySet()) {
+                    for (Long bookId : wordDocs.get(word.getKey())) {
+                        termScores.merge(bookId, word.getValue(), Math::max);
+                    }
+                }
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    Map<Long, Double> previous = scores;
+                    scores = new HashMap<>();
+                    for (Map.Entry<Long, Double> entry : termScores.entrySet()) {
+                        Double before = previous.get(entry.getKey());
+                        if (before != null) {
+                            scores.put(entry.getKey(), before + entry.getValue());
+                        }
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return scores.entrySet().stream()
+                    .map(entry -> new Match(entry.getKey(), entry.getValue()))
+                    .sorted(Comparator.comparingDouble(Match::score).reversed().thenComparing(Match::bookId))
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Integer, Double> similarWords(String term) {
+        Map<Integer, Double> similar = new HashMap<>();
+        int maxDistance = maxDistance(term.length());
+        Integer exact = wordIds.get(term);
+        if (maxDistance == 0) {
+            if (exact != null && !wordDocs.get(exact).isEmpty()) {
+                similar.put(exact, 1.0);
+            }
+            return similar;
+        }
+
+        Set<String> termTrigrams = new HashSet<>(trigrams(term));
+        // q-gram lemma: an edit destroys at most three of the term's trigrams,
+        // an adjacent transposition at most four
+        int needed = termTrigrams.size() - 4 * maxDistance;
+        int[] counts = SHARED_COUNTS.get();
+        if (counts.length < words.size()) {
+            counts = new int[Math.max(words.size(), counts.length * 2)];
+            SHARED_COUNTS.set(counts);
+        }
+        int[] touched = new int[64];
+        int touchedSize = 0;
+        for (String trigram : termTrigrams) {
+            int[] list = trigramWords.get(trigram);
+            if (list == null) {
+                continue;
+            }
+            int size = trigramSizes.get(trigram);
+            for (int i = 0; i < size; i++) {
+                int wordId = list[i];
+                if (counts[wordId]++ == 0) {
+                    if (touchedSize == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedSize * 2);
+                    }
+                    touched[touchedSize++] = wordId;
+                }
+            }
+        }
+        for (int t = 0; t < touchedSize; t++) {
+            int wordId = touched[t];
+            int sharedCount = counts[wordId];
+            counts[wordId] = 0;
+            String word = words.get(wordId);
+            if (sharedCount < needed || Math.abs(word.length() - term.length()) > maxDistance
+                    || wordDocs.get(wordId).isEmpty()) {
+                continue;
+            }
+            int distance = boundedDistance(term, word, maxDistance);
+            if (distance <= maxDistance) {
+                similar.put(wordId, 1.0 - (double) distance / Math.max(term.length(), word.length()));
+            }
+        }
+        return similar;
+    }
+
+    static int maxDistance(int length) {
+        if (length <= 3) {
+            return 0;
+        }
+        return length <= 6 ? 1 : 2;
+    }
+
+    // The doubly padded leading trigram ("  x") is left out: it is shared by roughly
+    // one word in twenty-six and would dominate the candidate scan for no selectivity.
+    static List<String> trigrams(String word) {
+        String padded = " " + word + " ";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent transpositions),
+     * giving up as soon as every cell in a row exceeds the bound.
+     */
+    static int boundedDistance(String a, String b, int bound) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > bound) {
+                return bound + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+}
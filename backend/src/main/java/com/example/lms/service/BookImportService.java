@@ -0,0 +1,341 @@
+package com.example.lms.service;
+
+import com.example.lms.model.Book;
+import com.example.lms.util.CsvReader;
+import com.example.lms.util.IsbnUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk catalog import. The upload is spooled to a temporary file and then read
+ * one record at a time by a background worker. Rows are validated, de-duplicated
+ * by canonical ISBN (against the catalog and earlier rows of the same file) and
+ * inserted through plain JDBC batches, one transaction per batch, bypassing the
+ * per-row IDENTITY round trips of JPA.
+ */
+@Service
+public class BookImportService {
+    private static final String INSERT_SQL = "insert into book (title, author, isbn, canonical_isbn, genre, edition, "
+            + "publisher, publication_year, available, updated_at) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, current_timestamp)";
+    private static final int MAX_ERRORS = 50;
+    private static final int MAX_JOBS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookService bookService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> new Thread(r, "book-import"));
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > MAX_JOBS;
+        }
+    });
+
+    public BookImportService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             BookService bookService, ObjectMapper objectMapper,
+                             @Value("${lms.import.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.bookService = bookService;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public enum Format { CSV, NDJSON }
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    /** Progress of one import, serialized as the status resource. */
+    public static class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final Format format;
+        private final Instant submittedAt = Instant.now();
+        private volatile State state = State.QUEUED;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String failure;
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong duplicates = new AtomicLong();
+        private final AtomicLong invalid = new AtomicLong();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        Job(Format format) {
+            this.format = format;
+        }
+
+        public String getId() { return id; }
+        public Format getFormat() { return format; }
+        public State getState() { return state; }
+        public Instant getSubmittedAt() { return submittedAt; }
+        public Instant getStartedAt() { return startedAt; }
+        public Instant getFinishedAt() { return finishedAt; }
+        public String getFailure() { return failure; }
+        public long getRowsRead() { return rowsRead.get(); }
+        public long getImported() { return imported.get(); }
+        public long getDuplicates() { return duplicates.get(); }
+        public long getInvalid() { return invalid.get(); }
+        public List<String> getErrors() { return List.copyOf(errors); }
+
+        public long getBooksPerMinute() {
+            if (startedAt == null) return 0;
+            long millis = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+            return millis == 0 ? 0 : imported.get() * 60_000 / millis;
+        }
+
+        private void reject(AtomicLong counter, String reason) {
+            counter.incrementAndGet();
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(reason);
+            }
+        }
+    }
+
+    private record Row(long line, Book book, String error) {}
+
+    private interface RowSource {
+        Row next() throws IOException;
+    }
+
+    /** Spools the upload and queues it; the returned job is updated as the import runs. */
+    public Job submit(Format format, InputStream body) throws IOException {
+        Path spool = Files.createTempFile("book-import-", format == Format.CSV ? ".csv" : ".ndjson");
+        try (OutputStream out = Files.newOutputStream(spool)) {
+            body.transferTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        Job job = new Job(format);
+        jobs.put(job.getId(), job);
+        worker.submit(() -> run(job, spool));
+        return job;
+    }
+
+    public Optional<Job> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private void run(Job job, Path spool) {
+        job.startedAt = Instant.now();
+        job.state = State.RUNNING;
+        try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+            RowSource rows = job.format == Format.CSV ? csvRows(reader) : ndjsonRows(reader);
+            Set<String> seenIsbns = new HashSet<>();
+            List<Book> batch = new ArrayList<>(batchSize);
+            Row row;
+            while ((row = rows.next()) != null) {
+                job.rowsRead.incrementAndGet();
+                if (row.error() != null) {
+                    job.reject(job.invalid, "Line " + row.line() + ": " + row.error());
+                    continue;
+                }
+                Book book = row.book();
+                String problem = validate(book);
+                if (problem != null) {
+                    job.reject(job.invalid, "Line " + row.line() + ": " + problem);
+                    continue;
+                }
+                String canonical = book.getCanonicalIsbn();
+                if (canonical != null
+                        && (!seenIsbns.add(canonical) || bookService.findByCanonicalIsbn(canonical).isPresent())) {
+                    job.reject(job.duplicates, "Line " + row.line() + ": Duplicate ISBN " + book.getIsbn());
+                    continue;
+                }
+                batch.add(book);
+                if (batch.size() == batchSize) {
+                    insertBatch(job, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                insertBatch(job, batch);
+            }
+            job.state = State.COMPLETED;
+        } catch (Exception e) {
+            job.failure = e.getMessage();
+            job.state = State.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException e) {
+                spool.toFile().deleteOnExit();
+            }
+        }
+        System.out.println("Book import " + job.getId() + " " + job.getState() + ": " + job.getImported()
+                + " imported, " + job.getDuplicates() + " duplicates, " + job.getInvalid() + " invalid");
+    }
+
+    private static String validate(Book book) {
+        book.setId(null);
+        if (book.getTitle() == null || book.getTitle().isBlank()) {
+            return "Missing title";
+        }
+        if (book.getIsbn() != null && book.getIsbn().isBlank()) {
+            book.setIsbn(null);
+        }
+        book.setCanonicalIsbn(IsbnUtil.canonicalize(book.getIsbn()));
+        if (book.getIsbn() != null && book.getCanonicalIsbn() == null) {
+            return "Invalid ISBN " + book.getIsbn();
+        }
+        return null;
+    }
+
+    // A failed batch (typically an ISBN inserted concurrently) is retried row by row
+    private void insertBatch(Job job, List<Book> batch) {
+        try {
+            insert(batch);
+            job.imported.addAndGet(batch.size());
+        } catch (DataAccessException e) {
+            for (Book book : batch) {
+                try {
+                    insert(List.of(book));
+                    job.imported.incrementAndGet();
+                } catch (DataAccessException rowFailure) {
+                    job.reject(job.duplicates, "Could not insert \"" + book.getTitle() + "\": "
+                            + rowFailure.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void insert(List<Book> books) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Book book = books.get(i);
+                        ps.setString(1, book.getTitle());
+                        ps.setString(2, book.getAuthor());
+                        ps.setString(3, book.getIsbn());
+                        ps.setString(4, book.getCanonicalIsbn());
+                        ps.setString(5, book.getGenre());
+                        ps.setString(6, book.getEdition());
+                        ps.setString(7, book.getPublisher());
+                        if (book.getPublicationYear() == null) {
+                            ps.setNull(8, Types.INTEGER);
+                        } else {
+                            ps.setInt(8, book.getPublicationYear());
+                        }
+                        ps.setBoolean(9, book.isAvailable());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return books.size();
+                    }
+                },
+                keys));
+        List<Map<String, Object>> generated = keys.getKeyList();
+        for (int i = 0; i < books.size(); i++) {
+            books.get(i).setId(((Number) generated.get(i).values().iterator().next()).longValue());
+        }
+        bookService.indexImported(books);
+    }
+
+    // Header row names the columns (title, author, isbn, genre, edition, publisher, publicationYear, available)
+    private RowSource csvRows(BufferedReader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return () -> null;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", ""), i);
+        }
+        if (!columns.containsKey("title")) {
+            throw new IOException("CSV header has no title column");
+        }
+        return () -> {
+            List<String> fields = csv.next();
+            if (fields == null) {
+                return null;
+            }
+            long line = csv.line();
+            Book book = new Book();
+            book.setTitle(column(fields, columns, "title"));
+            book.setAuthor(column(fields, columns, "author"));
+            book.setIsbn(column(fields, columns, "isbn"));
+            book.setGenre(column(fields, columns, "genre"));
+            book.setEdition(column(fields, columns, "edition"));
+            book.setPublisher(column(fields, columns, "publisher"));
+            String year = column(fields, columns, "publicationyear");
+            if (year != null) {
+                try {
+                    book.setPublicationYear(Integer.parseInt(year));
+                } catch (NumberFormatException e) {
+                    return new Row(line, null, "Invalid publication year " + year);
+                }
+            }
+            String available = column(fields, columns, "available");
+            book.setAvailable(available == null || Boolean.parseBoolean(available));
+            return new Row(line, book, null);
+        };
+    }
+
+    private static String column(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // One JSON book object per line, same shape as POST /api/books
+    private RowSource ndjsonRows(BufferedReader reader) {
+        long[] line = {0};
+        return () -> {
+            String text;
+            do {
+                text = reader.readLine();
+                line[0]++;
+            } while (text != null && text.isBlank());
+            if (text == null) {
+                return null;
+            }
+            try {
+                return new Row(line[0], objectMapper.readValue(text, Book.class), null);
+            } catch (IOException e) {
+                return new Row(line[0], null, "Malformed JSON");
+            }
+        };
+    }
+}
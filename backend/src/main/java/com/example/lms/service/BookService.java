@@ -1,22 +1,455 @@
 package com.example.lms.service;
 
+import com.example.lms.dto.CopyView;
 import com.example.lms.model.Book;
+import com.example.lms.model.BookCopy;
+import com.example.lms.model.CopyStatus;
+import com.example.lms.repository.BookCopyRepository;
 import com.example.lms.repository.BookRepository;
+import com.example.lms.repository.BookSpecifications;
+import com.example.lms.search.BookField;
+import com.example.lms.search.BookIndex;
+import com.example.lms.search.BookPopularity;
+import com.example.lms.search.CatalogFilter;
+import com.example.lms.search.ColumnarCatalog;
+import com.example.lms.search.CompressedBitmap;
+import com.example.lms.search.FacetIndex;
+import com.example.lms.search.FullTextIndex;
+import com.example.lms.search.IsbnIndex;
+import com.example.lms.search.SearchCache;
+import com.example.lms.search.SegmentIndex;
+import com.example.lms.search.SuggestionIndex;
+import com.example.lms.search.TrigramIndex;
+import com.example.lms.util.IsbnUtil;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import java.util.List;
-import java.util.Optional;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class BookService {
+    private static final int FUZZY_RESULT_LIMIT = 100;
+    // Cap on text results served from on-disk segments, where catalogs run to millions
+    private static final int SEGMENT_RESULT_LIMIT = 1000;
+
     private final BookRepository bookRepo;
-    public BookService(BookRepository bookRepo) { this.bookRepo = bookRepo; }
-
-    public List<Book> searchByTitle(String title) { return bookRepo.findByTitleContainingIgnoreCase(title); }
-    public List<Book> searchByAuthor(String author) { return bookRepo.findByAuthorContainingIgnoreCase(author); }
-    public List<Book> searchByIsbn(String isbn) { return bookRepo.findByIsbn(isbn); }
-    public List<Book> searchByGenre(String genre) { return bookRepo.findByGenreContainingIgnoreCase(genre); }
-    public Book addBook(Book book) { return bookRepo.save(book); }
-    public void deleteBook(Long id) { bookRepo.deleteById(id); }
+    private final BookCopyRepository copyRepo;
+    private final FullTextIndex fullTextIndex;
+    private final TrigramIndex trigramIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final FacetIndex facetIndex;
+    private final IsbnIndex isbnIndex;
+    private final ColumnarCatalog columnarCatalog;
+    private final SegmentIndex segmentIndex;
+    private final SearchCache searchCache;
+    private final BookPopularity popularity;
+    private final CatalogVersion catalogVersion;
+    private final List<BookIndex> indexes;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final CirculationLocks locks;
+    // Per title, the ticket of the last copy counts published; see copiesChanged
+    private final ConcurrentHashMap<Long, Long> publishedCopyCounts = new ConcurrentHashMap<>();
+    private final AtomicLong copyCountTickets = new AtomicLong();
+
+    public BookService(BookRepository bookRepo, BookCopyRepository copyRepo, FullTextIndex fullTextIndex, TrigramIndex trigramIndex,
+                       SuggestionIndex suggestionIndex, FacetIndex facetIndex, IsbnIndex isbnIndex,
+                       ColumnarCatalog columnarCatalog, Optional<SegmentIndex> segmentIndex, SearchCache searchCache, BookPopularity popularity,
+                       CatalogVersion catalogVersion, List<BookIndex> indexes, EntityManager entityManager,
+                       TransactionTemplate transactionTemplate, CirculationLocks locks) {
+        this.bookRepo = bookRepo;
+        this.copyRepo = copyRepo;
+        this.fullTextIndex = fullTextIndex;
+        this.trigramIndex = trigramIndex;
+        this.suggestionIndex = suggestionIndex;
+        this.facetIndex = facetIndex;
+        this.isbnIndex = isbnIndex;
+        this.columnarCatalog = columnarCatalog;
+        this.segmentIndex = segmentIndex.orElse(null);
+        this.searchCache = searchCache;
+        this.popularity = popularity;
+        this.catalogVersion = catalogVersion;
+        this.indexes = indexes;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.locks = locks;
+    }
+
+    public List<Book> searchByTitle(String title) {
+        if (!fullTextIndex.isReady()) return bookRepo.findByTitleContainingIgnoreCase(title);
+        return searchCache.get("title", title, () -> textSearch(title, EnumSet.of(BookField.TITLE)));
+    }
+
+    public List<Book> searchByAuthor(String author) {
+        if (!fullTextIndex.isReady()) return bookRepo.findByAuthorContainingIgnoreCase(author);
+        return searchCache.get("author", author, () -> textSearch(author, EnumSet.of(BookField.AUTHOR)));
+    }
+
+    // Valid ISBNs match in any ISBN-10/13 spelling; anything else falls back to the raw column
+    public List<Book> searchByIsbn(String isbn) {
+        if (!fullTextIndex.isReady()) return lookupIsbn(isbn);
+        return searchCache.get("isbn", isbn, () -> lookupIsbn(isbn));
+    }
+
+    private List<Book> lookupIsbn(String isbn) {
+        String canonical = IsbnUtil.canonicalize(isbn);
+        if (canonical == null) return bookRepo.findByIsbn(isbn);
+        return findByCanonicalIsbn(canonical).map(List::of).orElse(List.of());
+    }
+
+    // Barcode-scanner path: one hash lookup once the indexes are built
+    public Optional<Book> findByCanonicalIsbn(String canonicalIsbn) {
+        if (!fullTextIndex.isReady()) return bookRepo.findByCanonicalIsbn(canonicalIsbn);
+        Long id = isbnIndex.find(canonicalIsbn);
+        return id == null ? Optional.empty() : Optional.ofNullable(indexedBook(id));
+    }
+
+    public List<Book> searchByGenre(String genre) {
+        if (!fullTextIndex.isReady()) return bookRepo.findByGenreContainingIgnoreCase(genre);
+        return searchCache.get("genre", genre, () -> textSearch(genre, EnumSet.of(BookField.GENRE)));
+    }
+
+    public List<Book> searchAll(String keyword) {
+        if (!fullTextIndex.isReady()) return bookRepo.findByTitleContainingIgnoreCase(keyword);
+        return searchCache.get("all", keyword, () -> textSearch(keyword, EnumSet.allOf(BookField.class)));
+    }
+
+    // Title and author words within a small edit distance of every query term
+    public List<Book> searchFuzzy(String keyword) {
+        if (!fullTextIndex.isReady()) return bookRepo.findByTitleContainingIgnoreCase(keyword);
+        return searchCache.get("fuzzy", keyword, () -> {
+            List<FullTextIndex.Hit> hits = new ArrayList<>();
+            for (TrigramIndex.Match match : trigramIndex.search(keyword, FUZZY_RESULT_LIMIT)) {
+                Book book = indexedBook(match.bookId());
+                if (book != null) hits.add(new FullTextIndex.Hit(book, match.score()));
+            }
+            return rankByPopularity(hits);
+        });
+    }
+
+    private List<Book> textSearch(String query, Set<BookField> fields) {
+        List<FullTextIndex.Hit> hits = segmentIndex == null
+                ? fullTextIndex.search(query, fields, Integer.MAX_VALUE)
+                : segmentIndex.search(query, fields, SEGMENT_RESULT_LIMIT);
+        return rankByPopularity(hits);
+    }
+
+    // Final order: text relevance scaled by the book's decayed issue count, ties by id
+    private List<Book> rankByPopularity(List<FullTextIndex.Hit> hits) {
+        record Ranked(Book book, double score) {}
+        return hits.stream()
+                .map(hit -> new Ranked(hit.book(), hit.score() * popularity.boost(hit.book().getId())))
+                .sorted(Comparator.comparingDouble(Ranked::score).reversed()
+                        .thenComparing(ranked -> ranked.book().getId()))
+                .map(Ranked::book)
+                .toList();
+    }
+
+    private Book indexedBook(Long id) {
+        return segmentIndex == null ? fullTextIndex.find(id) : segmentIndex.find(id);
+    }
+
+    public List<SuggestionIndex.Suggestion> suggest(String prefix, int limit) {
+        return suggestionIndex.suggest(prefix, limit);
+    }
+
+    /**
+     * Search results (or the whole catalog when type is null) narrowed by the
+     * selected facet values, together with facet counts over the narrowed set.
+     */
+    public Map<String, Object> browse(String type, String keyword, Map<String, String> selected, int limit) {
+        List<Book> ranked = null;
+        CompressedBitmap matches;
+        if (type == null || keyword == null || keyword.isBlank()) {
+            matches = facetIndex.allBooks();
+        } else {
+            ranked = search(type, keyword);
+            matches = FacetIndex.bitmapOf(ranked);
+        }
+        CompressedBitmap narrowed = facetIndex.filter(matches, selected);
+
+        List<Book> items = new ArrayList<>();
+        if (ranked != null) {
+            for (Book book : ranked) {
+                if (items.size() == limit) break;
+                if (narrowed.contains(book.getId().intValue())) items.add(book);
+            }
+        } else {
+            for (int id : narrowed.toArray()) {
+                if (items.size() == limit) break;
+                Book book = indexedBook((long) id);
+                if (book != null) items.add(book);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("total", narrowed.cardinality());
+        result.put("items", items);
+        result.put("facets", facetIndex.counts(narrowed, 20));
+        return result;
+    }
+
+    // All criteria, the sort and the limit go into a single SQL statement
+    public List<Book> query(String title, String author, String genre, String publisher,
+                            Integer yearFrom, Integer yearTo, Boolean available, Sort sort, int limit) {
+        Specification<Book> spec = Specification.allOf(
+                BookSpecifications.titleContains(title),
+                BookSpecifications.authorContains(author),
+                BookSpecifications.genreIs(genre),
+                BookSpecifications.publisherIs(publisher),
+                BookSpecifications.publishedBetween(yearFrom, yearTo),
+                BookSpecifications.availableIs(available));
+        // Fluent query rather than findAll(spec, pageable), which would add a count query
+        return bookRepo.findBy(spec, query -> query.sortBy(sort).limit(limit).all());
+    }
+
+    // Ad-hoc conditions no index covers, scanned in parallel over the columnar snapshot
+    public ColumnarCatalog.Result filter(List<CatalogFilter.Condition> conditions, int limit) {
+        CatalogFilter filter = CatalogFilter.parse(conditions);
+        if (!fullTextIndex.isReady()) throw new IllegalStateException("Catalog is still loading");
+        return columnarCatalog.filter(filter, limit);
+    }
+
+    public List<Book> search(String type, String keyword) {
+        switch (type) {
+            case "title": return searchByTitle(keyword);
+            case "author": return searchByAuthor(keyword);
+            case "isbn": return searchByIsbn(keyword);
+            case "genre": return searchByGenre(keyword);
+            case "all": return searchAll(keyword);
+            case "fuzzy": return searchFuzzy(keyword);
+            default: return List.of();
+        }
+    }
+
+    public Book addBook(Book book) {
+        Book saved = bookRepo.save(book);
+        indexes.forEach(index -> index.index(saved));
+        searchCache.bookChanged(saved);
+        catalogVersion.bump();
+        return saved;
+    }
+
+    /**
+     * Saves the descriptive fields of a book; availability and copy counters are left to
+     * circulation. The book is read afresh and indexed under its circulation lock, so the
+     * indexes cannot be handed a flag that a checkout or return has changed meanwhile. Copy
+     * counters, which move without that lock, are published again afterwards. Empty when the
+     * book is gone.
+     */
+    public Optional<Book> updateBook(Long id, Book details) {
+        Optional<Book> updated = locks.withBook(id, () -> bookRepo.findById(id).map(book -> {
+            book.setTitle(details.getTitle());
+            book.setAuthor(details.getAuthor());
+            book.setIsbn(details.getIsbn());
+            book.setGenre(details.getGenre());
+            book.setPublisher(details.getPublisher());
+            book.setPublicationYear(details.getPublicationYear());
+            return addBook(book);
+        }));
+        if (updated.isPresent() && updated.get().getAvailableCopies() != null) {
+            copiesChanged(id);
+        }
+        return updated;
+    }
+
+    // Books written directly through JDBC by the bulk importer
+    public void indexImported(List<Book> books) {
+        for (Book book : books) {
+            indexes.forEach(index -> index.index(book));
+        }
+        searchCache.clear();
+        catalogVersion.bump();
+    }
+
+    // Atomic flip for checkout and return: false when the book is missing or already in that state,
+    // so concurrent desks cannot both succeed. Joins the caller's transaction; the caller reports
+    // the change through availabilityChanged once it has committed.
+    public boolean setAvailableIfChanged(Long bookId, boolean available) {
+        return bookRepo.setAvailableIfChanged(bookId, available) == 1;
+    }
+
+    // Batch checkout: locks the books (in id order) and returns the ones that exist.
+    // Joins the caller's transaction, like setAvailableIfChanged.
+    public List<Book> lockBooks(Collection<Long> bookIds) {
+        return bookRepo.lockAllById(bookIds);
+    }
+
+    // One UPDATE for all of the locked books; returns how many were flipped
+    public int markIssued(Collection<Long> bookIds) {
+        return bookRepo.markIssued(bookIds);
+    }
+
+    // Checkout of a title catalogued by copy: locks a free copy, skipping any another checkout
+    // holds, and marks it on loan. Null when no copy is free. Joins the caller's transaction.
+    public BookCopy claimCopy(Long bookId) {
+        for (Long copyId : copyRepo.lockFreeCopy(bookId)) {
+            if (copyRepo.setStatusIfChanged(copyId, CopyStatus.AVAILABLE, CopyStatus.ON_LOAN) == 1) {
+                return copyRepo.findById(copyId).orElseThrow();
+            }
+        }
+        return null;
+    }
+
+    // Takes a claimed copy off the title's available count and returns how many are left. The
+    // book row stays locked until commit, so callers do this last in their transaction.
+    public int takeCopy(Long bookId) {
+        if (bookRepo.takeCopy(bookId) != 1) {
+            throw new IllegalStateException("Copy counter of book " + bookId + " is out of step with its copies");
+        }
+        return bookRepo.findAvailableCopies(bookId);
+    }
+
+    // Return of a copy; joins the caller's transaction like claimCopy
+    public void putBackCopy(Long bookId, Long copyId) {
+        if (copyRepo.setStatusIfChanged(copyId, CopyStatus.ON_LOAN, CopyStatus.AVAILABLE) == 1) {
+            bookRepo.putBackCopy(bookId);
+        }
+    }
+
+    public List<CopyView> getCopies(Long bookId) {
+        return copyRepo.findViewsByBookId(bookId);
+    }
+
+    public Optional<BookCopy> getCopyById(Long copyId) {
+        return copyRepo.findById(copyId);
+    }
+
+    public boolean barcodeExists(String barcode) {
+        return copyRepo.existsByBarcode(barcode);
+    }
+
+    // barcode -> copy id, for the barcodes that name a copy
+    public Map<String, Long> findCopyIdsByBarcodes(Collection<String> barcodes) {
+        Map<String, Long> ids = new HashMap<>();
+        for (Object[] row : copyRepo.findIdsByBarcodes(barcodes)) {
+            ids.put((String) row[0], (Long) row[1]);
+        }
+        return ids;
+    }
+
+    /**
+     * Adds an available copy to the title and counts it in. Null when the book is out on a
+     * loan made before it had copies; that loan has to be returned first.
+     */
+    public BookCopy addCopy(Book book, String barcode, String location) {
+        BookCopy copy = transactionTemplate.execute(status -> {
+            if (bookRepo.addCopy(book.getId()) != 1) {
+                return null;
+            }
+            return copyRepo.save(new BookCopy(null, book, barcode, CopyStatus.AVAILABLE, location));
+        });
+        if (copy != null) {
+            availabilityChanged(book.getId(), true);
+            copiesChanged(book.getId());
+        }
+        return copy;
+    }
+
+    /**
+     * Withdraws a copy from circulation, or puts a withdrawn one back. Only copies on the
+     * shelf can be withdrawn; false when the copy is not in the expected state.
+     */
+    public boolean setCopyWithdrawn(BookCopy copy, boolean withdrawn) {
+        Long bookId = copy.getBook().getId();
+        Integer left = transactionTemplate.execute(status -> {
+            if (withdrawn) {
+                if (copyRepo.setStatusIfChanged(copy.getId(), CopyStatus.AVAILABLE, CopyStatus.WITHDRAWN) != 1) {
+                    return null;
+                }
+                if (bookRepo.withdrawCopy(bookId) != 1) {
+                    throw new IllegalStateException("Copy counter of book " + bookId + " is out of step with its copies");
+                }
+            } else {
+                if (copyRepo.setStatusIfChanged(copy.getId(), CopyStatus.WITHDRAWN, CopyStatus.AVAILABLE) != 1) {
+                    return null;
+                }
+                bookRepo.addCopy(bookId);
+            }
+            return bookRepo.findAvailableCopies(bookId);
+        });
+        if (left == null) {
+            return false;
+        }
+        if (!withdrawn || left == 0) {
+            availabilityChanged(bookId, left > 0);
+        }
+        copiesChanged(bookId);
+        return true;
+    }
+
+    // Issue counts feed search ranking and the weights of suggestions
+    public void recordIssue(Long bookId) {
+        popularity.recordIssue(bookId);
+        suggestionIndex.issued(bookId);
+    }
+
+    public void availabilityChanged(Long bookId, boolean available) {
+        indexes.forEach(index -> index.availabilityChanged(bookId, available));
+        searchCache.availabilityChanged(bookId);
+        catalogVersion.bump();
+    }
+
+    /**
+     * Publishes the copy counters of a title after a committed change to them. Counters move on
+     * every checkout and return, so listings and search results would otherwise go stale while
+     * the flag stays the same. Each caller takes a ticket before reading the counts back, and a
+     * read is only published if no later ticket has been published for the title, so interleaved
+     * notifications cannot leave older counts in the indexes. The caller with the highest ticket
+     * read after every committed change and always publishes. Only the in-memory publish is
+     * serialized, per title; the read runs unlocked.
+     */
+    public void copiesChanged(Long bookId) {
+        long ticket = copyCountTickets.incrementAndGet();
+        List<Object[]> counts = bookRepo.findCopyCounts(bookId);
+        publishedCopyCounts.compute(bookId, (id, published) -> {
+            if (published != null && published > ticket) {
+                return published;
+            }
+            if (!counts.isEmpty() && counts.get(0)[0] != null) {
+                int available = (Integer) counts.get(0)[0];
+                int total = (Integer) counts.get(0)[1];
+                indexes.forEach(index -> index.copiesChanged(bookId, available, total));
+            }
+            searchCache.availabilityChanged(bookId);
+            catalogVersion.bump();
+            return ticket;
+        });
+    }
+
+    public void deleteBook(Long id) {
+        bookRepo.deleteById(id);
+        publishedCopyCounts.remove(id);
+        indexes.forEach(index -> index.remove(id));
+        searchCache.bookRemoved(id);
+        catalogVersion.bump();
+    }
+
     public List<Book> getAllBooks() { return bookRepo.findAll(); }
     public Optional<Book> getBookById(Long id) { return bookRepo.findById(id); }
-} 
\ No newline at end of file
+    public List<Book> getBooksByIds(Collection<Long> ids) { return bookRepo.findAllById(ids); }
+
+    public List<Book> getBooksAfter(Long afterId, int limit) {
+        return bookRepo.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId, PageRequest.of(0, limit));
+    }
+
+    // Hands every book to the consumer straight off the JDBC cursor, detaching
+    // each one afterwards so the persistence context does not grow with the catalog.
+    @Transactional(readOnly = true)
+    public void forEachBook(Consumer<Book> consumer) {
+        try (Stream<Book> books = bookRepo.streamAllOrderById()) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+}
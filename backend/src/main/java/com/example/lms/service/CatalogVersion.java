@@ -0,0 +1,29 @@
+package com.example.lms.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic version of the book catalog, bumped after every write to a book.
+ * ETags combine it with the process start time, so versions handed out before
+ * a restart never match afterwards.
+ */
+@Component
+public class CatalogVersion {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+    }
+
+    /** Strong ETag for any representation computed after this call. */
+    public String etag() {
+        return "\"" + epoch + "-" + version.get() + "\"";
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.lms.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped in-process locks serializing circulation changes (checkout, return, reservation)
+ * per book. When a hot title is released, the requests for it queue here, one at a time,
+ * instead of each holding a connection while waiting on the book's row lock; requests for
+ * other titles only meet them if they hash to the same stripe.
+ *
+ * This only coordinates one instance. The conditional UPDATEs in IssueService remain the
+ * guarantee across instances; the locks just keep them from contending.
+ */
+@Component
+public class CirculationLocks {
+    private static final int HOT_STRIPES = 5;
+
+    private final ReentrantLock[] stripes;
+    private final int shift;
+    private final long timeoutNanos;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLongArray stripeContention;
+
+    /** Thrown when a book's stripe could not be acquired within the timeout. */
+    public static class BusyException extends RuntimeException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    public CirculationLocks(@Value("${lms.circulation.lock-stripes:1024}") int stripeCount,
+                            @Value("${lms.circulation.lock-timeout-ms:5000}") long timeoutMs) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(stripeCount, 1 << 16)));
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.shift = 64 - Integer.numberOfTrailingZeros(size);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.stripeContention = new AtomicLongArray(size);
+    }
+
+    /** Runs the action holding the book's stripe. */
+    public <T> T withBook(long bookId, Supplier<T> action) {
+        int stripe = stripeOf(bookId);
+        acquire(stripe);
+        try {
+            return action.get();
+        } finally {
+            stripes[stripe].unlock();
+        }
+    }
+
+    /** Runs the action holding the stripes of all the books, taken in stripe order so callers cannot deadlock. */
+    public <T> T withBooks(Collection<Long> bookIds, Supplier<T> action) {
+        int[] held = bookIds.stream().mapToInt(this::stripeOf).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int stripe : held) {
+                acquire(stripe);
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+    }
+
+    // Fibonacci hashing: consecutive ids spread over all stripes
+    int stripeOf(long bookId) {
+        return (int) ((bookId * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void acquire(int stripe) {
+        ReentrantLock lock = stripes[stripe];
+        if (lock.tryLock()) {
+            acquisitions.increment();
+            return;
+        }
+        contended.increment();
+        stripeContention.incrementAndGet(stripe);
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!acquired) {
+            timeouts.increment();
+            throw new BusyException("Book is busy, please try again");
+        }
+        acquisitions.increment();
+    }
+
+    public Map<String, Object> stats() {
+        long contendedCount = contended.sum();
+        long timedOut = timeouts.sum();
+        long attempts = acquisitions.sum() + timedOut;
+        int waiting = 0;
+        List<long[]> hot = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            waiting += stripes[i].getQueueLength();
+            long count = stripeContention.get(i);
+            if (count > 0) {
+                hot.add(new long[]{i, count});
+            }
+        }
+        hot.sort((a, b) -> Long.compare(b[1], a[1]));
+        List<Map<String, Long>> hottest = new ArrayList<>();
+        for (long[] entry : hot.subList(0, Math.min(HOT_STRIPES, hot.size()))) {
+            hottest.add(Map.of("stripe", entry[0], "contended", entry[1]));
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stripes", stripes.length);
+        stats.put("acquisitions", attempts - timedOut);
+        stats.put("contended", contendedCount);
+        stats.put("contentionRate", attempts == 0 ? 0.0 : (double) contendedCount / attempts);
+        stats.put("timeouts", timedOut);
+        stats.put("waiting", waiting);
+        stats.put("avgWaitMicros", contendedCount == 0 ? 0 : waitNanos.sum() / contendedCount / 1000);
+        stats.put("maxWaitMicros", maxWaitNanos.get() / 1000);
+        stats.put("hottestStripes", hottest);
+        return stats;
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.lms.service;
+
+import com.example.lms.dto.FineEntryView;
+import com.example.lms.dto.OpenLoan;
+import com.example.lms.model.FineEntryType;
+import com.example.lms.repository.FineAccountRepository;
+import com.example.lms.repository.FineLedgerRepository;
+import com.example.lms.repository.IssueRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Keeps fines in a ledger instead of recomputing them from due dates on every read.
+ *
+ * Once a day the accrual job advances every overdue loan not yet accrued through
+ * today: the days since its last accrual are added to the loan's fineAccrued and
+ * posted to the ledger and the user's FineAccount. A loan is accrued at most once
+ * per day however often the job runs. Returns post the days since the last run and
+ * the fine paid. Balances and reports are then plain indexed reads.
+ */
+@Service
+public class FineLedgerService {
+    public static final double FINE_PER_DAY = 1.0; // $1 per open day late
+    private static final String ACCRUE_SQL = "update issue_record set fine_accrued = coalesce(fine_accrued, 0) + ?, "
+            + "accrued_through = ? where id = ? and return_date is null "
+            + "and (accrued_through is null or accrued_through < ?)";
+    private static final String CREDIT_SQL = "update fine_account set balance = balance + ?, updated_on = ? "
+            + "where user_id = ?";
+    private static final String OPEN_ACCOUNT_SQL = "insert into fine_account (user_id, balance, updated_on) "
+            + "values (?, ?, ?)";
+    private static final String LEDGER_SQL = "insert into fine_ledger (user_id, issue_id, entry_date, type, amount, "
+            + "balance) values (?, ?, ?, ?, ?, ?)";
+
+    private final IssueRecordRepository issueRepo;
+    private final FineLedgerRepository ledgerRepo;
+    private final FineAccountRepository accountRepo;
+    private final CirculationLocks locks;
+    private final LibraryCalendar calendar;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+    private volatile AccrualRun lastRun;
+
+    /** One movement on a user's balance; accruals are positive, payments negative. */
+    public record Posting(Long userId, Long issueId, FineEntryType type, double amount) {}
+
+    public record AccrualRun(LocalDate day, int loans, double amount, long millis) {}
+
+    public FineLedgerService(IssueRecordRepository issueRepo, FineLedgerRepository ledgerRepo,
+                             FineAccountRepository accountRepo, CirculationLocks locks, LibraryCalendar calendar,
+                             TransactionTemplate transactionTemplate, JdbcTemplate jdbcTemplate,
+                             @Value("${lms.fines.accrual-chunk-size:500}") int chunkSize) {
+        this.issueRepo = issueRepo;
+        this.ledgerRepo = ledgerRepo;
+        this.accountRepo = accountRepo;
+        this.locks = locks;
+        this.calendar = calendar;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(cron = "${lms.fines.accrual-cron:0 5 0 * * *}")
+    public void accrueDaily() {
+        accrue(LocalDate.now());
+    }
+
+    // Catches up on the days missed while the application was down
+    @EventListener(ApplicationReadyEvent.class)
+    public void accrueOnStartup() {
+        accrue(LocalDate.now());
+    }
+
+    /**
+     * Accrues every overdue loan through the given day, chunk by chunk, each chunk in its
+     * own transaction under the circulation locks of its books so it cannot interleave
+     * with their returns. A failed chunk is picked up again by the next run.
+     */
+    public synchronized AccrualRun accrue(LocalDate today) {
+        long start = System.currentTimeMillis();
+        int loans = 0;
+        double amount = 0.0;
+        long afterId = 0;
+        while (true) {
+            List<OpenLoan> chunk = issueRepo.findLoansToAccrue(today, afterId, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).issueId();
+            List<Long> bookIds = chunk.stream().map(OpenLoan::bookId).toList();
+            try {
+                List<Posting> posted = locks.withBooks(bookIds,
+                        () -> transactionTemplate.execute(status -> accrueChunk(chunk, today)));
+                loans += posted.size();
+                amount += posted.stream().mapToDouble(Posting::amount).sum();
+            } catch (RuntimeException e) {
+                System.out.println("Fine accrual failed for loans up to " + afterId + ": " + e.getMessage());
+            }
+        }
+        lastRun = new AccrualRun(today, loans, amount, System.currentTimeMillis() - start);
+        if (loans > 0) {
+            System.out.println("Accrued " + amount + " in fines on " + loans + " overdue loans in " + lastRun.millis() + " ms");
+        }
+        return lastRun;
+    }
+
+    private List<Posting> accrueChunk(List<OpenLoan> chunk, LocalDate today) {
+        double[] amounts = new double[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            amounts[i] = fineFor(chunk.get(i).accrualStart(), today);
+        }
+        int[] counts = jdbcTemplate.batchUpdate(ACCRUE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setDouble(1, amounts[i]);
+                ps.setDate(2, Date.valueOf(today));
+                ps.setLong(3, chunk.get(i).issueId());
+                ps.setDate(4, Date.valueOf(today));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+        // Loans returned or accrued since they were read are skipped
+        List<Posting> postings = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (counts[i] != 0 && amounts[i] > 0) {
+                OpenLoan loan = chunk.get(i);
+                postings.add(new Posting(loan.userId(), loan.issueId(), FineEntryType.ACCRUAL, amounts[i]));
+            }
+        }
+        post(postings, today);
+        return postings;
+    }
+
+    /** Fine for the open days after from up to today; closed days are not billed. */
+    public double fineFor(LocalDate from, LocalDate today) {
+        return calendar.openDaysBetween(from, today) * FINE_PER_DAY;
+    }
+
+    /** The postings for a loan being returned: the days not yet accrued, then the fine paid. */
+    public List<Posting> returnPostings(Long userId, Long issueId, double unaccrued, double paid) {
+        List<Posting> postings = new ArrayList<>(2);
+        if (unaccrued > 0) {
+            postings.add(new Posting(userId, issueId, FineEntryType.ACCRUAL, unaccrued));
+        }
+        if (paid > 0) {
+            postings.add(new Posting(userId, issueId, FineEntryType.PAYMENT, -paid));
+        }
+        return postings;
+    }
+
+    /**
+     * Applies the postings to their users' balances and appends them to the ledger with
+     * the running balance after each. Must run inside the caller's transaction; accounts
+     * are updated in user id order so concurrent posters cannot deadlock.
+     */
+    public void post(List<Posting> postings, LocalDate day) {
+        if (postings.isEmpty()) {
+            return;
+        }
+        Map<Long, Double> totals = new TreeMap<>();
+        for (Posting posting : postings) {
+            totals.merge(posting.userId(), posting.amount(), Double::sum);
+        }
+        List<Long> userIds = new ArrayList<>(totals.keySet());
+        int[] credited = jdbcTemplate.batchUpdate(CREDIT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setDouble(1, totals.get(userIds.get(i)));
+                ps.setDate(2, Date.valueOf(day));
+                ps.setLong(3, userIds.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return userIds.size();
+            }
+        });
+        for (int i = 0; i < userIds.size(); i++) {
+            if (credited[i] == 0) {
+                openAccount(userIds.get(i), totals.get(userIds.get(i)), day);
+            }
+        }
+
+        // The account rows are locked by this transaction, so these are our balances
+        Map<Long, Double> running = new HashMap<>();
+        jdbcTemplate.query("select user_id, balance from fine_account where user_id in ("
+                        + String.join(",", Collections.nCopies(userIds.size(), "?")) + ")",
+                rs -> {
+                    long userId = rs.getLong(1);
+                    running.put(userId, rs.getDouble(2) - totals.get(userId));
+                },
+                userIds.toArray());
+        double[] balances = new double[postings.size()];
+        for (int i = 0; i < postings.size(); i++) {
+            Posting posting = postings.get(i);
+            balances[i] = running.merge(posting.userId(), posting.amount(), Double::sum);
+        }
+        jdbcTemplate.batchUpdate(LEDGER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Posting posting = postings.get(i);
+                ps.setLong(1, posting.userId());
+                ps.setLong(2, posting.issueId());
+                ps.setDate(3, Date.valueOf(day));
+                ps.setString(4, posting.type().name());
+                ps.setDouble(5, posting.amount());
+                ps.setDouble(6, balances[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return postings.size();
+            }
+        });
+    }
+
+    // A concurrent first posting may open the account between our UPDATE and INSERT; the
+    // savepoint keeps this transaction usable after the duplicate key so the credit can be retried
+    private void openAccount(Long userId, double amount, LocalDate day) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                jdbcTemplate.update(OPEN_ACCOUNT_SQL, userId, amount, Date.valueOf(day));
+                connection.releaseSavepoint(savepoint);
+            } catch (DuplicateKeyException e) {
+                connection.rollback(savepoint);
+                jdbcTemplate.update(CREDIT_SQL, amount, Date.valueOf(day), userId);
+            }
+            return null;
+        });
+    }
+
+    public double getBalance(Long userId) {
+        return accountRepo.findById(userId).map(account -> account.getBalance()).orElse(0.0);
+    }
+
+    public double getTotalBalance() {
+        return accountRepo.sumBalances();
+    }
+
+    public List<FineEntryView> getEntries(Long userId, int limit) {
+        return ledgerRepo.findViewsByUserId(userId, PageRequest.of(0, limit));
+    }
+
+    public AccrualRun getLastRun() {
+        return lastRun;
+    }
+}
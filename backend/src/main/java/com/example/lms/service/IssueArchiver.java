@@ -0,0 +1,103 @@
+package com.example.lms.service;
+
+import com.example.lms.repository.IssueRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Moves returned loans older than lms.issues.archive-after-days from issue_record into
+ * issue_record_archive, so issue_record only holds open and recently returned loans and
+ * the circulation queries stay the size of current activity rather than all history.
+ *
+ * Runs nightly in small batches, each copied and deleted in its own transaction. Returned
+ * loans are never updated again, so no circulation locks are needed.
+ */
+@Service
+public class IssueArchiver {
+    private static final String COPY_SQL = "insert into issue_record_archive (id, book_id, user_id, copy_id, "
+            + "issue_date, due_date, return_date, fine_paid, fine_accrued, archived_on) "
+            + "select id, book_id, user_id, copy_id, issue_date, due_date, return_date, fine_paid, fine_accrued, ? "
+            + "from issue_record where return_date is not null and id in (";
+    private static final String DELETE_SQL = "delete from issue_record where return_date is not null and id in (";
+
+    private final IssueRecordRepository issueRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final int archiveAfterDays;
+    private final int batchSize;
+    private volatile ArchiveRun lastRun;
+
+    public record ArchiveRun(LocalDate cutoff, int archived, long millis) {}
+
+    public IssueArchiver(IssueRecordRepository issueRepo, TransactionTemplate transactionTemplate,
+                         JdbcTemplate jdbcTemplate,
+                         @Value("${lms.issues.archive-after-days:365}") int archiveAfterDays,
+                         @Value("${lms.issues.archive-batch-size:500}") int batchSize) {
+        this.issueRepo = issueRepo;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.archiveAfterDays = archiveAfterDays;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(cron = "${lms.issues.archive-cron:0 30 1 * * *}")
+    public void archiveNightly() {
+        if (archiveAfterDays > 0) {
+            archive(LocalDate.now().minusDays(archiveAfterDays));
+        }
+    }
+
+    /** Archives every loan returned before the cutoff; stops at the first batch that fails. */
+    public synchronized ArchiveRun archive(LocalDate cutoff) {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        int archived = 0;
+        while (true) {
+            List<Long> ids = issueRepo.findIdsReturnedBefore(cutoff, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            try {
+                archived += transactionTemplate.execute(status -> archiveBatch(ids, today));
+            } catch (RuntimeException e) {
+                System.out.println("Issue archiving failed at loan " + ids.get(0) + ": " + e.getMessage());
+                break;
+            }
+        }
+        lastRun = new ArchiveRun(cutoff, archived, System.currentTimeMillis() - start);
+        if (archived > 0) {
+            System.out.println("Archived " + archived + " loans returned before " + cutoff
+                    + " in " + lastRun.millis() + " ms");
+        }
+        return lastRun;
+    }
+
+    private int archiveBatch(List<Long> ids, LocalDate today) {
+        String in = String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+        List<Object> copyArgs = new ArrayList<>(ids.size() + 1);
+        copyArgs.add(Date.valueOf(today));
+        copyArgs.addAll(ids);
+        int copied = jdbcTemplate.update(COPY_SQL + in, copyArgs.toArray());
+        int deleted = jdbcTemplate.update(DELETE_SQL + in, ids.toArray());
+        if (copied != deleted) {
+            throw new IllegalStateException("copied " + copied + " loans but deleted " + deleted);
+        }
+        return deleted;
+    }
+
+    public ArchiveRun getLastRun() {
+        return lastRun;
+    }
+
+    public int getArchiveAfterDays() {
+        return archiveAfterDays;
+    }
+}
@@ -1,30 +1,461 @@
 package com.example.lms.service;
 
+import com.example.lms.dto.IssueView;
+import com.example.lms.dto.OpenLoan;
 import com.example.lms.model.*;
+import com.example.lms.repository.IssueRecordArchiveRepository;
 import com.example.lms.repository.IssueRecordRepository;
+import com.example.lms.search.BookPopularity;
+import com.example.lms.util.IsbnUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 public class IssueService {
     private final IssueRecordRepository issueRepo;
-    private final double FINE_PER_DAY = 1.0; // $1 per day fine
+    private final IssueRecordArchiveRepository archiveRepo;
+    private final BookPopularity popularity;
+    private final BookService bookService;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final CirculationLocks locks;
+    private final FineLedgerService fineLedger;
+    private final LibraryCalendar calendar;
+    private final int returnChunkSize;
+    private static final int LOAN_DAYS = 14;
+    public static final int MAX_BATCH_SIZE = 50;
+    public static final int MAX_RETURN_BATCH_SIZE = 2000;
+    private static final String INSERT_ISSUE_SQL = "insert into issue_record (book_id, user_id, issue_date, due_date, "
+            + "fine_paid, copy_id) values (?, ?, ?, ?, ?, ?)";
+    private static final String RETURN_ISSUE_SQL = "update issue_record set return_date = ?, fine_paid = ?, "
+            + "fine_accrued = coalesce(fine_accrued, 0) + ?, accrued_through = ? where id = ? and return_date is null";
+    // available_copies stays null for titles without copies
+    private static final String RETURN_BOOK_SQL = "update book set available = true, "
+            + "available_copies = available_copies + 1, updated_at = current_timestamp where id = ?";
+    private static final String RETURN_COPY_SQL = "update book_copy set status = 'AVAILABLE' where id = ?";
     
-    public IssueService(IssueRecordRepository issueRepo) { 
+    public IssueService(IssueRecordRepository issueRepo, IssueRecordArchiveRepository archiveRepo,
+                        BookPopularity popularity, BookService bookService,
+                        TransactionTemplate transactionTemplate, JdbcTemplate jdbcTemplate, CirculationLocks locks,
+                        FineLedgerService fineLedger, LibraryCalendar calendar,
+                        @Value("${lms.issues.return-chunk-size:200}") int returnChunkSize) { 
         this.issueRepo = issueRepo; 
+        this.archiveRepo = archiveRepo;
+        this.popularity = popularity;
+        this.bookService = bookService;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.locks = locks;
+        this.fineLedger = fineLedger;
+        this.calendar = calendar;
+        this.returnChunkSize = Math.max(1, returnChunkSize);
     }
 
+    /** Outcome of one book of a batch checkout; issueId and dueDate are set when it was issued. */
+    public record CheckoutItem(Long bookId, boolean issued, Long issueId, String title, LocalDate dueDate,
+                               String error) {
+        static CheckoutItem failed(Long bookId, String title, String error) {
+            return new CheckoutItem(bookId, false, null, title, null, error);
+        }
+    }
+
+    /**
+     * Checks the book out to the user, or returns null when it is not available.
+     * Availability is claimed with one conditional UPDATE in the same transaction
+     * as the issue record, so concurrent checkouts of a book cannot both succeed;
+     * within this instance they also queue on the book's circulation lock.
+     * Titles catalogued by copy skip that queue: each checkout claims its own copy.
+     */
     public IssueRecord issueBook(Book book, User user) {
-        IssueRecord ir = new IssueRecord();
-        ir.setBook(book);
-        ir.setUser(user);
-        ir.setIssueDate(LocalDate.now());
-        ir.setDueDate(LocalDate.now().plusDays(14));
-        ir.setFinePaid(0.0); // Initialize fine as 0
-        return issueRepo.save(ir);
+        if (book.getAvailableCopies() != null) {
+            return issueCopy(book, user);
+        }
+        return locks.withBook(book.getId(), () -> issueLocked(book, user));
+    }
+
+    private IssueRecord issueCopy(Book book, User user) {
+        int[] left = new int[1];
+        IssueRecord saved = transactionTemplate.execute(status -> {
+            BookCopy copy = bookService.claimCopy(book.getId());
+            if (copy == null) {
+                return null;
+            }
+            IssueRecord ir = new IssueRecord();
+            ir.setBook(book);
+            ir.setUser(user);
+            ir.setCopy(copy);
+            LocalDate today = LocalDate.now();
+            ir.setIssueDate(today);
+            ir.setDueDate(calendar.dueDate(today, LOAN_DAYS));
+            ir.setFinePaid(0.0);
+            IssueRecord record = issueRepo.save(ir);
+            left[0] = bookService.takeCopy(book.getId());
+            return record;
+        });
+        if (saved == null) {
+            return null;
+        }
+        book.setAvailableCopies(left[0]);
+        book.setAvailable(left[0] > 0);
+        if (left[0] == 0) {
+            bookService.availabilityChanged(book.getId(), false);
+        }
+        bookService.copiesChanged(book.getId());
+        bookService.recordIssue(book.getId());
+        return saved;
+    }
+
+    private IssueRecord issueLocked(Book book, User user) {
+        IssueRecord saved = transactionTemplate.execute(status -> {
+            if (!bookService.setAvailableIfChanged(book.getId(), false)) {
+                return null;
+            }
+            IssueRecord ir = new IssueRecord();
+            ir.setBook(book);
+            ir.setUser(user);
+            LocalDate today = LocalDate.now();
+            ir.setIssueDate(today);
+            ir.setDueDate(calendar.dueDate(today, LOAN_DAYS));
+            ir.setFinePaid(0.0); // Initialize fine as 0
+            return issueRepo.save(ir);
+        });
+        if (saved == null) {
+            return null;
+        }
+        book.setAvailable(false);
+        bookService.availabilityChanged(book.getId(), false);
+        bookService.recordIssue(book.getId());
+        return saved;
+    }
+    
+    /**
+     * Checks a stack of books out to one user in a single transaction. The books are
+     * locked in id order, the available ones are flipped by one UPDATE and their issue
+     * records inserted as one JDBC batch. Books that are missing, already out or listed
+     * twice fail individually without affecting the rest.
+     */
+    public List<CheckoutItem> issueBooks(User user, List<Long> bookIds) {
+        return locks.withBooks(bookIds, () -> issueLocked(user, bookIds));
+    }
+
+    private List<CheckoutItem> issueLocked(User user, List<Long> bookIds) {
+        LocalDate today = LocalDate.now();
+        LocalDate dueDate = calendar.dueDate(today, LOAN_DAYS);
+        Map<Long, CheckoutItem> outcomes = new HashMap<>();
+        List<Book> issued = new ArrayList<>();
+        List<Long> soldOut = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            outcomes.clear();
+            issued.clear();
+            soldOut.clear();
+            Set<Long> requested = new TreeSet<>(bookIds);
+            Map<Long, Book> locked = new HashMap<>();
+            for (Book book : bookService.lockBooks(requested)) {
+                locked.put(book.getId(), book);
+            }
+            // Titles with copies lend one of them; the rest flip their flag
+            List<Long> flipped = new ArrayList<>();
+            List<Long> copyIds = new ArrayList<>();
+            for (Long bookId : requested) {
+                Book book = locked.get(bookId);
+                if (book == null) {
+                    outcomes.put(bookId, CheckoutItem.failed(bookId, null, "Book not found"));
+                    continue;
+                }
+                BookCopy copy = null;
+                if (book.isAvailable() && book.getAvailableCopies() != null) {
+                    // Free copies may all be claimed by checkouts still waiting for this book's row
+                    copy = bookService.claimCopy(bookId);
+                }
+                if (!book.isAvailable() || (book.getAvailableCopies() != null && copy == null)) {
+                    outcomes.put(bookId, CheckoutItem.failed(bookId, book.getTitle(), "Book is not available"));
+                    continue;
+                }
+                issued.add(book);
+                copyIds.add(copy == null ? null : copy.getId());
+                if (copy == null) {
+                    flipped.add(bookId);
+                }
+            }
+            if (issued.isEmpty()) {
+                return;
+            }
+            List<Long> ids = issued.stream().map(Book::getId).toList();
+            if (!flipped.isEmpty() && bookService.markIssued(flipped) != flipped.size()) {
+                // Cannot happen while the rows are locked; never commit a partial flip
+                throw new IllegalStateException("Books changed while locked: " + flipped);
+            }
+            List<Long> issueIds = insertIssueRecords(user, ids, copyIds, today, dueDate);
+            for (int i = 0; i < issued.size(); i++) {
+                if (copyIds.get(i) != null && bookService.takeCopy(ids.get(i)) == 0) {
+                    soldOut.add(ids.get(i));
+                }
+            }
+            for (int i = 0; i < issued.size(); i++) {
+                Book book = issued.get(i);
+                outcomes.put(book.getId(), new CheckoutItem(book.getId(), true, issueIds.get(i), book.getTitle(),
+                        dueDate, null));
+            }
+        });
+        for (Book book : issued) {
+            if (book.getAvailableCopies() == null || soldOut.contains(book.getId())) {
+                bookService.availabilityChanged(book.getId(), false);
+            }
+            if (book.getAvailableCopies() != null) {
+                bookService.copiesChanged(book.getId());
+            }
+            bookService.recordIssue(book.getId());
+        }
+
+        // One item per requested id, in request order; repeats after the first are rejected
+        List<CheckoutItem> items = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Long bookId : bookIds) {
+            items.add(seen.add(bookId) ? outcomes.get(bookId)
+                    : CheckoutItem.failed(bookId, null, "Book listed more than once"));
+        }
+        return items;
+    }
+
+    private List<Long> insertIssueRecords(User user, List<Long> bookIds, List<Long> copyIds, LocalDate issueDate,
+                                          LocalDate dueDate) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_ISSUE_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, bookIds.get(i));
+                        ps.setLong(2, user.getId());
+                        ps.setDate(3, Date.valueOf(issueDate));
+                        ps.setDate(4, Date.valueOf(dueDate));
+                        ps.setDouble(5, 0.0);
+                        if (copyIds.get(i) == null) {
+                            ps.setNull(6, Types.BIGINT);
+                        } else {
+                            ps.setLong(6, copyIds.get(i));
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return bookIds.size();
+                    }
+                },
+                keys);
+        List<Long> ids = new ArrayList<>();
+        for (Map<String, Object> row : keys.getKeyList()) {
+            ids.add(((Number) row.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+    
+    /**
+     * Outcome of one entry of a batch return, identified by the issue id or barcode it was
+     * requested with; fine is the amount recorded as paid.
+     */
+    public record ReturnItem(Long issueId, String barcode, Long bookId, boolean returned, Double fine,
+                             String error) {
+        static ReturnItem failed(Long issueId, String barcode, Long bookId, String error) {
+            return new ReturnItem(issueId, barcode, bookId, false, null, error);
+        }
+    }
+
+    private record PendingReturn(int item, OpenLoan loan, String barcode, double fine) {}
+
+    /**
+     * Returns every loan named by issue id or by book barcode (ISBN), for emptying the book
+     * drop. Loans are resolved with two queries and their fines computed up front; the
+     * updates then go out as JDBC batches, one transaction per chunk, so a failure only
+     * loses the chunk it happened in. Items come back in request order, issue ids first.
+     */
+    public List<ReturnItem> returnBooks(List<Long> issueIds, List<String> barcodes) {
+        LocalDate today = LocalDate.now();
+        List<ReturnItem> items = new ArrayList<>();
+        List<PendingReturn> pending = new ArrayList<>();
+        Set<Long> claimed = new HashSet<>();
+
+        if (!issueIds.isEmpty()) {
+            Map<Long, OpenLoan> loans = new HashMap<>();
+            for (OpenLoan loan : issueRepo.findLoansByIds(new HashSet<>(issueIds))) {
+                loans.put(loan.issueId(), loan);
+            }
+            for (Long issueId : issueIds) {
+                OpenLoan loan = loans.get(issueId);
+                if (loan == null) {
+                    items.add(ReturnItem.failed(issueId, null, null, "Issue record not found"));
+                } else if (loan.returnDate() != null) {
+                    items.add(ReturnItem.failed(issueId, null, loan.bookId(), "Book already returned"));
+                } else if (!claimed.add(issueId)) {
+                    items.add(ReturnItem.failed(issueId, null, loan.bookId(), "Listed more than once"));
+                } else {
+                    pending.add(new PendingReturn(items.size(), loan, null, fineFor(loan.dueDate(), today)));
+                    items.add(null);
+                }
+            }
+        }
+
+        if (!barcodes.isEmpty()) {
+            // A copy barcode names that copy's loan; anything else is taken as an ISBN
+            Map<String, Long> copyIds = bookService.findCopyIdsByBarcodes(
+                    barcodes.stream().map(String::trim).collect(java.util.stream.Collectors.toSet()));
+            Map<Long, OpenLoan> copyLoans = new HashMap<>();
+            if (!copyIds.isEmpty()) {
+                for (OpenLoan loan : issueRepo.findOpenLoansByCopyIds(copyIds.values())) {
+                    copyLoans.put(loan.copyId(), loan);
+                }
+            }
+            Set<String> canonical = new HashSet<>();
+            Set<String> raw = new HashSet<>();
+            for (String barcode : barcodes) {
+                if (copyIds.containsKey(barcode.trim())) {
+                    continue;
+                }
+                String isbn = IsbnUtil.canonicalize(barcode);
+                if (isbn != null) {
+                    canonical.add(isbn);
+                } else {
+                    raw.add(barcode.trim());
+                }
+            }
+            // Oldest loan first should a book ever have two open ones. An ISBN cannot say which
+            // copy of a title catalogued by copy is in the drop, so those loans are left out
+            Map<String, OpenLoan> loans = new HashMap<>();
+            Set<String> copyTitles = new HashSet<>();
+            List<OpenLoan> found = new ArrayList<>(issueRepo.findOpenLoansByIsbns(canonical, raw));
+            found.sort(Comparator.comparing(OpenLoan::issueId));
+            for (OpenLoan loan : found) {
+                if (loan.copyId() != null) {
+                    Collections.addAll(copyTitles, loan.canonicalIsbn(), loan.isbn());
+                    continue;
+                }
+                if (loan.canonicalIsbn() != null) {
+                    loans.putIfAbsent(loan.canonicalIsbn(), loan);
+                }
+                if (loan.isbn() != null) {
+                    loans.putIfAbsent(loan.isbn(), loan);
+                }
+            }
+            for (String barcode : barcodes) {
+                Long copyId = copyIds.get(barcode.trim());
+                String isbn = IsbnUtil.canonicalize(barcode);
+                String key = isbn != null ? isbn : barcode.trim();
+                OpenLoan loan = copyId != null ? copyLoans.get(copyId) : loans.get(key);
+                if (loan == null && copyId == null && copyTitles.contains(key)) {
+                    items.add(ReturnItem.failed(null, barcode, null, "Scan the copy barcode, not the ISBN"));
+                } else if (loan == null) {
+                    items.add(ReturnItem.failed(null, barcode, null, "No open loan for barcode"));
+                } else if (!claimed.add(loan.issueId())) {
+                    items.add(ReturnItem.failed(loan.issueId(), barcode, loan.bookId(), "Listed more than once"));
+                } else {
+                    pending.add(new PendingReturn(items.size(), loan, barcode, fineFor(loan.dueDate(), today)));
+                    items.add(null);
+                }
+            }
+        }
+
+        for (int from = 0; from < pending.size(); from += returnChunkSize) {
+            List<PendingReturn> chunk = pending.subList(from, Math.min(pending.size(), from + returnChunkSize));
+            List<Long> chunkBooks = chunk.stream().map(p -> p.loan().bookId()).toList();
+            List<PendingReturn> returned;
+            try {
+                returned = locks.withBooks(chunkBooks, () -> {
+                    List<PendingReturn> done = transactionTemplate.execute(status -> applyReturns(chunk, today));
+                    done.forEach(p -> bookService.availabilityChanged(p.loan().bookId(), true));
+                    done.stream().filter(p -> p.loan().copyId() != null).map(p -> p.loan().bookId()).distinct()
+                            .forEach(bookService::copiesChanged);
+                    return done;
+                });
+            } catch (RuntimeException e) {
+                System.out.println("Batch return chunk of " + chunk.size() + " failed: " + e.getMessage());
+                for (PendingReturn p : chunk) {
+                    items.set(p.item(), ReturnItem.failed(p.loan().issueId(), p.barcode(), p.loan().bookId(),
+                            "Return failed, try again"));
+                }
+                continue;
+            }
+            for (PendingReturn p : chunk) {
+                items.set(p.item(), ReturnItem.failed(p.loan().issueId(), p.barcode(), p.loan().bookId(),
+                        "Book already returned"));
+            }
+            for (PendingReturn p : returned) {
+                items.set(p.item(), new ReturnItem(p.loan().issueId(), p.barcode(), p.loan().bookId(), true,
+                        p.fine(), null));
+            }
+        }
+        return items;
+    }
+
+    // Closes the chunk's loans, skipping any returned since they were read, and frees their books
+    private List<PendingReturn> applyReturns(List<PendingReturn> chunk, LocalDate today) {
+        int[] counts = jdbcTemplate.batchUpdate(RETURN_ISSUE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                PendingReturn p = chunk.get(i);
+                ps.setDate(1, Date.valueOf(today));
+                ps.setDouble(2, p.fine());
+                ps.setDouble(3, fineFor(p.loan().accrualStart(), today));
+                ps.setDate(4, Date.valueOf(today));
+                ps.setLong(5, p.loan().issueId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+        List<PendingReturn> returned = new ArrayList<>();
+        List<FineLedgerService.Posting> postings = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (counts[i] != 0) {
+                PendingReturn p = chunk.get(i);
+                returned.add(p);
+                postings.addAll(fineLedger.returnPostings(p.loan().userId(), p.loan().issueId(),
+                        fineFor(p.loan().accrualStart(), today), p.fine()));
+            }
+        }
+        fineLedger.post(postings, today);
+        List<Long> copies = returned.stream().map(p -> p.loan().copyId()).filter(Objects::nonNull).toList();
+        if (!copies.isEmpty()) {
+            jdbcTemplate.batchUpdate(RETURN_COPY_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, copies.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return copies.size();
+                }
+            });
+        }
+        if (!returned.isEmpty()) {
+            jdbcTemplate.batchUpdate(RETURN_BOOK_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, returned.get(i).loan().bookId());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return returned.size();
+                }
+            });
+        }
+        return returned;
     }
     
     public List<IssueRecord> getUserIssues(User user) {
@@ -34,6 +465,116 @@ public class IssueService {
     public List<IssueRecord> getAllIssues() {
         return issueRepo.findAll();
     }
+
+    public List<IssueView> getUserIssueViews(User user) {
+        return issueRepo.findViewsByUserId(user.getId());
+    }
+
+    public List<IssueView> getAllIssueViews() {
+        return issueRepo.findAllViews();
+    }
+
+    // The histories below also read issue_record_archive, so only serve them on request
+    public List<IssueView> getUserIssueHistory(User user) {
+        return mergeById(archiveRepo.findViewsByUserId(user.getId()), issueRepo.findViewsByUserId(user.getId()));
+    }
+
+    public List<IssueView> getAllIssueHistory() {
+        return mergeById(archiveRepo.findAllViews(), issueRepo.findAllViews());
+    }
+
+    // Both lists are in id order; a loan is in exactly one of them
+    private static List<IssueView> mergeById(List<IssueView> archived, List<IssueView> current) {
+        if (archived.isEmpty()) {
+            return current;
+        }
+        List<IssueView> merged = new ArrayList<>(archived.size() + current.size());
+        int a = 0, c = 0;
+        while (a < archived.size() || c < current.size()) {
+            if (c == current.size() || (a < archived.size() && archived.get(a).id() < current.get(c).id())) {
+                merged.add(archived.get(a++));
+            } else {
+                merged.add(current.get(c++));
+            }
+        }
+        return merged;
+    }
+    
+    public Page<IssueView> getOverdueIssueViews(LocalDate today, int page, int size) {
+        return issueRepo.findOverdueViews(today, PageRequest.of(page, size));
+    }
+
+    public List<IssueView> getUserOpenIssueViews(User user) {
+        return issueRepo.findOpenViewsByUserId(user.getId());
+    }
+
+    public long countUserIssues(User user) {
+        return issueRepo.countByUser_Id(user.getId()) + archiveRepo.countByUser_Id(user.getId());
+    }
+
+    public double getUserFinesPaid(User user) {
+        return issueRepo.sumFinesPaidByUserId(user.getId()) + archiveRepo.sumFinesPaidByUserId(user.getId());
+    }
+
+    public double getTotalFinesPaid() {
+        return issueRepo.sumFinesPaid() + archiveRepo.sumFinesPaid();
+    }
+
+    /** Fines on loans still out, as {@link #calculateFine} reports them: accrued plus the days since. */
+    public double getOutstandingFines() {
+        LocalDate today = LocalDate.now();
+        double total = issueRepo.sumFineAccruedOnOpenLoans();
+        for (Object[] row : issueRepo.countOverdueLoansByAccrualStart(today)) {
+            LocalDate dueDate = (LocalDate) row[0];
+            LocalDate through = (LocalDate) row[1];
+            LocalDate start = through != null && through.isAfter(dueDate) ? through : dueDate;
+            total += fineFor(start, today) * ((Number) row[2]).longValue();
+        }
+        return total;
+    }
+
+    /** Fines recorded on returns in each month of the year, keyed by month number. */
+    public Map<Integer, Double> getFinesPaidByMonth(int year) {
+        LocalDate from = LocalDate.of(year, 1, 1);
+        LocalDate to = LocalDate.of(year + 1, 1, 1);
+        Map<Integer, Double> fines = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>(issueRepo.sumFinesPaidByMonth(from, to));
+        rows.addAll(archiveRepo.sumFinesPaidByMonth(from, to));
+        for (Object[] row : rows) {
+            fines.merge(((Number) row[0]).intValue(), ((Number) row[1]).doubleValue(), Double::sum);
+        }
+        return fines;
+    }
+
+    public double fineFor(IssueView issue, LocalDate today) {
+        return issue.returnDate() != null ? 0.0 : fineFor(issue.dueDate(), today);
+    }
+    
+    // [bookId, title, author, issueCount] rows, most issued first
+    public List<Object[]> getMostIssuedBetween(LocalDate from, LocalDate to, int limit) {
+        // Recent ranges have nothing archived; otherwise both tables are counted in full and merged
+        List<Object[]> archived = archiveRepo.countIssuesPerBookBetween(from, to, Pageable.unpaged());
+        if (archived.isEmpty()) {
+            return issueRepo.countIssuesPerBookBetween(from, to, PageRequest.of(0, limit));
+        }
+        Map<Long, Object[]> counts = new HashMap<>();
+        for (Object[] row : issueRepo.countIssuesPerBookBetween(from, to, Pageable.unpaged())) {
+            counts.put((Long) row[0], row);
+        }
+        for (Object[] row : archived) {
+            counts.merge((Long) row[0], row, (current, old) ->
+                    new Object[]{current[0], current[1], current[2], (Long) current[3] + (Long) old[3]});
+        }
+        return counts.values().stream()
+                .sorted(Comparator.comparing((Object[] row) -> (Long) row[3]).reversed()
+                        .thenComparing(row -> (Long) row[0]))
+                .limit(limit)
+                .toList();
+    }
+
+    public List<BookPopularity.Count> getMostIssued(int limit) {
+        return popularity.mostIssued(limit);
+    }
     
     public IssueRecord save(IssueRecord ir) { 
         return issueRepo.save(ir); 
@@ -49,19 +590,70 @@ public class IssueService {
             return record.getFinePaid();
         }
         
-        LocalDate today = LocalDate.now();
-        if (today.isAfter(record.getDueDate())) {
-            long daysLate = ChronoUnit.DAYS.between(record.getDueDate(), today);
-            return daysLate * FINE_PER_DAY;
-        }
-        
-        return 0.0;
+        // What the ledger holds plus the days since it was last accrued
+        double accrued = record.getFineAccrued() == null ? 0.0 : record.getFineAccrued();
+        return accrued + fineFor(accrualStart(record), LocalDate.now());
+    }
+
+    private static LocalDate accrualStart(IssueRecord record) {
+        LocalDate through = record.getAccruedThrough();
+        return through != null && through.isAfter(record.getDueDate()) ? through : record.getDueDate();
+    }
+
+    private double fineFor(LocalDate dueDate, LocalDate today) {
+        return dueDate == null ? 0.0 : fineLedger.fineFor(dueDate, today);
+    }
+
+    /** Open days the loan is overdue by on the given day; days the library was closed do not count. */
+    public long daysOverdue(LocalDate dueDate, LocalDate today) {
+        return calendar.openDaysBetween(dueDate, today);
     }
     
+    /**
+     * Closes the loan, or returns null when it was already returned. The record may have
+     * been read before the lock was taken, so the loan is closed with the same guarded
+     * UPDATE as the batch path and nothing else is touched if another return got there first.
+     */
     public IssueRecord returnBook(IssueRecord record, double finePaid) {
-        record.setReturnDate(LocalDate.now());
+        return locks.withBook(record.getBook().getId(), () -> returnLocked(record, finePaid));
+    }
+
+    private IssueRecord returnLocked(IssueRecord record, double finePaid) {
+        LocalDate today = LocalDate.now();
+        double unaccrued = fineFor(accrualStart(record), today);
+        // The book is not cascaded from the record; its flag is flipped in place rather than
+        // by saving the loaded copy, which could overwrite a concurrent change
+        Boolean closed = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(RETURN_ISSUE_SQL, Date.valueOf(today), finePaid, unaccrued,
+                    Date.valueOf(today), record.getId()) == 0) {
+                return false;
+            }
+            if (record.getCopy() != null) {
+                bookService.putBackCopy(record.getBook().getId(), record.getCopy().getId());
+            } else {
+                bookService.setAvailableIfChanged(record.getBook().getId(), true);
+            }
+            fineLedger.post(fineLedger.returnPostings(record.getUser().getId(), record.getId(), unaccrued, finePaid),
+                    today);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(closed)) {
+            return null;
+        }
+        record.setReturnDate(today);
         record.setFinePaid(finePaid);
+        record.setFineAccrued((record.getFineAccrued() == null ? 0.0 : record.getFineAccrued()) + unaccrued);
+        record.setAccruedThrough(today);
         record.getBook().setAvailable(true);
-        return save(record);
+        if (record.getCopy() != null) {
+            record.getCopy().setStatus(CopyStatus.AVAILABLE);
+            Integer copies = record.getBook().getAvailableCopies();
+            record.getBook().setAvailableCopies(copies == null ? null : copies + 1);
+        }
+        bookService.availabilityChanged(record.getBook().getId(), true);
+        if (record.getCopy() != null) {
+            bookService.copiesChanged(record.getBook().getId());
+        }
+        return record;
     }
-} 
\ No newline at end of file
+}
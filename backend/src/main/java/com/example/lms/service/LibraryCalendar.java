@@ -0,0 +1,177 @@
+package com.example.lms.service;
+
+import com.example.lms.model.LibraryClosure;
+import com.example.lms.repository.LibraryClosureRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The days the library is open: every day except the configured closed weekdays and
+ * the dates in library_closure.
+ *
+ * Each year is kept as a bitset of its closed days plus a prefix count of open days,
+ * built on first use. Counting the open days between two dates is then two array
+ * lookups per calendar year spanned, and finding the next open day scans at most a
+ * few words, so due dates and fines cost the same however long a loan is overdue.
+ */
+@Component
+public class LibraryCalendar {
+    // Searching further than this for an open day means the calendar is misconfigured
+    private static final int MAX_ROLLOVER_YEARS = 2;
+
+    private final LibraryClosureRepository closureRepo;
+    private final Set<DayOfWeek> closedWeekdays;
+    private volatile State state;
+
+    // The closures a set of year tables was built from; replaced whole when they change
+    private record State(Set<LocalDate> closures, Map<Integer, Year> years) {}
+
+    private static final class Year {
+        final long[] closed;
+        // openBefore[i] = open days among the year's first i days
+        final int[] openBefore;
+
+        Year(int year, Set<DayOfWeek> closedWeekdays, Set<LocalDate> closures) {
+            LocalDate first = LocalDate.of(year, 1, 1);
+            int length = first.lengthOfYear();
+            closed = new long[(length + 63) >>> 6];
+            openBefore = new int[length + 1];
+            DayOfWeek weekday = first.getDayOfWeek();
+            for (int i = 0; i < length; i++) {
+                if (closedWeekdays.contains(weekday) || closures.contains(first.plusDays(i))) {
+                    closed[i >>> 6] |= 1L << i;
+                    openBefore[i + 1] = openBefore[i];
+                } else {
+                    openBefore[i + 1] = openBefore[i] + 1;
+                }
+                weekday = weekday.plus(1);
+            }
+        }
+
+        int openDays() {
+            return openBefore[openBefore.length - 1];
+        }
+
+        // Index of the first open day at or after i, or -1 if the rest of the year is closed
+        int nextOpen(int i) {
+            int length = openBefore.length - 1;
+            for (int word = i >>> 6; word < closed.length; word++) {
+                long open = ~closed[word];
+                if (word == i >>> 6) {
+                    open &= -1L << i;
+                }
+                if (open != 0) {
+                    int day = (word << 6) + Long.numberOfTrailingZeros(open);
+                    return day < length ? day : -1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public LibraryCalendar(LibraryClosureRepository closureRepo,
+                           @Value("${lms.calendar.closed-weekdays:}") String closedWeekdays) {
+        this.closureRepo = closureRepo;
+        Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+        for (String day : closedWeekdays.split(",")) {
+            if (!day.isBlank()) {
+                weekdays.add(DayOfWeek.valueOf(day.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        if (weekdays.size() == DayOfWeek.values().length) {
+            throw new IllegalStateException("lms.calendar.closed-weekdays closes the library every day");
+        }
+        this.closedWeekdays = weekdays;
+    }
+
+    public boolean isOpen(LocalDate date) {
+        int i = date.getDayOfYear() - 1;
+        return (year(date.getYear()).closed[i >>> 6] & (1L << i)) == 0;
+    }
+
+    /** The first open day on or after the date. */
+    public LocalDate nextOpenDay(LocalDate date) {
+        LocalDate from = date;
+        for (int y = 0; y <= MAX_ROLLOVER_YEARS; y++) {
+            int day = year(from.getYear()).nextOpen(from.getDayOfYear() - 1);
+            if (day >= 0) {
+                return from.withDayOfYear(day + 1);
+            }
+            from = LocalDate.of(from.getYear() + 1, 1, 1);
+        }
+        return date;
+    }
+
+    /** The due date of a loan of the given length, rolled forward past closed days. */
+    public LocalDate dueDate(LocalDate issueDate, int loanDays) {
+        return nextOpenDay(issueDate.plusDays(loanDays));
+    }
+
+    /** Open days after from up to and including to: the days a loan due on from is billed as late on to. */
+    public long openDaysBetween(LocalDate from, LocalDate to) {
+        if (!to.isAfter(from)) {
+            return 0;
+        }
+        return openBefore(to.plusDays(1), from.getYear()) - openBefore(from.plusDays(1), from.getYear());
+    }
+
+    // Open days from January 1 of baseYear up to, but excluding, the date
+    private long openBefore(LocalDate date, int baseYear) {
+        long count = 0;
+        for (int y = baseYear; y < date.getYear(); y++) {
+            count += year(y).openDays();
+        }
+        return count + year(date.getYear()).openBefore[date.getDayOfYear() - 1];
+    }
+
+    public List<LibraryClosure> getClosures() {
+        return closureRepo.findAllByOrderByClosedOnAsc();
+    }
+
+    public LibraryClosure addClosure(LocalDate date, String reason) {
+        LibraryClosure saved = closureRepo.save(new LibraryClosure(date, reason));
+        reload();
+        return saved;
+    }
+
+    public boolean removeClosure(LocalDate date) {
+        if (!closureRepo.existsById(date)) {
+            return false;
+        }
+        closureRepo.deleteById(date);
+        reload();
+        return true;
+    }
+
+    /** Re-reads the closures; year tables are rebuilt as they are next used. */
+    public synchronized void reload() {
+        Set<LocalDate> closures = new HashSet<>();
+        for (LibraryClosure closure : closureRepo.findAll()) {
+            closures.add(closure.getClosedOn());
+        }
+        state = new State(closures, new ConcurrentHashMap<>());
+    }
+
+    private Year year(int year) {
+        State current = state;
+        if (current == null) {
+            synchronized (this) {
+                if (state == null) {
+                    reload();
+                }
+                current = state;
+            }
+        }
+        Year table = current.years().get(year);
+        if (table == null) {
+            Set<LocalDate> closures = current.closures();
+            table = current.years().computeIfAbsent(year, y -> new Year(y, closedWeekdays, closures));
+        }
+        return table;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.lms.service;
 
+import com.example.lms.dto.ReservationView;
 import com.example.lms.model.*;
 import com.example.lms.repository.ReservationRepository;
 import org.springframework.stereotype.Service;
@@ -10,12 +11,28 @@ import java.util.Optional;
 @Service
 public class ReservationService {
     private final ReservationRepository reservationRepo;
+    private final BookService bookService;
+    private final CirculationLocks locks;
     
-    public ReservationService(ReservationRepository reservationRepo) { 
+    public ReservationService(ReservationRepository reservationRepo, BookService bookService, CirculationLocks locks) { 
         this.reservationRepo = reservationRepo; 
+        this.bookService = bookService;
+        this.locks = locks;
     }
 
+    /**
+     * Reserves the book, or returns null if it was returned in the meantime and can
+     * be checked out instead. Runs under the book's circulation lock so the check
+     * cannot interleave with a checkout or return of the same title.
+     */
     public Reservation reserveBook(Book book, User user) {
+        return locks.withBook(book.getId(), () -> {
+            boolean available = bookService.getBookById(book.getId()).map(Book::isAvailable).orElse(false);
+            return available ? null : reserveLocked(book, user);
+        });
+    }
+
+    private Reservation reserveLocked(Book book, User user) {
         Reservation r = new Reservation();
         r.setBook(book);
         r.setUser(user);
@@ -32,6 +49,14 @@ public class ReservationService {
     public List<Reservation> getAllReservations() {
         return reservationRepo.findAll();
     }
+
+    public List<ReservationView> getUserReservationViews(User user) {
+        return reservationRepo.findViewsByUserId(user.getId());
+    }
+
+    public List<ReservationView> getAllReservationViews() {
+        return reservationRepo.findAllViews();
+    }
     
     public Optional<Reservation> getReservationById(Long id) {
         return reservationRepo.findById(id);
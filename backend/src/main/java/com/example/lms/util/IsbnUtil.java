@@ -0,0 +1,61 @@
+package com.example.lms.util;
+
+/**
+ * ISBN normalization. Every valid ISBN-10 or ISBN-13, with or without hyphens
+ * and spaces, maps to the same 13-digit canonical form.
+ */
+public final class IsbnUtil {
+
+    private IsbnUtil() {
+    }
+
+    /** The ISBN-13 form of the input, or null if it is not a valid ISBN-10 or ISBN-13. */
+    public static String canonicalize(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if ((c == 'X' || c == 'x') && digits.length() == 9) {
+                digits.append('X');
+            } else if (c != '-' && c != ' ') {
+                return null;
+            }
+        }
+        if (digits.length() == 10) {
+            return isValidIsbn10(digits) ? toIsbn13(digits) : null;
+        }
+        if (digits.length() == 13 && digits.indexOf("X") < 0) {
+            boolean bookland = digits.charAt(0) == '9' && digits.charAt(1) == '7'
+                    && (digits.charAt(2) == '8' || digits.charAt(2) == '9');
+            return bookland && isbn13Check(digits) == digits.charAt(12) - '0' ? digits.toString() : null;
+        }
+        return null;
+    }
+
+    private static boolean isValidIsbn10(CharSequence digits) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = digits.charAt(i);
+            sum += (10 - i) * (c == 'X' ? 10 : c - '0');
+        }
+        return sum % 11 == 0;
+    }
+
+    private static String toIsbn13(CharSequence isbn10) {
+        StringBuilder isbn13 = new StringBuilder(13).append("978").append(isbn10, 0, 9);
+        return isbn13.append(isbn13Check(isbn13)).toString();
+    }
+
+    // Check digit over the first twelve digits: weights alternate 1 and 3
+    private static int isbn13Check(CharSequence digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (i % 2 == 0 ? 1 : 3) * (digits.charAt(i) - '0');
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.lms.bench;
+
+import com.example.lms.service.CirculationLocks;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circulation throughput with the requests for a title queueing on the database row lock
+ * alone ("db") versus on {@link CirculationLocks} first ("striped"). Every operation is a
+ * checkout or return in its own transaction: lock the book row, flip it, log the issue.
+ * titles=1 is a course text coming off reserve; titles=1000 is ordinary traffic.
+ *
+ * Run after mvn test-compile with
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; com.example.lms.bench.CirculationLockBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(16)
+public class CirculationLockBenchmark {
+
+    @Param({"db", "striped"})
+    public String locking;
+
+    @Param({"1", "1000"})
+    public int titles;
+
+    private JdbcConnectionPool pool;
+    private CirculationLocks locks;
+    // H2's identity column hands out duplicate keys under concurrent inserts, so ids are assigned here
+    private final AtomicLong issueIds = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:circulation;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+                "sa", "");
+        pool.setMaxConnections(32);
+        try (Connection c = pool.getConnection(); Statement s = c.createStatement()) {
+            s.execute("create table book (id bigint primary key, available boolean not null)");
+            s.execute("create table issue_record (id bigint primary key, book_id bigint not null, "
+                    + "issue_date date, return_date date)");
+            s.execute("create index idx_issue_open on issue_record (book_id, return_date)");
+            try (PreparedStatement insert = c.prepareStatement("insert into book (id, available) values (?, true)")) {
+                for (long id = 1; id <= titles; id++) {
+                    insert.setLong(1, id);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        locks = new CirculationLocks(1024, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Connection c = pool.getConnection(); Statement s = c.createStatement()) {
+            s.execute("drop all objects");
+        }
+        pool.dispose();
+        System.out.println(locks.stats());
+    }
+
+    @Benchmark
+    public boolean circulate() {
+        long bookId = ThreadLocalRandom.current().nextLong(titles) + 1;
+        if (locking.equals("striped")) {
+            return locks.withBook(bookId, () -> toggle(bookId));
+        }
+        return toggle(bookId);
+    }
+
+    // Checks the book out if it is on the shelf, otherwise returns it
+    private boolean toggle(long bookId) {
+        try (Connection c = pool.getConnection()) {
+            c.setAutoCommit(false);
+            boolean available;
+            try (PreparedStatement select = c.prepareStatement("select available from book where id = ? for update")) {
+                select.setLong(1, bookId);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    available = rs.getBoolean(1);
+                }
+            }
+            try (PreparedStatement update = c.prepareStatement("update book set available = ? where id = ?")) {
+                update.setBoolean(1, !available);
+                update.setLong(2, bookId);
+                update.executeUpdate();
+            }
+            String log = available
+                    ? "insert into issue_record (book_id, issue_date, id) values (?, current_date, ?)"
+                    : "update issue_record set return_date = current_date where book_id = ? and return_date is null";
+            try (PreparedStatement statement = c.prepareStatement(log)) {
+                statement.setLong(1, bookId);
+                if (available) {
+                    statement.setLong(2, issueIds.incrementAndGet());
+                }
+                statement.executeUpdate();
+            }
+            c.commit();
+            return available;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CirculationLockBenchmark.class.getSimpleName()).build()).run();
+    }
+}
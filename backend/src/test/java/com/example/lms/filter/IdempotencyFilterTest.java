@@ -0,0 +1,188 @@
+package com.example.lms.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+    @Test
+    void replaysTheFirstResponseForEitherUrlShape() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(10, 60), 1000);
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain chain = (request, response) -> {
+            calls.incrementAndGet();
+            response.setContentType("application/json");
+            response.getWriter().write("{\"id\":" + calls.get() + "}");
+        };
+
+        MockHttpServletResponse first = run(filter, issue("/api/issues/issue", "k1", "7"), chain);
+        MockHttpServletResponse retry = run(filter, issue("/issues/issue", "k1", "7"), chain);
+
+        assertEquals(1, calls.get());
+        assertEquals("{\"id\":1}", first.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(200, retry.getStatus());
+        assertEquals("{\"id\":1}", retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void rejectsAKeyReusedForADifferentRequest() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(10, 60), 1000);
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain chain = (request, response) -> calls.incrementAndGet();
+
+        run(filter, issue("/api/issues/issue", "k1", "7"), chain);
+        MockHttpServletResponse other = run(filter, issue("/api/issues/issue", "k1", "8"), chain);
+
+        assertEquals(422, other.getStatus());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void aWaiterRunsTheRequestWhenTheOwnerFails() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(10, 60), 5000);
+        CountDownLatch ownerStarted = new CountDownLatch(1);
+        CountDownLatch releaseOwner = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain chain = (request, response) -> {
+            if (calls.incrementAndGet() == 1) {
+                ownerStarted.countDown();
+                try {
+                    releaseOwner.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                ((HttpServletResponse) response).setStatus(500);
+            } else {
+                response.getWriter().write("second");
+            }
+        };
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> owner = threads.submit(
+                    () -> run(filter, issue("/api/issues/issue", "k1", "7"), chain));
+            assertTrue(ownerStarted.await(5, TimeUnit.SECONDS));
+            Future<MockHttpServletResponse> waiter = threads.submit(
+                    () -> run(filter, issue("/api/issues/issue", "k1", "7"), chain));
+            // Give the waiter time to start waiting on the owner's entry
+            Thread.sleep(200);
+            releaseOwner.countDown();
+
+            assertEquals(500, owner.get(5, TimeUnit.SECONDS).getStatus());
+            MockHttpServletResponse second = waiter.get(5, TimeUnit.SECONDS);
+            assertEquals(200, second.getStatus());
+            assertEquals("second", second.getContentAsString());
+            assertNull(second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+            assertEquals(2, calls.get());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void answers409WhileTheOwnerOutlastsTheWait() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(10, 60), 50);
+        CountDownLatch ownerStarted = new CountDownLatch(1);
+        CountDownLatch releaseOwner = new CountDownLatch(1);
+        FilterChain chain = (request, response) -> {
+            ownerStarted.countDown();
+            try {
+                releaseOwner.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+        try {
+            Future<MockHttpServletResponse> owner = threads.submit(
+                    () -> run(filter, issue("/api/issues/issue", "k1", "7"), chain));
+            assertTrue(ownerStarted.await(5, TimeUnit.SECONDS));
+            MockHttpServletResponse waiter = run(filter, issue("/api/issues/issue", "k1", "7"), chain);
+            assertEquals(409, waiter.getStatus());
+            releaseOwner.countDown();
+            assertEquals(200, owner.get(5, TimeUnit.SECONDS).getStatus());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void servesTheBufferedBodyToReadListeners() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(10, 60), 1000);
+        List<String> events = new ArrayList<>();
+        FilterChain chain = (request, response) -> {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    events.add("data:" + new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    events.add("done:" + in.isFinished());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    events.add("error");
+                }
+            });
+        };
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/issues/batch");
+        request.addHeader(IdempotencyFilter.KEY_HEADER, "k1");
+        request.setContentType("application/json");
+        request.setContent("{\"bookIds\":[1,2]}".getBytes(StandardCharsets.UTF_8));
+        run(filter, request, chain);
+
+        assertEquals(List.of("data:{\"bookIds\":[1,2]}", "done:true"), events);
+    }
+
+    @Test
+    void leavesRequestsWithoutAKeyAlone() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(10, 60), 1000);
+        AtomicInteger calls = new AtomicInteger();
+        FilterChain chain = (request, response) -> calls.incrementAndGet();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/issues/issue");
+        request.addParameter("bookId", "7");
+        run(filter, request, chain);
+        run(filter, request, chain);
+
+        assertEquals(2, calls.get());
+    }
+
+    private static MockHttpServletRequest issue(String uri, String key, String bookId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.addHeader(IdempotencyFilter.KEY_HEADER, key);
+        request.setContentType("application/x-www-form-urlencoded");
+        request.addParameter("bookId", bookId);
+        request.addParameter("userId", "3");
+        return request;
+    }
+
+    private static MockHttpServletResponse run(IdempotencyFilter filter, MockHttpServletRequest request,
+                                               FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.lms.filter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    @Test
+    void keepsTheResponseOfASuccessfulOwner() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(10, 60);
+        IdempotencyStore.Claim first = store.claim("alice:k", "f1");
+        assertTrue(first.owner());
+        store.complete("alice:k", first.entry(), new IdempotencyStore.Response(200, "application/json", new byte[]{1}));
+
+        IdempotencyStore.Claim retry = store.claim("alice:k", "f1");
+        assertFalse(retry.owner());
+        assertSame(first.entry(), retry.entry());
+        assertArrayEquals(new byte[]{1}, retry.entry().await(0).body());
+        assertEquals(1L, store.stats().get("replays"));
+    }
+
+    @Test
+    void countsAMismatchedFingerprint() {
+        IdempotencyStore store = new IdempotencyStore(10, 60);
+        store.claim("alice:k", "f1");
+
+        IdempotencyStore.Claim other = store.claim("alice:k", "f2");
+        assertFalse(other.owner());
+        assertEquals("f1", other.entry().fingerprint());
+        assertEquals(1L, store.stats().get("mismatches"));
+    }
+
+    @Test
+    void releasesTheKeyWhenTheOwnerFails() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(10, 60);
+        IdempotencyStore.Claim owner = store.claim("alice:k", "f1");
+        IdempotencyStore.Claim waiter = store.claim("alice:k", "f1");
+
+        store.complete("alice:k", owner.entry(), null);
+        assertNull(waiter.entry().await(1000));
+        assertTrue(waiter.entry().isDone());
+        IdempotencyStore.Claim again = store.claim("alice:k", "f1");
+        assertTrue(again.owner());
+        assertNotSame(owner.entry(), again.entry());
+    }
+
+    @Test
+    void waitingForARunningOwnerTimesOut() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(10, 60);
+        store.claim("alice:k", "f1");
+
+        IdempotencyStore.Claim waiter = store.claim("alice:k", "f1");
+        assertNull(waiter.entry().await(20));
+        assertFalse(waiter.entry().isDone());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedKeyOverCapacity() {
+        IdempotencyStore store = new IdempotencyStore(2, 60);
+        store.claim("a", "f");
+        store.claim("b", "f");
+        // Touching a leaves b as the least recently used
+        store.claim("a", "f");
+        store.claim("c", "f");
+
+        assertFalse(store.claim("a", "f").owner());
+        assertTrue(store.claim("b", "f").owner());
+        assertEquals(2, store.stats().get("entries"));
+        assertEquals(2L, store.stats().get("evictions"));
+    }
+
+    @Test
+    void expiredKeysAreClaimedAfresh() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(10, 1);
+        IdempotencyStore.Claim first = store.claim("a", "f1");
+        store.complete("a", first.entry(), new IdempotencyStore.Response(200, null, new byte[0]));
+
+        Thread.sleep(1100);
+        IdempotencyStore.Claim later = store.claim("a", "f2");
+        assertTrue(later.owner());
+        assertEquals("f2", later.entry().fingerprint());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.lms.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Every operation is checked against {@link BitSet} holding the same values. */
+class CompressedBitmapTest {
+
+    @Test
+    void addAndRemoveAcrossTheContainerThreshold() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        BitSet expected = new BitSet();
+        // One chunk grows past the 4096-value array limit into a bitmap container
+        for (int value = 0; value < 10_000; value += 2) {
+            bitmap.add(value);
+            expected.set(value);
+        }
+        bitmap.add(4);
+        assertMatches(expected, bitmap);
+
+        // Shrinking below half the limit turns it into an array again
+        for (int value = 0; value < 10_000; value += 4) {
+            bitmap.remove(value);
+            expected.clear(value);
+        }
+        bitmap.remove(1);
+        assertMatches(expected, bitmap);
+        for (int value = 2; value < 4_000; value += 4) {
+            bitmap.remove(value);
+            expected.clear(value);
+        }
+        assertEquals(1500, bitmap.cardinality());
+        bitmap.add(3);
+        expected.set(3);
+        assertMatches(expected, bitmap);
+        bitmap.remove(3);
+        for (int value = 4_002; value < 10_000; value += 4) {
+            bitmap.remove(value);
+        }
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.toArray().length);
+    }
+
+    @Test
+    void valuesInOtherChunksAreKeptApart() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        bitmap.add(70_000);
+        bitmap.add(5);
+        bitmap.add(Integer.MAX_VALUE);
+        bitmap.add(65_536);
+
+        assertArrayEquals(new int[]{5, 65_536, 70_000, Integer.MAX_VALUE}, bitmap.toArray());
+        assertFalse(bitmap.contains(65_535));
+        bitmap.remove(5);
+        assertArrayEquals(new int[]{65_536, 70_000, Integer.MAX_VALUE}, bitmap.toArray());
+    }
+
+    @Test
+    void setOperationsMatchBitSet() {
+        Random random = new Random(42);
+        // Sparse, dense and mixed chunks on both sides, so every container pairing is hit
+        int[][] densities = {{20, 20}, {20, 9000}, {9000, 20}, {9000, 9000}, {0, 500}, {500, 0}};
+        for (int[] density : densities) {
+            BitSet left = new BitSet();
+            BitSet right = new BitSet();
+            CompressedBitmap a = fill(left, random, density[0]);
+            CompressedBitmap b = fill(right, random, density[1]);
+
+            BitSet and = (BitSet) left.clone();
+            and.and(right);
+            BitSet or = (BitSet) left.clone();
+            or.or(right);
+            BitSet andNot = (BitSet) left.clone();
+            andNot.andNot(right);
+
+            assertMatches(and, a.and(b));
+            assertEquals(and.cardinality(), a.andCardinality(b));
+            assertMatches(or, a.or(b));
+            assertMatches(andNot, a.andNot(b));
+            // Operands are left untouched
+            assertMatches(left, a);
+            assertMatches(right, b);
+        }
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value = 0; value < 5000; value++) {
+            bitmap.add(value);
+        }
+        CompressedBitmap copy = bitmap.copy();
+        copy.remove(7);
+        bitmap.add(100_000);
+
+        assertTrue(bitmap.contains(7));
+        assertFalse(copy.contains(7));
+        assertFalse(copy.contains(100_000));
+        assertEquals(4999, copy.cardinality());
+    }
+
+    // Values spread over the first three chunks, per chunk at roughly the given count
+    private static CompressedBitmap fill(BitSet expected, Random random, int perChunk) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int chunk = 0; chunk < 3; chunk++) {
+            for (int i = 0; i < perChunk; i++) {
+                int value = (chunk << 16) | random.nextInt(1 << 16);
+                bitmap.add(value);
+                expected.set(value);
+            }
+        }
+        return bitmap;
+    }
+
+    private static void assertMatches(BitSet expected, CompressedBitmap actual) {
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        for (int value = expected.nextSetBit(0); value >= 0; value = expected.nextSetBit(value + 1)) {
+            assertTrue(actual.contains(value), "missing " + value);
+        }
+    }
+}
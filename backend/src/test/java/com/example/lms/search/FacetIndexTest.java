@@ -0,0 +1,105 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FacetIndexTest {
+
+    @Test
+    void countsValuesWithinTheGivenBooks() {
+        FacetIndex index = indexOf(
+                book(1, "Fiction", "Penguin", 1999, true),
+                book(2, " fiction ", "Vintage", 2004, true),
+                book(3, "History", "penguin", 2001, false),
+                book(4, null, null, null, true));
+
+        Map<String, Map<String, Integer>> all = index.counts(index.allBooks(), 10);
+        assertEquals(Map.of("fiction", 2, "history", 1), all.get(FacetIndex.GENRE));
+        assertEquals(List.of("penguin", "vintage"), List.copyOf(all.get(FacetIndex.PUBLISHER).keySet()));
+        assertEquals(Map.of("1990s", 1, "2000s", 2), all.get(FacetIndex.DECADE));
+        assertEquals(Map.of(FacetIndex.AVAILABLE, 3, FacetIndex.CHECKED_OUT, 1), all.get(FacetIndex.AVAILABILITY));
+
+        CompressedBitmap someBooks = FacetIndex.bitmapOf(List.of(book(2, null, null, null, true),
+                book(3, null, null, null, true)));
+        assertEquals(Map.of("penguin", 1, "vintage", 1), index.counts(someBooks, 10).get(FacetIndex.PUBLISHER));
+        assertEquals(Map.of("fiction", 2), index.counts(index.allBooks(), 1).get(FacetIndex.GENRE));
+    }
+
+    @Test
+    void availabilityFlipMovesTheBookBetweenCounts() {
+        FacetIndex index = indexOf(
+                book(1, "Fiction", "Penguin", 1999, true),
+                book(2, "Fiction", "Penguin", 1999, true));
+
+        index.availabilityChanged(1L, false);
+        Map<String, Map<String, Integer>> counts = index.counts(index.allBooks(), 10);
+        assertEquals(Map.of(FacetIndex.AVAILABLE, 1, FacetIndex.CHECKED_OUT, 1), counts.get(FacetIndex.AVAILABILITY));
+        assertEquals(Map.of("fiction", 2), counts.get(FacetIndex.GENRE));
+        assertArrayEquals(new int[]{1}, index.filter(index.allBooks(),
+                Map.of(FacetIndex.AVAILABILITY, FacetIndex.CHECKED_OUT)).toArray());
+
+        // Flipping back, or to the same value twice, leaves one entry per book
+        index.availabilityChanged(1L, true);
+        index.availabilityChanged(1L, true);
+        assertEquals(Map.of(FacetIndex.AVAILABLE, 2),
+                index.counts(index.allBooks(), 10).get(FacetIndex.AVAILABILITY));
+
+        // Re-indexing after a flip does not leave the book under its old value
+        index.availabilityChanged(2L, false);
+        index.index(book(2, "Fiction", "Penguin", 1999, true));
+        assertEquals(Map.of(FacetIndex.AVAILABLE, 2),
+                index.counts(index.allBooks(), 10).get(FacetIndex.AVAILABILITY));
+    }
+
+    @Test
+    void filtersOnEverySelectedValue() {
+        FacetIndex index = indexOf(
+                book(1, "Fiction", "Penguin", 1999, true),
+                book(2, "Fiction", "Vintage", 2004, false),
+                book(3, "History", "Penguin", 2001, true));
+
+        assertArrayEquals(new int[]{1}, index.filter(index.allBooks(),
+                Map.of(FacetIndex.GENRE, "FICTION", FacetIndex.PUBLISHER, "penguin")).toArray());
+        assertArrayEquals(new int[]{1, 3}, index.filter(index.allBooks(),
+                Map.of(FacetIndex.AVAILABILITY, FacetIndex.AVAILABLE)).toArray());
+        assertTrue(index.filter(index.allBooks(), Map.of(FacetIndex.GENRE, "poetry")).isEmpty());
+        assertEquals(3, index.filter(index.allBooks(), Map.of("shelf", "a")).cardinality());
+    }
+
+    @Test
+    void removedBooksLeaveNoEmptyValues() {
+        FacetIndex index = indexOf(
+                book(1, "Fiction", "Penguin", 1999, true),
+                book(2, "History", "Penguin", 2001, true));
+
+        index.remove(2L);
+        Map<String, Map<String, Integer>> counts = index.counts(index.allBooks(), 10);
+        assertEquals(Map.of("fiction", 1), counts.get(FacetIndex.GENRE));
+        assertEquals(1, index.allBooks().cardinality());
+        assertTrue(index.filter(index.allBooks(), Map.of(FacetIndex.GENRE, "history")).isEmpty());
+    }
+
+    private static FacetIndex indexOf(Book... books) {
+        FacetIndex index = new FacetIndex();
+        for (Book book : books) {
+            index.index(book);
+        }
+        return index;
+    }
+
+    private static Book book(long id, String genre, String publisher, Integer year, boolean available) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle("Book " + id);
+        book.setGenre(genre);
+        book.setPublisher(publisher);
+        book.setPublicationYear(year);
+        book.setAvailable(available);
+        return book;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static com.example.lms.search.SegmentTest.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullTextIndexTest {
+    private static final Set<BookField> TITLE = Set.of(BookField.TITLE);
+
+    @Test
+    void availabilityChangesLeaveHandedOutBooksAlone() {
+        FullTextIndex index = new FullTextIndex(false);
+        index.index(book(1, "Ocean tides", "Rivers"));
+        Book found = index.find(1L);
+        Book hit = index.search("ocean", TITLE, 10).get(0).book();
+
+        index.availabilityChanged(1L, false);
+        index.copiesChanged(1L, 0, 2);
+
+        assertTrue(found.isAvailable());
+        assertTrue(hit.isAvailable());
+        assertNull(hit.getTotalCopies());
+        Book current = index.find(1L);
+        assertFalse(current.isAvailable());
+        assertEquals(2, current.getTotalCopies());
+        assertEquals(0, current.getAvailableCopies());
+        assertSame(current, index.search("ocean", TITLE, 10).get(0).book());
+    }
+
+    @Test
+    void indexingCopiesTheCallersBook() {
+        FullTextIndex index = new FullTextIndex(false);
+        Book book = book(1, "Ocean tides", "Rivers");
+        index.index(book);
+        book.setTitle("Mountain air");
+
+        assertEquals("Ocean tides", index.find(1L).getTitle());
+        assertEquals(1, index.search("ocean", TITLE, 10).size());
+    }
+}
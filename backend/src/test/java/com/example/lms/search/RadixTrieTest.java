@@ -0,0 +1,98 @@
+package com.example.lms.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RadixTrieTest {
+
+    @Test
+    void completesPrefixesEndingInsideAndBetweenLabels() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("the hobbit", "The Hobbit", 5);
+        trie.add("the host", "The Host", 3);
+        trie.add("the hobbit returns", "The Hobbit Returns", 1);
+        trie.add("tea", "Tea", 4);
+
+        assertEquals(List.of("The Hobbit", "Tea", "The Host", "The Hobbit Returns"), texts(trie.complete("t", 10)));
+        assertEquals(List.of("The Hobbit", "The Host"), texts(trie.complete("the h", 2)));
+        assertEquals(List.of("The Hobbit", "The Hobbit Returns"), texts(trie.complete("the hob", 10)));
+        assertEquals(List.of("The Hobbit Returns"), texts(trie.complete("the hobbit r", 10)));
+        assertEquals(List.of(), trie.complete("the hobbits", 10));
+        assertEquals(List.of(), trie.complete("x", 10));
+    }
+
+    @Test
+    void repeatedAddsAccumulateUnderTheFirstText() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("dune", "Dune", 1);
+        trie.add("dune", "DUNE", 2);
+
+        assertEquals(List.of(new RadixTrie.Completion("Dune", 3)), trie.complete("du", 10));
+        // One subtract per add: the entry stays until the last one
+        trie.subtract("dune", 1);
+        assertEquals(List.of(new RadixTrie.Completion("Dune", 2)), trie.complete("du", 10));
+        trie.subtract("dune", 2);
+        assertEquals(List.of(), trie.complete("du", 10));
+    }
+
+    @Test
+    void subtractingToZeroRemovesTheEntryAndMergesNodes() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("car", "Car", 9);
+        trie.add("cart", "Cart", 2);
+        trie.add("carbon", "Carbon", 1);
+
+        trie.subtract("cart", 2);
+        assertEquals(List.of("Car", "Carbon"), texts(trie.complete("car", 10)));
+        // "car" loses its entry and is left with one child, so it merges into "carbon"
+        trie.subtract("car", 9);
+        assertEquals(List.of(new RadixTrie.Completion("Carbon", 1)), trie.complete("ca", 10));
+        assertEquals(List.of("Carbon"), texts(trie.complete("carb", 10)));
+        assertEquals(List.of("Carbon"), texts(trie.complete("car", 10)));
+
+        // Unknown keys, and keys that stop inside a label, are ignored
+        trie.subtract("cab", 1);
+        trie.subtract("carbo", 1);
+        assertEquals(List.of("Carbon"), texts(trie.complete("c", 10)));
+
+        // The merged node still splits on a new key
+        trie.add("carafe", "Carafe", 4);
+        assertEquals(List.of("Carafe", "Carbon"), texts(trie.complete("car", 10)));
+        trie.subtract("carbon", 1);
+        trie.subtract("carafe", 4);
+        assertEquals(List.of(), trie.complete("c", 10));
+    }
+
+    @Test
+    void subtractedWeightLowersTheSubtreeMaximum() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("apple", "Apple", 10);
+        trie.add("apricot", "Apricot", 5);
+        trie.add("banana", "Banana", 7);
+        assertEquals(List.of("Apple"), texts(trie.complete("", 1)));
+
+        trie.subtract("apple", 10);
+        trie.add("apple", "Apple", 1);
+        assertEquals(List.of("Banana", "Apricot"), texts(trie.complete("", 2)));
+    }
+
+    @Test
+    void equalWeightsAreCutInKeyOrder() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("zeta", "Zeta", 1);
+        trie.add("mid", "Mid", 1);
+        trie.add("alpha", "Alpha", 1);
+        trie.add("alphabet", "Alphabet", 1);
+        trie.add("omega", "Omega", 2);
+
+        assertEquals(List.of("Omega", "Alpha", "Alphabet"), texts(trie.complete("", 3)));
+        assertEquals(List.of("Omega", "Alpha", "Alphabet", "Mid", "Zeta"), texts(trie.complete("", 10)));
+    }
+
+    private static List<String> texts(List<RadixTrie.Completion> completions) {
+        return completions.stream().map(RadixTrie.Completion::text).toList();
+    }
+}
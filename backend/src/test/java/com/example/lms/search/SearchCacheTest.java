@@ -0,0 +1,140 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.example.lms.search.SegmentTest.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheTest {
+    private final SearchCache cache = new SearchCache(100);
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Test
+    void repeatsOfANormalizedQueryAreServedFromTheCache() {
+        Book ocean = book(1, "Ocean Tides", "Rivers");
+        assertEquals(List.of(ocean), cache.get("title", "Ocean  TIDES", counted(List.of(ocean))));
+        assertEquals(List.of(ocean), cache.get("title", "ocean tides", counted(List.of())));
+        assertEquals(1, searches.get());
+        // The same words under another search type are a separate entry
+        cache.get("author", "ocean tides", counted(List.of()));
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void aNewMatchingBookEvictsTheEntry() {
+        cache.get("title", "ocean", counted(List.of(book(1, "Ocean Tides", "Rivers"))));
+        cache.get("title", "mountain", counted(List.of()));
+        cache.get("author", "ocean", counted(List.of()));
+
+        // "ocean" is also a prefix of "oceanography", the way the index expands the last term
+        cache.bookChanged(book(2, "Oceanography", "Banks"));
+
+        assertMiss("title", "ocean");
+        assertHit("title", "mountain");
+        assertHit("author", "ocean");
+    }
+
+    @Test
+    void aRetitledBookEvictsItsOldQueryAndItsNewOne() {
+        cache.get("title", "ocean", counted(List.of(book(1, "Ocean Tides", "Rivers"))));
+        cache.get("title", "sea", counted(List.of()));
+        cache.get("title", "tides", counted(List.of(book(1, "Ocean Tides", "Rivers"))));
+        cache.get("title", "mountain", counted(List.of()));
+
+        cache.bookChanged(book(1, "Sea Breeze", "Rivers"));
+
+        assertMiss("title", "ocean");
+        assertMiss("title", "sea");
+        assertMiss("title", "tides");
+        assertHit("title", "mountain");
+    }
+
+    @Test
+    void availabilityAndRemovalOnlyEvictEntriesThatReturnedTheBook() {
+        cache.get("all", "ocean", counted(List.of(book(1, "Ocean Tides", "Rivers"))));
+        cache.get("all", "sea", counted(List.of(book(2, "Sea Breeze", "Banks"))));
+        cache.get("all", "mountain", counted(List.of()));
+
+        cache.availabilityChanged(1L);
+        assertMiss("all", "ocean");
+        assertHit("all", "sea");
+
+        cache.bookRemoved(2L);
+        assertMiss("all", "sea");
+        assertHit("all", "mountain");
+    }
+
+    @Test
+    void isbnAndFuzzyEntriesMatchTheWayTheirSearchesDo() {
+        cache.get("isbn", "978-0-306-40615-7", counted(List.of()));
+        cache.get("fuzzy", "hobit", counted(List.of()));
+        cache.get("fuzzy", "dune", counted(List.of()));
+
+        Book hobbit = book(3, "The Hobbit", "Tolkien");
+        hobbit.setIsbn("0306406152");
+        cache.bookChanged(hobbit);
+
+        // The ISBN-10 canonicalizes to the cached ISBN-13, and "hobit" is one edit from "hobbit"
+        assertMiss("isbn", "9780306406157");
+        assertMiss("fuzzy", "hobit");
+        assertHit("fuzzy", "dune");
+    }
+
+    @Test
+    void theGenerationGuardDropsAResultComputedDuringAWrite() {
+        Supplier<List<Book>> racing = () -> {
+            searches.incrementAndGet();
+            // A write lands after the search read the index but before it is cached
+            cache.bookChanged(book(9, "Unrelated", "Nobody"));
+            return List.of(book(1, "Ocean Tides", "Rivers"));
+        };
+        assertEquals(1, cache.get("title", "ocean", racing).size());
+        assertMiss("title", "ocean");
+        // The next search ran with no write in flight, so it is kept
+        assertHit("title", "ocean");
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryAndCountsIt() {
+        SearchCache small = new SearchCache(2);
+        small.get("title", "a", counted(List.of()));
+        small.get("title", "b", counted(List.of()));
+        small.get("title", "a", counted(List.of()));
+        small.get("title", "c", counted(List.of()));
+        assertEquals(3, searches.get());
+
+        small.get("title", "a", counted(List.of()));
+        small.get("title", "b", counted(List.of()));
+        assertEquals(4, searches.get());
+        assertEquals(2L, small.stats().get("evictions"));
+        assertEquals(2L, small.stats().get("hits"));
+
+        small.clear();
+        assertEquals(0, small.stats().get("size"));
+        assertEquals(2L, small.stats().get("invalidations"));
+    }
+
+    private Supplier<List<Book>> counted(List<Book> results) {
+        return () -> {
+            searches.incrementAndGet();
+            return results;
+        };
+    }
+
+    private void assertHit(String type, String keyword) {
+        int before = searches.get();
+        cache.get(type, keyword, counted(List.of()));
+        assertEquals(before, searches.get(), type + " '" + keyword + "' should have been cached");
+    }
+
+    private void assertMiss(String type, String keyword) {
+        int before = searches.get();
+        cache.get(type, keyword, counted(List.of()));
+        assertEquals(before + 1, searches.get(), type + " '" + keyword + "' should have been evicted");
+    }
+}
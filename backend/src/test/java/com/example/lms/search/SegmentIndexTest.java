@@ -0,0 +1,197 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.example.lms.search.SegmentTest.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Search across flushed segments and the in-memory buffer, merging, and restarts from the
+ * manifest. Checkpoints are given explicit times, so no database is needed.
+ */
+class SegmentIndexTest {
+    private static final LocalDateTime CHECKPOINT = LocalDateTime.of(2026, 3, 1, 12, 0);
+    private static final Set<BookField> TITLE = Set.of(BookField.TITLE);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void searchesSegmentsAndTheBufferTogether() {
+        SegmentIndex index = open();
+        index.index(book(1, "Ocean tides", "Rivers"));
+        index.index(book(2, "Mountain air", "Rivers"));
+        index.checkpoint(CHECKPOINT);
+        index.index(book(3, "Ocean currents", "Banks"));
+        index.checkpoint(CHECKPOINT.plusMinutes(1));
+        index.index(book(4, "Oceanography", "Banks"));
+
+        assertEquals(2, segmentFiles());
+        // The last term is also a prefix, which reaches the buffered book
+        assertEquals(Set.of(1L, 3L, 4L), Set.copyOf(ids(index.search("ocean", TITLE, 10))));
+        assertEquals(List.of(4L), ids(index.search("oceanog", TITLE, 10)));
+        assertEquals(List.of(1L), ids(index.search("ocean tides", TITLE, 10)));
+        assertEquals(List.of(3L), ids(index.search("currents", TITLE, 10)));
+        assertEquals(List.of(2L), ids(index.search("rivers air", Set.of(BookField.TITLE, BookField.AUTHOR), 10)));
+        assertEquals("Oceanography", index.find(4L).getTitle());
+        assertEquals("Ocean tides", index.find(1L).getTitle());
+    }
+
+    @Test
+    void updatesAndRemovalsHideOlderCopies() {
+        SegmentIndex index = open();
+        index.index(book(1, "Ocean tides", "Rivers"));
+        index.index(book(2, "Ocean currents", "Banks"));
+        index.checkpoint(CHECKPOINT);
+
+        index.index(book(1, "Sea tides", "Rivers"));
+        index.remove(2L);
+        index.availabilityChanged(1L, false);
+
+        assertEquals(List.of(), ids(index.search("ocean", TITLE, 10)));
+        List<FullTextIndex.Hit> hits = index.search("sea", TITLE, 10);
+        assertEquals(List.of(1L), ids(hits));
+        assertFalse(hits.get(0).book().isAvailable());
+        assertNull(index.find(2L));
+    }
+
+    @Test
+    void publishesCopyCountersOfBufferedAndFlushedBooks() {
+        SegmentIndex index = open();
+        index.index(book(1, "Ocean tides", "Rivers"));
+        index.checkpoint(CHECKPOINT);
+
+        index.copiesChanged(1L, 0, 3);
+        Book book = index.search("ocean", TITLE, 10).get(0).book();
+        assertEquals(0, book.getAvailableCopies());
+        assertEquals(3, book.getTotalCopies());
+        assertFalse(book.isAvailable());
+
+        index.checkpoint(CHECKPOINT.plusMinutes(1));
+        assertEquals(0, index.find(1L).getAvailableCopies());
+    }
+
+    @Test
+    void mergingDropsDeletedBooksAndKeepsTheRest() throws IOException {
+        SegmentIndex index = open();
+        for (long id = 1; id <= 12; id++) {
+            index.index(book(id, "Volume " + id, "Series"));
+            index.checkpoint(CHECKPOINT.plusMinutes(id));
+        }
+        index.remove(3L);
+        index.index(book(5L, "Volume five revised", "Series"));
+        index.checkpoint(CHECKPOINT.plusMinutes(20));
+        assertEquals(13, segmentFiles());
+
+        index.merge();
+
+        assertTrue(segmentFiles() <= 10, "segments after merge: " + segmentFiles());
+        List<Long> all = ids(index.search("volume", TITLE, 100));
+        assertEquals(11, all.size());
+        assertFalse(all.contains(3L));
+        assertEquals(List.of(5L), ids(index.search("revised", TITLE, 10)));
+
+        // The manifest follows the merge, so a restart sees the same books
+        SegmentIndex restarted = open();
+        assertEquals(Set.copyOf(all), Set.copyOf(ids(restarted.search("volume", TITLE, 100))));
+    }
+
+    @Test
+    void restoresSegmentsFromTheManifest() {
+        SegmentIndex index = open();
+        index.index(book(1, "Ocean tides", "Rivers"));
+        index.index(book(2, "Ocean currents", "Banks"));
+        index.checkpoint(CHECKPOINT);
+        index.remove(2L);
+        index.checkpoint(CHECKPOINT.plusMinutes(1));
+        // Buffered but never checkpointed; only the replay brings it back
+        index.index(book(3, "Ocean floor", "Banks"));
+
+        SegmentIndex restarted = open();
+        assertTrue(restarted.isCatchingUp());
+        assertEquals(List.of(1L), ids(restarted.search("ocean", TITLE, 10)));
+    }
+
+    @Test
+    void catchUpReplaysChangesAndDropsBooksDeletedWhileDown() {
+        SegmentIndex index = open();
+        for (long id = 1; id <= 5; id++) {
+            index.index(book(id, "Ocean volume " + id, "Rivers"));
+        }
+        index.checkpoint(CHECKPOINT);
+
+        SegmentIndex restarted = open();
+        LocalDateTime before = CHECKPOINT.minusHours(1);
+        LocalDateTime after = CHECKPOINT.plusMinutes(5);
+        // Book 3 was deleted and book 2 retitled while the application was down; book 6 is new
+        List<Book> firstBatch = List.of(stamped(book(1, "Ocean volume 1", "Rivers"), before),
+                stamped(book(2, "Sea volume 2", "Rivers"), after));
+        List<Book> lastBatch = List.of(stamped(book(4, "Ocean volume 4", "Rivers"), before),
+                stamped(book(5, "Ocean volume 5", "Rivers"), before),
+                stamped(book(6, "Ocean volume 6", "Rivers"), after));
+
+        assertEquals(1, restarted.catchUp(firstBatch, 0, 3));
+        assertEquals(1, restarted.catchUp(lastBatch, 3, Long.MAX_VALUE));
+        restarted.checkpoint(after);
+
+        assertFalse(restarted.isCatchingUp());
+        assertEquals(List.of(1L, 4L, 5L, 6L), sorted(ids(restarted.search("ocean", TITLE, 10))));
+        assertEquals(List.of(2L), ids(restarted.search("sea", TITLE, 10)));
+        assertNull(restarted.find(3L));
+    }
+
+    @Test
+    void rebuildsFromScratchWithoutAManifest() throws IOException {
+        SegmentIndex index = open();
+        index.index(book(1, "Ocean tides", "Rivers"));
+        index.checkpoint(CHECKPOINT);
+        Files.delete(directory.resolve("segments.manifest"));
+
+        SegmentIndex restarted = open();
+        assertFalse(restarted.isCatchingUp());
+        assertEquals(0, segmentFiles());
+        assertEquals(List.of(), restarted.search("ocean", TITLE, 10));
+    }
+
+    private SegmentIndex open() {
+        return new SegmentIndex(directory.toString(), null);
+    }
+
+    private int segmentFiles() {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.seg")) {
+            for (Path ignored : files) {
+                count++;
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return count;
+    }
+
+    private static Book stamped(Book book, LocalDateTime updatedAt) {
+        book.setUpdatedAt(updatedAt);
+        return book;
+    }
+
+    private static List<Long> ids(List<FullTextIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.book().getId()).toList();
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        List<Long> copy = new ArrayList<>(ids);
+        copy.sort(null);
+        return copy;
+    }
+}
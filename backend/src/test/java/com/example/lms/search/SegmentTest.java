@@ -0,0 +1,118 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Round trip through the on-disk format of {@link SegmentWriter} and {@link Segment}. */
+class SegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackStoredFieldsAndIds() throws Exception {
+        Book full = new Book(3L, "Café Society", "Ann Ávila", "0306406152", "9780306406157", "History",
+                "2nd", "Penguin", 1999, false, 4, 0, null);
+        Book sparse = new Book(5L, "Bare", null, null, null, null, null, null, null, true, null, null, null);
+        Book last = new Book(9L, "Last", "Zed", null, null, null, null, null, -44, true, 2, 2, null);
+        Path file = directory.resolve("a.seg");
+        assertEquals(3, SegmentWriter.write(file, List.of(full, sparse, last).iterator()));
+
+        Segment segment = Segment.open(file);
+        assertEquals(3, segment.docCount());
+        assertEquals(3, segment.liveCount());
+        assertEquals(List.of(3L, 5L, 9L), List.of(segment.id(0), segment.id(1), segment.id(2)));
+        assertEquals(1, segment.ordinalOf(5));
+        assertEquals(-1, segment.ordinalOf(4));
+        assertEquals(0, segment.firstOrdinalAfter(0));
+        assertEquals(1, segment.firstOrdinalAfter(3));
+        assertEquals(2, segment.firstOrdinalAfter(8));
+        assertEquals(3, segment.firstOrdinalAfter(9));
+
+        assertEquals(full, segment.book(0));
+        assertEquals(sparse, segment.book(1));
+        assertEquals(last, segment.book(2));
+    }
+
+    @Test
+    void findsTermsAndPrefixesPerField() throws Exception {
+        Path file = directory.resolve("b.seg");
+        SegmentWriter.write(file, List.of(
+                book(1, "Ocean ocean tides", "Rivers"),
+                book(2, "Ocean currents", "Oceanus"),
+                book(4, "Mountain air", "Rivers")).iterator());
+        Segment segment = Segment.open(file);
+
+        int ocean = segment.findTerm(BookField.TITLE, bytes("ocean"));
+        assertTrue(ocean >= 0);
+        assertEquals("ocean", segment.termText(ocean));
+        assertEquals(2, segment.docFrequency(ocean));
+        int postings = segment.postings(ocean);
+        assertEquals(0, segment.postingDoc(postings, 0));
+        assertEquals(2, segment.postingFrequency(postings, 0));
+        assertEquals(1, segment.postingDoc(postings, 1));
+        assertEquals(1, segment.postingFrequency(postings, 1));
+        assertEquals(3, segment.fieldLength(0, BookField.TITLE));
+        assertEquals(7, segment.totalLength(BookField.TITLE));
+
+        // Terms are per field: "oceanus" is an author, never a title
+        assertTrue(segment.findTerm(BookField.TITLE, bytes("oceanus")) < 0);
+        int rivers = segment.findTerm(BookField.AUTHOR, bytes("rivers"));
+        assertEquals(2, segment.docFrequency(rivers));
+
+        int insertion = -segment.findTerm(BookField.TITLE, bytes("oc")) - 1;
+        assertTrue(segment.termStartsWith(insertion, BookField.TITLE, bytes("oc")));
+        assertEquals("ocean", segment.termText(insertion));
+        assertFalse(segment.termStartsWith(insertion + 1, BookField.TITLE, bytes("oc")));
+    }
+
+    @Test
+    void deletionsAreKeptInMemory() throws Exception {
+        Path file = directory.resolve("c.seg");
+        SegmentWriter.write(file, List.of(book(1, "One", "A"), book(2, "Two", "B")).iterator());
+        Segment segment = Segment.open(file);
+
+        segment.delete(1);
+        segment.delete(1);
+        assertFalse(segment.isLive(1));
+        assertTrue(segment.isLive(0));
+        assertEquals(1, segment.liveCount());
+        assertEquals(1, segment.deletedDocs().cardinality());
+    }
+
+    @Test
+    void rejectsBooksOutOfIdOrderAndLeavesNoFile() {
+        Path file = directory.resolve("d.seg");
+        assertThrows(IllegalArgumentException.class,
+                () -> SegmentWriter.write(file, List.of(book(2, "Two", "B"), book(1, "One", "A")).iterator()));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void refusesFilesOfAnotherFormat() throws Exception {
+        Path file = directory.resolve("e.seg");
+        Files.write(file, new byte[SegmentWriter.HEADER_BYTES]);
+        assertThrows(java.io.IOException.class, () -> Segment.open(file));
+    }
+
+    static Book book(long id, String title, String author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setAvailable(true);
+        return book;
+    }
+
+    private static byte[] bytes(String term) {
+        return term.getBytes(StandardCharsets.UTF_8);
+    }
+}
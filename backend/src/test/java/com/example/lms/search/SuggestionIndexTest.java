@@ -0,0 +1,77 @@
+package com.example.lms.search;
+
+import com.example.lms.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.lms.search.SegmentTest.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestionIndexTest {
+    // Only the in-memory counts are used, so no repositories are needed
+    private final BookPopularity popularity = new BookPopularity(null, null, 30, 0.25);
+    private final SuggestionIndex index = new SuggestionIndex(popularity);
+
+    @Test
+    void mergesTitlesAndAuthorsByWeight() {
+        index.index(book(1, "Dune", "Frank Herbert"));
+        index.index(book(2, "Dune  Messiah", "Frank Herbert"));
+        index.index(book(3, "Dracula", "Bram Stoker"));
+
+        List<SuggestionIndex.Suggestion> suggestions = index.suggest("d", 10);
+        assertEquals(List.of("Dracula", "Dune", "Dune  Messiah"), texts(suggestions));
+        assertEquals(SuggestionIndex.Kind.TITLE, suggestions.get(0).type());
+        // Two books behind one author count twice
+        assertEquals(List.of(new SuggestionIndex.Suggestion("Frank Herbert", SuggestionIndex.Kind.AUTHOR, 2)),
+                index.suggest("FRANK", 10));
+        // Whitespace is collapsed in the key, not in the text shown
+        assertEquals(List.of("Dune  Messiah"), texts(index.suggest("dune m", 10)));
+        assertEquals(List.of(), index.suggest("  ", 10));
+    }
+
+    @Test
+    void issuesReorderTheTopSuggestions() {
+        index.index(book(1, "Dune", "Herbert"));
+        index.index(book(2, "Dune Messiah", "Herbert"));
+        index.index(book(3, "Dracula", "Stoker"));
+        assertEquals(List.of("Dracula", "Dune"), texts(index.suggest("d", 2)));
+
+        issue(2L, 2);
+        assertEquals(List.of("Dune Messiah", "Dracula"), texts(index.suggest("d", 2)));
+        assertEquals(3, index.suggest("dune m", 1).get(0).weight());
+
+        issue(3L, 3);
+        assertEquals(List.of("Dracula", "Dune Messiah", "Dune"), texts(index.suggest("d", 3)));
+        // An author's weight follows the issues of every book behind it
+        assertEquals(4, index.suggest("herbert", 5).get(0).weight());
+    }
+
+    @Test
+    void retitledAndRemovedBooksTakeTheirWeightAlong() {
+        index.index(book(1, "Dune", "Herbert"));
+        issue(1L, 4);
+        index.index(book(1, "Children of Dune", "Herbert"));
+
+        assertEquals(List.of(), index.suggest("dune", 10));
+        assertEquals(5, index.suggest("children", 10).get(0).weight());
+
+        index.remove(1L);
+        assertEquals(List.of(), index.suggest("children", 10));
+        assertEquals(List.of(), index.suggest("herbert", 10));
+        // Issues of a book that is not indexed change nothing
+        issue(1L, 1);
+        assertEquals(List.of(), index.suggest("children", 10));
+    }
+
+    private void issue(Long bookId, int times) {
+        for (int i = 0; i < times; i++) {
+            popularity.recordIssue(bookId);
+            index.issued(bookId);
+        }
+    }
+
+    private static List<String> texts(List<SuggestionIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestionIndex.Suggestion::text).toList();
+    }
+}
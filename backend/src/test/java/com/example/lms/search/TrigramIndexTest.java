@@ -0,0 +1,88 @@
+package com.example.lms.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.lms.search.SegmentTest.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    @Test
+    void anAdjacentTranspositionCostsOneEdit() {
+        assertEquals(1, TrigramIndex.boundedDistance("hobbti", "hobbit", 2));
+        assertEquals(2, TrigramIndex.boundedDistance("hbobti", "hobbit", 2));
+        assertEquals(1, TrigramIndex.boundedDistance("tolkein", "tolkien", 2));
+
+        TrigramIndex index = new TrigramIndex();
+        index.index(book(1, "The Hobbit", "Tolkien"));
+        // Plain Levenshtein would need two edits, over the bound for a six-letter term
+        assertEquals(List.of(1L), ids(index.search("hobbti", 10)));
+        assertEquals(List.of(1L), ids(index.search("tolkein", 10)));
+    }
+
+    @Test
+    void theDistanceBoundGrowsWithTermLength() {
+        assertEquals(0, TrigramIndex.maxDistance(3));
+        assertEquals(1, TrigramIndex.maxDistance(4));
+        assertEquals(1, TrigramIndex.maxDistance(6));
+        assertEquals(2, TrigramIndex.maxDistance(7));
+
+        TrigramIndex index = new TrigramIndex();
+        index.index(book(1, "Cat", "Tiger"));
+        index.index(book(2, "Mockingbird", "Lee"));
+
+        // Up to three letters only the exact word matches
+        assertEquals(List.of(1L), ids(index.search("cat", 10)));
+        assertEquals(List.of(), ids(index.search("cot", 10)));
+        // Four to six letters allow one edit
+        assertEquals(List.of(1L), ids(index.search("tigar", 10)));
+        assertEquals(List.of(), ids(index.search("tagar", 10)));
+        // Seven and more allow two
+        assertEquals(List.of(2L), ids(index.search("mockinbrd", 10)));
+        assertEquals(List.of(), ids(index.search("mokinbrd", 10)));
+    }
+
+    @Test
+    void everyTermMustMatchAndCloserWordsScoreHigher() {
+        TrigramIndex index = new TrigramIndex();
+        index.index(book(1, "Ocean tides", "Rivers"));
+        index.index(book(2, "Ocean tiles", "Banks"));
+        index.index(book(3, "Mountain tides", "Banks"));
+
+        List<TrigramIndex.Match> matches = index.search("ocean tides", 10);
+        assertEquals(List.of(1L, 2L), ids(matches));
+        assertTrue(matches.get(0).score() > matches.get(1).score());
+        assertEquals(List.of(3L, 2L), ids(index.search("banks tides", 10)));
+        assertEquals(List.of(1L), ids(index.search("ocean tides", 1)));
+    }
+
+    @Test
+    void removedBooksDropOutOfTheVocabularyMatches() {
+        TrigramIndex index = new TrigramIndex();
+        index.index(book(1, "Dune", "Herbert"));
+        index.index(book(2, "Dune Messiah", "Herbert"));
+
+        index.remove(1L);
+        assertEquals(List.of(2L), ids(index.search("dune", 10)));
+        index.remove(2L);
+        assertEquals(List.of(), ids(index.search("dune", 10)));
+        assertEquals(List.of(), ids(index.search("herbrt", 10)));
+
+        // Re-indexing under a new title drops the old words; a word seen before comes back
+        index.index(book(3, "Children of Dune", "Herbert"));
+        index.index(book(3, "Chapterhouse", "Herbert"));
+        assertEquals(List.of(), ids(index.search("dune", 10)));
+        index.index(book(4, "Dune", "Herbert"));
+        assertEquals(List.of(4L), ids(index.search("dune", 10)));
+        assertEquals(List.of(3L, 4L), ids(index.search("herbrt", 10)));
+
+        index.clear();
+        assertEquals(List.of(), ids(index.search("herbert", 10)));
+    }
+
+    private static List<Long> ids(List<TrigramIndex.Match> matches) {
+        return matches.stream().map(TrigramIndex.Match::bookId).toList();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.lms.service;
+
+import com.example.lms.model.Book;
+import com.example.lms.repository.BookRepository;
+import com.example.lms.util.IsbnUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Imports run end to end against H2 with a batch size of three, so small files
+ * already span several batches.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:import;MODE=MySQL;NON_KEYWORDS=USER,VALUE,YEAR;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "jwt.secret=0123456789abcdef0123456789abcdef0123",
+        "admin.create-on-startup=false",
+        "lms.import.batch-size=3"
+})
+class BookImportServiceTest {
+
+    @Autowired
+    private BookImportService importService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepo;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void mapsHeaderColumnsByNameAndReadsQuotedFields() throws Exception {
+        String csv = "Publication_Year, ISBN ,TITLE,author,available,shelf\n"
+                + "1996,0-306-40615-2,\"Eats, Shoots \"\"and\"\" Leaves\",Lynne Truss,false,A1\n"
+                + ",,\"Header\nmapping\",,,\n";
+        BookImportService.Job job = run(BookImportService.Format.CSV, csv);
+
+        assertEquals(BookImportService.State.COMPLETED, job.getState());
+        assertEquals(2, job.getRowsRead());
+        assertEquals(2, job.getImported());
+        Book eats = bookService.findByCanonicalIsbn("9780306406157").orElseThrow();
+        assertEquals("Eats, Shoots \"and\" Leaves", eats.getTitle());
+        assertEquals("Lynne Truss", eats.getAuthor());
+        assertEquals(1996, eats.getPublicationYear());
+        assertFalse(eats.isAvailable());
+        Book multiline = bookRepo.findByTitleContainingIgnoreCase("mapping").get(0);
+        assertEquals("Header\nmapping", multiline.getTitle());
+        assertNull(multiline.getIsbn());
+        assertTrue(multiline.isAvailable());
+        // Imported books are searchable without a rebuild
+        assertEquals(List.of(eats.getId()), bookService.searchByTitle("shoots").stream().map(Book::getId).toList());
+    }
+
+    @Test
+    void rejectsInvalidIsbnsAndYearsWithTheirLines() throws Exception {
+        String csv = "title,isbn,publicationYear\n"
+                + "Valid,,2001\n"
+                + "Bad isbn,0306406153,2001\n"
+                + "\n"
+                + "Bad year,,MMI\n"
+                + ",,2001\n";
+        BookImportService.Job job = run(BookImportService.Format.CSV, csv);
+
+        assertEquals(BookImportService.State.COMPLETED, job.getState());
+        assertEquals(1, job.getImported());
+        assertEquals(3, job.getInvalid());
+        assertEquals(List.of("Line 3: Invalid ISBN 0306406153", "Line 5: Invalid publication year MMI",
+                "Line 6: Missing title"), job.getErrors());
+    }
+
+    @Test
+    void skipsIsbnsAlreadyInTheFileOrTheCatalog() throws Exception {
+        Book existing = new Book();
+        existing.setTitle("Already catalogued");
+        existing.setIsbn(isbn("979100000001"));
+        existing.setAvailable(true);
+        bookService.addBook(existing);
+
+        String repeated = isbn("979100000002");
+        String csv = "title,isbn\n"
+                + "Catalogue copy," + existing.getIsbn() + "\n"
+                + "First," + repeated + "\n"
+                + "Second,\"" + repeated.substring(0, 3) + "-" + repeated.substring(3) + "\"\n"
+                + "Third," + isbn("979100000003") + "\n";
+        BookImportService.Job job = run(BookImportService.Format.CSV, csv);
+
+        assertEquals(2, job.getImported());
+        assertEquals(2, job.getDuplicates());
+        assertTrue(job.getErrors().get(0).startsWith("Line 2: Duplicate ISBN"));
+        assertTrue(job.getErrors().get(1).startsWith("Line 4: Duplicate ISBN"));
+        assertEquals("First", bookService.findByCanonicalIsbn(repeated).orElseThrow().getTitle());
+    }
+
+    @Test
+    void insertsRowByRowAfterAFailedBatch() throws Exception {
+        // Inserted behind the service's back, as a concurrent writer would, so only the
+        // unique index catches it
+        String taken = isbn("979100000011");
+        jdbcTemplate.update("insert into book (title, isbn, canonical_isbn, available, updated_at) "
+                + "values ('Raced', ?, ?, true, current_timestamp)", taken, taken);
+
+        String csv = "title,isbn\n"
+                + "Before," + isbn("979100000012") + "\n"
+                + "Clash," + taken + "\n"
+                + "After," + isbn("979100000013") + "\n"
+                + "Next batch," + isbn("979100000014") + "\n";
+        BookImportService.Job job = run(BookImportService.Format.CSV, csv);
+
+        assertEquals(BookImportService.State.COMPLETED, job.getState());
+        assertEquals(3, job.getImported());
+        assertEquals(1, job.getDuplicates());
+        assertTrue(job.getErrors().get(0).startsWith("Could not insert \"Clash\""), job.getErrors().get(0));
+        assertEquals("Before", bookService.findByCanonicalIsbn(isbn("979100000012")).orElseThrow().getTitle());
+        assertEquals("After", bookService.findByCanonicalIsbn(isbn("979100000013")).orElseThrow().getTitle());
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from book where canonical_isbn = ?",
+                Integer.class, taken));
+    }
+
+    @Test
+    void readsNdjsonAndFailsCsvWithoutATitleColumn() throws Exception {
+        BookImportService.Job ndjson = run(BookImportService.Format.NDJSON,
+                "{\"title\":\"From JSON\",\"author\":\"Jay Son\"}\n\n{not json}\n");
+        assertEquals(1, ndjson.getImported());
+        assertEquals(List.of("Line 3: Malformed JSON"), ndjson.getErrors());
+
+        BookImportService.Job noTitle = run(BookImportService.Format.CSV, "name,author\nX,Y\n");
+        assertEquals(BookImportService.State.FAILED, noTitle.getState());
+        assertEquals("CSV header has no title column", noTitle.getFailure());
+    }
+
+    private BookImportService.Job run(BookImportService.Format format, String body) throws Exception {
+        BookImportService.Job job = importService.submit(format,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (job.getFinishedAt() == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "import did not finish");
+            Thread.sleep(20);
+        }
+        return job;
+    }
+
+    // Completes twelve digits into a valid ISBN-13
+    private static String isbn(String twelveDigits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (twelveDigits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        String isbn = twelveDigits + (10 - sum % 10) % 10;
+        assertEquals(isbn, IsbnUtil.canonicalize(isbn));
+        return isbn;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.lms.service;
+
+import com.example.lms.model.Book;
+import com.example.lms.model.BookCopy;
+import com.example.lms.model.CopyStatus;
+import com.example.lms.model.IssueRecord;
+import com.example.lms.model.Role;
+import com.example.lms.model.User;
+import com.example.lms.repository.BookCopyRepository;
+import com.example.lms.repository.BookRepository;
+import com.example.lms.repository.IssueRecordRepository;
+import com.example.lms.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many desks checking out the same books at once: every book must be issued
+ * exactly once per round, and every copy of a title catalogued by copy lent
+ * exactly once, however the threads interleave.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout;MODE=MySQL;NON_KEYWORDS=USER,VALUE,YEAR;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=32",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "jwt.secret=0123456789abcdef0123456789abcdef0123",
+        "admin.create-on-startup=false"
+})
+class IssueServiceConcurrencyTest {
+    private static final int BOOKS = 20;
+    private static final int DESKS = 32;
+    private static final int ROUNDS = 5;
+    private static final int COPIES = 5;
+
+    @Autowired
+    private IssueService issueService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepo;
+    @Autowired
+    private BookCopyRepository copyRepo;
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private IssueRecordRepository issueRepo;
+
+    @Test
+    void concurrentCheckoutsIssueEachBookOnce() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setTitle("Contended book " + i);
+            book.setAvailable(true);
+            books.add(bookService.addBook(book));
+        }
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < DESKS; i++) {
+            users.add(userRepo.save(new User(null, "Desk " + i, "desk" + i, "secret", Role.STUDENT)));
+        }
+
+        ExecutorService desks = Executors.newFixedThreadPool(DESKS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                Map<Long, AtomicInteger> successes = new ConcurrentHashMap<>();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> attempts = new ArrayList<>();
+                for (User user : users) {
+                    List<Book> order = new ArrayList<>(books);
+                    Collections.shuffle(order);
+                    attempts.add(desks.submit(() -> {
+                        start.await();
+                        for (Book book : order) {
+                            // Each desk works from its own stale copy, as a controller would
+                            Book copy = bookRepo.findById(book.getId()).orElseThrow();
+                            if (issueService.issueBook(copy, user) != null) {
+                                successes.computeIfAbsent(book.getId(), id -> new AtomicInteger()).incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> attempt : attempts) {
+                    attempt.get(2, TimeUnit.MINUTES);
+                }
+
+                Map<Long, List<IssueRecord>> open = issueRepo.findAll().stream()
+                        .filter(record -> record.getReturnDate() == null)
+                        .collect(Collectors.groupingBy(record -> record.getBook().getId()));
+                for (Book book : books) {
+                    assertEquals(1, successes.get(book.getId()).get(), "successful checkouts of book " + book.getId());
+                    assertEquals(1, open.get(book.getId()).size(), "open issue records of book " + book.getId());
+                    assertFalse(bookRepo.findById(book.getId()).orElseThrow().isAvailable());
+                    assertFalse(bookService.searchByTitle("contended").stream()
+                            .filter(b -> b.getId().equals(book.getId())).findFirst().orElseThrow().isAvailable());
+                }
+
+                for (List<IssueRecord> records : open.values()) {
+                    issueService.returnBook(records.get(0), 0.0);
+                }
+                for (Book book : books) {
+                    assertTrue(bookRepo.findById(book.getId()).orElseThrow().isAvailable());
+                }
+            }
+        } finally {
+            desks.shutdownNow();
+        }
+        Set<Long> bookIds = books.stream().map(Book::getId).collect(Collectors.toSet());
+        assertEquals(BOOKS * ROUNDS, issueRepo.findAll().stream()
+                .filter(record -> bookIds.contains(record.getBook().getId())).count());
+    }
+
+    @Test
+    void concurrentCheckoutsLendEachCopyOnce() throws Exception {
+        Book title = new Book();
+        title.setTitle("Shelved title");
+        title.setAvailable(true);
+        title = bookService.addBook(title);
+        Set<Long> copyIds = new HashSet<>();
+        for (int i = 0; i < COPIES; i++) {
+            copyIds.add(bookService.addCopy(title, "SHELF-" + i, "Stack A").getId());
+        }
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < DESKS; i++) {
+            users.add(userRepo.save(new User(null, "Copy desk " + i, "copydesk" + i, "secret", Role.STUDENT)));
+        }
+        Long titleId = title.getId();
+
+        ExecutorService desks = Executors.newFixedThreadPool(DESKS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                AtomicInteger successes = new AtomicInteger();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> attempts = new ArrayList<>();
+                for (User user : users) {
+                    attempts.add(desks.submit(() -> {
+                        start.await();
+                        Book copy = bookRepo.findById(titleId).orElseThrow();
+                        if (issueService.issueBook(copy, user) != null) {
+                            successes.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> attempt : attempts) {
+                    attempt.get(2, TimeUnit.MINUTES);
+                }
+
+                List<IssueRecord> open = issueRepo.findAll().stream()
+                        .filter(record -> record.getReturnDate() == null && record.getBook().getId().equals(titleId))
+                        .toList();
+                assertEquals(COPIES, successes.get(), "successful checkouts in round " + round);
+                assertEquals(COPIES, open.size(), "open issue records in round " + round);
+                assertEquals(copyIds, open.stream().map(record -> record.getCopy().getId()).collect(Collectors.toSet()));
+                for (BookCopy copy : copyRepo.findAllById(copyIds)) {
+                    assertEquals(CopyStatus.ON_LOAN, copy.getStatus(), "status of copy " + copy.getId());
+                }
+                Book stored = bookRepo.findById(titleId).orElseThrow();
+                assertEquals(0, stored.getAvailableCopies());
+                assertFalse(stored.isAvailable());
+                assertFalse(bookService.searchByTitle("shelved").stream()
+                        .filter(b -> b.getId().equals(titleId)).findFirst().orElseThrow().isAvailable());
+
+                for (IssueRecord record : open) {
+                    issueService.returnBook(record, 0.0);
+                }
+                stored = bookRepo.findById(titleId).orElseThrow();
+                assertEquals(COPIES, stored.getAvailableCopies());
+                assertTrue(stored.isAvailable());
+            }
+        } finally {
+            desks.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.lms.service;
+
+import com.example.lms.model.LibraryClosure;
+import com.example.lms.repository.LibraryClosureRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The bitset and prefix-count arithmetic of {@link LibraryCalendar}, checked against
+ * a naive calendar that looks at one day at a time.
+ */
+class LibraryCalendarTest {
+    private static final LocalDate START = LocalDate.of(2022, 12, 1);
+    private static final LocalDate END = LocalDate.of(2026, 2, 1);
+
+    @Test
+    void matchesNaiveCountsAcrossYearBoundariesAndLeapYears() {
+        Set<LocalDate> closures = dates("2022-12-31", "2023-01-01", "2023-12-31", "2024-01-01",
+                "2024-02-28", "2024-02-29", "2024-03-01", "2024-12-30", "2024-12-31", "2025-01-01");
+        Naive naive = new Naive(EnumSet.of(DayOfWeek.SUNDAY), closures);
+        LibraryCalendar calendar = calendar("SUNDAY", closures);
+
+        List<LocalDate> boundaries = new ArrayList<>();
+        for (int year = 2022; year <= 2026; year++) {
+            for (String monthDay : new String[]{"01-01", "01-02", "02-28", "02-29", "03-01", "12-30", "12-31"}) {
+                try {
+                    boundaries.add(LocalDate.parse(year + "-" + monthDay));
+                } catch (RuntimeException notLeap) {
+                    // February 29 only exists in 2024
+                }
+            }
+        }
+        for (LocalDate from : boundaries) {
+            for (LocalDate to : boundaries) {
+                assertEquals(naive.openDaysBetween(from, to), calendar.openDaysBetween(from, to), from + " to " + to);
+            }
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            LocalDate from = START.plusDays(random.nextInt(400));
+            LocalDate to = from.plusDays(random.nextInt(800));
+            assertEquals(naive.openDaysBetween(from, to), calendar.openDaysBetween(from, to), from + " to " + to);
+        }
+        for (LocalDate day = START; day.isBefore(END); day = day.plusDays(1)) {
+            assertEquals(naive.isOpen(day), calendar.isOpen(day), day.toString());
+        }
+    }
+
+    @Test
+    void handlesLongRunsOfClosedDays() {
+        // Open only on Wednesdays, and not on any Wednesday of 2024's second quarter: closed runs
+        // longer than a 64-day bitset word
+        Set<LocalDate> closures = new HashSet<>();
+        for (LocalDate day = LocalDate.of(2024, 4, 1); day.isBefore(LocalDate.of(2024, 7, 1)); day = day.plusDays(1)) {
+            closures.add(day);
+        }
+        Naive naive = new Naive(EnumSet.complementOf(EnumSet.of(DayOfWeek.WEDNESDAY)), closures);
+        LibraryCalendar calendar = calendar("MONDAY,TUESDAY,THURSDAY,FRIDAY,SATURDAY,SUNDAY", closures);
+
+        for (LocalDate day = START; day.isBefore(END); day = day.plusDays(1)) {
+            assertEquals(naive.nextOpenDay(day), calendar.nextOpenDay(day), day.toString());
+            assertEquals(naive.openDaysBetween(START, day), calendar.openDaysBetween(START, day), day.toString());
+        }
+        assertEquals(LocalDate.of(2024, 7, 3), calendar.nextOpenDay(LocalDate.of(2024, 3, 28)));
+    }
+
+    @Test
+    void nextOpenDayRollsOverIntoTheNextYear() {
+        Set<LocalDate> closures = new HashSet<>();
+        for (LocalDate day = LocalDate.of(2025, 12, 1); day.isBefore(LocalDate.of(2026, 1, 6)); day = day.plusDays(1)) {
+            closures.add(day);
+        }
+        Naive naive = new Naive(EnumSet.noneOf(DayOfWeek.class), closures);
+        LibraryCalendar calendar = calendar("", closures);
+
+        assertEquals(LocalDate.of(2026, 1, 6), calendar.nextOpenDay(LocalDate.of(2025, 12, 1)));
+        assertEquals(LocalDate.of(2026, 1, 6), calendar.nextOpenDay(LocalDate.of(2025, 12, 31)));
+        assertEquals(LocalDate.of(2026, 1, 6), calendar.dueDate(LocalDate.of(2025, 11, 20), 14));
+        for (LocalDate day = LocalDate.of(2025, 11, 1); day.isBefore(LocalDate.of(2026, 2, 1)); day = day.plusDays(1)) {
+            assertEquals(naive.nextOpenDay(day), calendar.nextOpenDay(day), day.toString());
+        }
+    }
+
+    @Test
+    void noOpenDaysUnlessToIsAfterFrom() {
+        LibraryCalendar calendar = calendar("SATURDAY,SUNDAY", Set.of());
+        LocalDate day = LocalDate.of(2024, 2, 29);
+
+        assertEquals(0, calendar.openDaysBetween(day, day));
+        assertEquals(0, calendar.openDaysBetween(day, day.minusDays(1)));
+        assertEquals(0, calendar.openDaysBetween(LocalDate.of(2025, 1, 10), LocalDate.of(2023, 6, 1)));
+        assertEquals(1, calendar.openDaysBetween(day, day.plusDays(1)));
+    }
+
+    @Test
+    void rejectsClosingEveryWeekday() {
+        assertThrows(IllegalStateException.class,
+                () -> calendar("MONDAY,TUESDAY,WEDNESDAY,THURSDAY,FRIDAY,SATURDAY,SUNDAY", Set.of()));
+    }
+
+    private static LibraryCalendar calendar(String closedWeekdays, Set<LocalDate> closures) {
+        LibraryClosureRepository repo = mock(LibraryClosureRepository.class);
+        when(repo.findAll()).thenReturn(closures.stream().map(day -> new LibraryClosure(day, "closed")).toList());
+        return new LibraryCalendar(repo, closedWeekdays);
+    }
+
+    private static Set<LocalDate> dates(String... days) {
+        Set<LocalDate> dates = new HashSet<>();
+        for (String day : days) {
+            dates.add(LocalDate.parse(day));
+        }
+        return dates;
+    }
+
+    private record Naive(Set<DayOfWeek> closedWeekdays, Set<LocalDate> closures) {
+        boolean isOpen(LocalDate day) {
+            return !closedWeekdays.contains(day.getDayOfWeek()) && !closures.contains(day);
+        }
+
+        LocalDate nextOpenDay(LocalDate day) {
+            while (!isOpen(day)) {
+                day = day.plusDays(1);
+            }
+            return day;
+        }
+
+        long openDaysBetween(LocalDate from, LocalDate to) {
+            long open = 0;
+            for (LocalDate day = from.plusDays(1); !day.isAfter(to); day = day.plusDays(1)) {
+                if (isOpen(day)) {
+                    open++;
+                }
+            }
+            return open;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.lms.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void quotedFieldsKeepCommasLineBreaksAndDoubledQuotes() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "title,author\n\"Eats, Shoots\",\"Truss\"\n\"Two\nlines\",\"Say \"\"hi\"\"\"\n"));
+
+        assertEquals(List.of("title", "author"), csv.next());
+        assertEquals(List.of("Eats, Shoots", "Truss"), csv.next());
+        assertEquals(List.of("Two\nlines", "Say \"hi\""), csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void keepsEmptyFieldsAndSkipsBlankLines() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("a,,c,\r\n\r\n\n,\"\"\r\nlast"));
+
+        assertEquals(List.of("a", "", "c", ""), csv.next());
+        assertEquals(List.of("", ""), csv.next());
+        // The final record needs no line break
+        assertEquals(List.of("last"), csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void reportsTheLineEachRecordStartedOn() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("h\n\"multi\nline\"\n\r\n\nnext\n"));
+
+        csv.next();
+        assertEquals(1, csv.line());
+        csv.next();
+        assertEquals(2, csv.line());
+        // Blank lines before a record are not part of it
+        assertEquals(List.of("next"), csv.next());
+        assertEquals(6, csv.line());
+    }
+
+    @Test
+    void quotesOnlyOpenAtTheStartOfAField() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("12\" ruler,x\n"));
+        assertEquals(List.of("12\" ruler", "x"), csv.next());
+    }
+
+    @Test
+    void rejectsAnUnterminatedQuote() {
+        CsvReader csv = new CsvReader(new StringReader("\"open,field\n"));
+        assertThrows(IOException.class, csv::next);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.lms.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IsbnUtilTest {
+
+    @Test
+    void convertsIsbn10ToIsbn13() {
+        assertEquals("9780306406157", IsbnUtil.canonicalize("0306406152"));
+        assertEquals("9780198526636", IsbnUtil.canonicalize("0198526636"));
+        // Both forms of one book meet in the same canonical ISBN
+        assertEquals(IsbnUtil.canonicalize("0306406152"), IsbnUtil.canonicalize("9780306406157"));
+    }
+
+    @Test
+    void acceptsXCheckDigitOnlyInLastPlaceOfIsbn10() {
+        assertEquals("9780804429573", IsbnUtil.canonicalize("080442957X"));
+        assertEquals("9780804429573", IsbnUtil.canonicalize("0-8044-2957-x"));
+        assertNull(IsbnUtil.canonicalize("08044X9575"));
+        assertNull(IsbnUtil.canonicalize("978080442957X"));
+    }
+
+    @Test
+    void ignoresHyphensAndSpaces() {
+        assertEquals("9780306406157", IsbnUtil.canonicalize("0-306-40615-2"));
+        assertEquals("9780306406157", IsbnUtil.canonicalize("978-0-306-40615-7"));
+        assertEquals("9780306406157", IsbnUtil.canonicalize(" 978 0 306 40615 7 "));
+        assertNull(IsbnUtil.canonicalize("ISBN 0306406152"));
+        assertNull(IsbnUtil.canonicalize("0306406152."));
+    }
+
+    @Test
+    void rejectsBadChecksums() {
+        assertNull(IsbnUtil.canonicalize("0306406153"));
+        assertNull(IsbnUtil.canonicalize("9780306406158"));
+        assertNull(IsbnUtil.canonicalize("0804429571"));
+    }
+
+    @Test
+    void keeps979IsbnsAndRejectsOtherPrefixes() {
+        assertEquals("9791090636071", IsbnUtil.canonicalize("979-10-90636-07-1"));
+        assertNull(IsbnUtil.canonicalize("979-10-90636-07-2"));
+        // Valid EAN-13 checksum, but 977 is the ISSN range rather than Bookland
+        assertNull(IsbnUtil.canonicalize("9771234567898"));
+    }
+
+    @Test
+    void rejectsWrongLengthsAndMissingInput() {
+        assertNull(IsbnUtil.canonicalize(null));
+        assertNull(IsbnUtil.canonicalize(""));
+        assertNull(IsbnUtil.canonicalize("030640615"));
+        assertNull(IsbnUtil.canonicalize("97803064061570"));
+    }
+}
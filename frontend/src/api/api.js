@@ -163,6 +163,19 @@ export async function register(name, username, password) {
 }
 
 // Protected endpoints (require JWT)
+// One key per user action, sent with every attempt at it (both URL shapes and any retry),
+// so the backend applies the action at most once and replays its response to the rest
+function newIdempotencyKey() {
+  if (window.crypto && typeof window.crypto.randomUUID === "function") {
+    return window.crypto.randomUUID();
+  }
+  return `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}${Math.random().toString(36).slice(2)}`;
+}
+
+function idempotentHeaders() {
+  return { ...authHeaders(), "Idempotency-Key": newIdempotencyKey() };
+}
+
 function authHeaders() {
   const token = getJwt();
   const headers = token ? { "Authorization": "Bearer " + token } : {};
@@ -246,7 +259,7 @@ export async function issueBook(bookId, userId) {
   try {
     const res = await fetchWithFallback(`/issues/issue?bookId=${bookId}&userId=${userId}`, {
       method: "POST",
-      headers: authHeaders()
+      headers: idempotentHeaders()
     });
     if (!res.ok) {
       const errorData = await res.json().catch(() => ({ error: "Unauthorized" }));
@@ -268,7 +281,7 @@ export async function returnBook(issueId, finePaid = null) {
     
     const res = await fetchWithFallback(endpoint, {
       method: "POST",
-      headers: authHeaders()
+      headers: idempotentHeaders()
     });
     if (!res.ok) {
       const errorData = await res.json().catch(() => ({ error: "Unauthorized" }));
@@ -285,7 +298,7 @@ export async function reserveBook(bookId, userId) {
   try {
     const res = await fetchWithFallback(`/reservations/reserve?bookId=${bookId}&userId=${userId}`, {
       method: "POST",
-      headers: authHeaders()
+      headers: idempotentHeaders()
     });
     if (!res.ok) {
       const errorData = await res.json().catch(() => ({ error: "Unauthorized" }));